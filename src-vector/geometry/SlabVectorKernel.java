@@ -0,0 +1,47 @@
+package geometry;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@code SlabVectorKernel} class is the {@link SlabKernel} written with the incubating Vector API, which
+ * computes as many rectangles per instruction as the widest vectors of the CPU hold. It lives in its own source
+ * tree because it needs {@code --add-modules jdk.incubator.vector} to compile and to run; {@link SlabBatch}
+ * loads it by name and keeps its plain loop when the class or the module is missing.
+ */
+final class SlabVectorKernel implements SlabKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void slabs(double[] enterX, double[] exitX, double[] enterY, double[] exitY, int n,
+                      double enterOffsetX, double exitOffsetX, double enterOffsetY, double exitOffsetY,
+                      double invDx, double invDy, double[] nearT, double[] farT) {
+        // The scalars are broadcast once per call rather than in every lane-wise operation. Optimized code
+        // keeps vectors in registers either way, but until the kernel is optimized each vector is an object.
+        DoubleVector enterDx = DoubleVector.broadcast(SPECIES, enterOffsetX);
+        DoubleVector exitDx = DoubleVector.broadcast(SPECIES, exitOffsetX);
+        DoubleVector enterDy = DoubleVector.broadcast(SPECIES, enterOffsetY);
+        DoubleVector exitDy = DoubleVector.broadcast(SPECIES, exitOffsetY);
+        DoubleVector scaleX = DoubleVector.broadcast(SPECIES, invDx);
+        DoubleVector scaleY = DoubleVector.broadcast(SPECIES, invDy);
+        int i = 0;
+        int bound = SPECIES.loopBound(n);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector nearX = DoubleVector.fromArray(SPECIES, enterX, i).add(enterDx).mul(scaleX);
+            DoubleVector nearY = DoubleVector.fromArray(SPECIES, enterY, i).add(enterDy).mul(scaleY);
+            nearX.max(nearY).intoArray(nearT, i);
+            DoubleVector farX = DoubleVector.fromArray(SPECIES, exitX, i).add(exitDx).mul(scaleX);
+            DoubleVector farY = DoubleVector.fromArray(SPECIES, exitY, i).add(exitDy).mul(scaleY);
+            farX.min(farY).intoArray(farT, i);
+        }
+        for (; i < n; i++) {
+            nearT[i] = Math.max((enterX[i] + enterOffsetX) * invDx, (enterY[i] + enterOffsetY) * invDy);
+            farT[i] = Math.min((exitX[i] + exitOffsetX) * invDx, (exitY[i] + exitOffsetY) * invDy);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vector" + SPECIES.length();
+    }
+}
@@ -1,22 +1,151 @@
 import biuoop.GUI;
+import game.FrameProfiler;
 import game.Game;
+import game.InputRecorder;
+import game.KeyScript;
+import game.Level;
+import game.Match;
+import game.MatchFarm;
+import game.ReplayPlayer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * The {@code Ass3Game} class serves as the entry point for the game application.
  * It initializes the game window, sets up the game, and starts the game loop.
  */
 public class Ass5Game {
+    private static final long FARM_FRAME_LIMIT = 100000;
 
     /**
      * The main method is the entry point of the program.
      * It creates a {@link Game} instance, sets its GUI, initializes game components, and starts the game.
      *
-     * @param args command-line arguments (not used)
+     * @param args command-line arguments; {@code --threaded} runs the simulation on its own thread,
+     *             {@code --profile} shows frame timings at the top of the screen and writes them to
+     *             {@code frame-stats.csv} and prints the tick, late-frame and dropped-tick counts when the
+     *             game ends, {@code --record <file>} records the keys to a replay file, and
+     *             {@code --replay <file>} replays a recording without a window,
+     *             up to the frame given by {@code --seek <frame>} if there is one;
+     *             {@code --level <file>} plays a level file instead of the standard level, and
+     *             {@code --write-level <file>} writes the standard level to a file to start a new level from;
+     *             {@code --swarm <balls>} adds that many extra balls, moved together as one swarm;
+     *             {@code --farm <games>} plays that many games without a window on every core, with random
+     *             keys seeded by the game number, and prints each result as it ends and the totals at the end
      */
     public static void main(String[] args) {
+        boolean threaded = false;
+        FrameProfiler profiler = null;
+        Path recordFile = null;
+        Path replayFile = null;
+        long seekFrame = Long.MAX_VALUE;
+        Path levelFile = null;
+        int farmGames = 0;
+        int swarmSize = 0;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--threaded")) {
+                threaded = true;
+            } else if (arg.equals("--profile")) {
+                profiler = new FrameProfiler();
+                profiler.setOverlay(true);
+            } else if (arg.equals("--record") && i + 1 < args.length) {
+                recordFile = Paths.get(args[++i]);
+            } else if (arg.equals("--replay") && i + 1 < args.length) {
+                replayFile = Paths.get(args[++i]);
+            } else if (arg.equals("--seek") && i + 1 < args.length) {
+                seekFrame = Long.parseLong(args[++i]);
+            } else if (arg.equals("--level") && i + 1 < args.length) {
+                levelFile = Paths.get(args[++i]);
+            } else if (arg.equals("--write-level") && i + 1 < args.length) {
+                writeStandardLevel(Paths.get(args[++i]));
+                return;
+            } else if (arg.equals("--farm") && i + 1 < args.length) {
+                farmGames = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--swarm") && i + 1 < args.length) {
+                swarmSize = Integer.parseInt(args[++i]);
+            }
+        }
+        Level level = null;
+        if (levelFile != null) {
+            try {
+                level = Level.load(levelFile);
+            } catch (IOException e) {
+                System.out.println("Could not read " + levelFile + ": " + e.getMessage());
+                return;
+            }
+        }
+        if (farmGames > 0) {
+            farm(farmGames, level);
+            return;
+        }
+        if (replayFile != null) {
+            replay(replayFile, seekFrame, level, swarmSize);
+            return;
+        }
         Game game = new Game();
+        game.setLevel(level);
+        game.setSwarmSize(swarmSize);
         game.setGui(new GUI("ass5", 800, 600));
+        game.setProfiler(profiler);
+        InputRecorder recorder = recordFile == null ? null : new InputRecorder();
+        game.setInputRecorder(recorder);
         game.initialize();
-        game.run();
+        if (threaded) {
+            game.runThreaded();
+        } else {
+            game.run();
+        }
+        if (profiler != null) {
+            try {
+                profiler.writeCsv(Paths.get("frame-stats.csv"));
+            } catch (IOException e) {
+                System.out.println("Could not write frame-stats.csv: " + e.getMessage());
+            }
+        }
+        if (recorder != null) {
+            try {
+                recorder.save(recordFile);
+            } catch (IOException e) {
+                System.out.println("Could not write " + recordFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void writeStandardLevel(Path file) {
+        try {
+            Level.standard().save(file);
+        } catch (IOException e) {
+            System.out.println("Could not write " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static void farm(int games, Level level) {
+        MatchFarm farm = new MatchFarm(FARM_FRAME_LIMIT);
+        try {
+            System.out.println(farm.run(Match.seeds(0, games, level), seed -> KeyScript.random(seed, 40),
+                    System.out::println));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void replay(Path file, long toFrame, Level level, int swarmSize) {
+        ReplayPlayer player;
+        try {
+            player = ReplayPlayer.load(file);
+        } catch (IOException e) {
+            System.out.println("Could not read " + file + ": " + e.getMessage());
+            return;
+        }
+        Game game = new Game();
+        game.setLevel(level);
+        game.setSwarmSize(swarmSize);
+        System.out.println(player.play(game, Math.min(toFrame, player.getFrameCount())));
+        if (player.getDivergedFrame() >= 0) {
+            System.out.println("Replay diverged from the recording at frame " + player.getDivergedFrame());
+        }
     }
 }
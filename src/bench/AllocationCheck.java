@@ -0,0 +1,96 @@
+package bench;
+
+import game.Game;
+import game.Level;
+import game.NullDrawSurface;
+import game.ScriptedKeyboardSensor;
+
+import java.awt.Color;
+import java.lang.management.ManagementFactory;
+
+/**
+ * The {@code AllocationCheck} class checks that a running game allocates nothing on the heap per tick.
+ * It plays a real {@link Game} without a window, with the normal block, ball and score listeners, on a level
+ * of small breakable blocks above a floor with a small death zone, and a paddle that sweeps back and forth.
+ * Every tick draws the frame on a {@link NullDrawSurface} and then runs {@link Game#timePassed()}, like
+ * {@link game.HeadlessRunner}. Fresh games first play the same ticks as the measured one a few times, so the JIT
+ * compiler has compiled, and recompiled after the rare paths of a new game, everything a tick runs; code that is
+ * not fully compiled yet may allocate where compiled code does not, as the Vector API kernel of
+ * {@link geometry.SlabBatch} does. A last game then runs a few ticks to size its buffers, and the thread's
+ * allocation counter is read around the measured ticks, during which the balls keep breaking blocks.
+ * It exits with status 1 if any bytes were allocated, or if no block broke while measuring,
+ * so it can run as a regression check.
+ * Usage: {@code java bench.AllocationCheck [ticks]}.
+ */
+public class AllocationCheck {
+    private static final int DEFAULT_TICKS = 10_000;
+    private static final int WARMUP_GAMES = 5;
+    private static final int SETTLE_TICKS = 100;
+    private static final Color[] COLORS = {Color.RED, Color.ORANGE, Color.YELLOW, Color.GREEN, Color.BLUE};
+
+    private final Game game = new Game();
+    private final ScriptedKeyboardSensor keyboard = new ScriptedKeyboardSensor();
+    private final NullDrawSurface surface = new NullDrawSurface(800, 600);
+    private long tick;
+
+    private AllocationCheck(Level level) {
+        game.setLevel(level);
+        game.setKeyboardSensor(keyboard);
+        game.initialize();
+    }
+
+    /**
+     * Runs the check.
+     *
+     * @param args optional number of measured ticks
+     */
+    public static void main(String[] args) {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TICKS;
+        Level level = buildLevel();
+        for (int i = 0; i < WARMUP_GAMES; i++) {
+            new AllocationCheck(level).run(SETTLE_TICKS + ticks);
+        }
+
+        AllocationCheck check = new AllocationCheck(level);
+        check.run(SETTLE_TICKS);
+        int blocksBefore = check.game.getRemainingBlocks();
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        check.run(ticks);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        int broken = blocksBefore - check.game.getRemainingBlocks();
+
+        System.out.println("ticks=" + ticks + " blocks broken=" + broken + " allocated bytes=" + allocated);
+        if (allocated > 0 || broken == 0) {
+            System.exit(1);
+        }
+    }
+
+    private void run(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            // Sweep the paddle back and forth so the balls also bounce off a moving collidable.
+            keyboard.setKeys((tick / 90) % 2 == 0 ? ScriptedKeyboardSensor.LEFT : ScriptedKeyboardSensor.RIGHT);
+            game.drawFrame(surface);
+            game.timePassed();
+            tick++;
+        }
+    }
+
+    private static Level buildLevel() {
+        Level level = new Level(800, 600);
+        Color wallColor = Color.GRAY;
+        level.addBlock(0, 0, 800, 30, wallColor, Level.BORDER);
+        level.addBlock(0, 0, 30, 600, wallColor, Level.BORDER);
+        level.addBlock(770, 0, 30, 600, wallColor, Level.BORDER);
+        level.addBlock(30, 580, 700, 20, wallColor, Level.BORDER);
+        level.addBlock(730, 580, 40, 20, wallColor, Level.BORDER | Level.DEATH_ZONE);
+        for (int row = 0; row < 10; row++) {
+            for (int column = 0; column < 37; column++) {
+                level.addBlock(30 + column * 20, 150 + row * 10, 20, 10, COLORS[(row + column) % COLORS.length], 0);
+            }
+        }
+        return level;
+    }
+}
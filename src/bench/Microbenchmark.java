@@ -0,0 +1,108 @@
+package bench;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * The {@code Microbenchmark} class is a small timing harness for the benchmarks in this package.
+ * Each benchmark is warmed up first so the JIT compiler settles, then timed in several rounds.
+ * Besides the time per operation it reports the bytes allocated per operation and the allocation rate,
+ * read from the JVM's per-thread allocation counter, so changes that add garbage show up in the numbers.
+ */
+public class Microbenchmark {
+    private final long warmupNanos;
+    private final long roundNanos;
+    private final int rounds;
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private long sink;
+
+    /**
+     * An operation to measure. It returns a value that depends on its work, which the harness
+     * keeps, so the compiler cannot remove the work as dead code.
+     */
+    public interface Operation {
+
+        /**
+         * Runs the operation once.
+         *
+         * @return any value computed by the operation
+         */
+        long run();
+    }
+
+    /**
+     * Constructs a harness.
+     *
+     * @param warmupMillis how long to run each benchmark before measuring
+     * @param roundMillis  how long each measured round lasts
+     * @param rounds       how many measured rounds to run
+     */
+    public Microbenchmark(long warmupMillis, long roundMillis, int rounds) {
+        this.warmupNanos = warmupMillis * 1_000_000L;
+        this.roundNanos = roundMillis * 1_000_000L;
+        this.rounds = rounds;
+    }
+
+    /**
+     * Prints the header of the result table.
+     */
+    public static void printHeader() {
+        System.out.println("benchmark,ns/op,error ns/op,bytes/op,alloc MB/s");
+    }
+
+    /**
+     * Measures an operation and prints one line of results.
+     *
+     * @param name the name of the benchmark
+     * @param op   the operation to measure
+     */
+    public void measure(String name, Operation op) {
+        runFor(op, warmupNanos);
+
+        double[] nanosPerOp = new double[rounds];
+        long totalOps = 0;
+        long totalNanos = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            long ops = runFor(op, roundNanos);
+            long elapsed = System.nanoTime() - start;
+            nanosPerOp[i] = (double) elapsed / ops;
+            totalOps += ops;
+            totalNanos += elapsed;
+        }
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+
+        double mean = (double) totalNanos / totalOps;
+        double variance = 0;
+        for (double value : nanosPerOp) {
+            variance += (value - mean) * (value - mean);
+        }
+        double error = rounds > 1 ? Math.sqrt(variance / (rounds - 1)) : 0;
+        double bytesPerOp = (double) allocated / totalOps;
+        double allocRate = allocated / (totalNanos / 1e9) / (1024 * 1024);
+        System.out.printf("%s,%.2f,%.2f,%.1f,%.1f%n", name, mean, error, bytesPerOp, allocRate);
+    }
+
+    private long runFor(Operation op, long nanos) {
+        long ops = 0;
+        long deadline = System.nanoTime() + nanos;
+        do {
+            // Check the clock only every few calls so it does not dominate fast operations.
+            for (int i = 0; i < 64; i++) {
+                sink += op.run();
+            }
+            ops += 64;
+        } while (System.nanoTime() < deadline);
+        return ops;
+    }
+
+    /**
+     * Returns the folded results of every operation run so far.
+     *
+     * @return a value that depends on all the work done
+     */
+    public long getSink() {
+        return sink;
+    }
+}
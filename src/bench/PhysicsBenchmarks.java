@@ -0,0 +1,344 @@
+package bench;
+
+import collision.SweepHit;
+import collision.Velocity;
+import game.BallCollisions;
+import game.Game;
+import game.GameEnvironment;
+import game.Level;
+import game.NullDrawSurface;
+import geometry.Line;
+import geometry.Point;
+import geometry.Rectangle;
+import geometry.SlabBatch;
+import sprites.Ball;
+import sprites.BallSwarm;
+import sprites.Block;
+import sprites.BlockGrid;
+import sprites.SpriteCollection;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * The {@code PhysicsBenchmarks} class measures the hot paths of the geometry, collision and sprite code:
+ * line and rectangle intersection, collision queries on boards of different sizes and on a grid of
+ * a million bricks, ball movement,
+ * a swarm of 50,000 balls, balls bouncing off each other, updating and drawing a sprite collection, and loading a large level file.
+ * Results are printed as CSV so runs can be compared.
+ * Usage: {@code java bench.PhysicsBenchmarks [warmupMillis roundMillis rounds]}.
+ */
+public class PhysicsBenchmarks {
+    // Number of precomputed inputs each benchmark cycles through, a power of two.
+    private static final int INPUTS = 1024;
+    private static final Random RANDOM = new Random(42);
+
+    /**
+     * Runs all the benchmarks.
+     *
+     * @param args optional warmup time in milliseconds, round time in milliseconds and number of rounds
+     */
+    public static void main(String[] args) {
+        long warmupMillis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        long roundMillis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Microbenchmark harness = new Microbenchmark(warmupMillis, roundMillis, rounds);
+
+        Microbenchmark.printHeader();
+        lineIntersection(harness);
+        rectangleIntersectionPoints(harness);
+        for (int size : new int[] {10, 1_000, 100_000}) {
+            closestCollision(harness, size);
+        }
+        slabFilter(harness, 256);
+        denseSweep(harness);
+        blockGridSweep(harness);
+        ballMoveOneStep(harness, false);
+        ballMoveOneStep(harness, true);
+        ballSwarm(harness, 50_000);
+        ballCollisions(harness, 5_000);
+        spriteCollection(harness);
+        loadLevel(harness, 10_000);
+        System.err.println("sink: " + harness.getSink());
+    }
+
+    private static void lineIntersection(Microbenchmark harness) {
+        Line[] first = new Line[INPUTS];
+        Line[] second = new Line[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            first[i] = randomLine(100, 100);
+            second[i] = randomLine(100, 100);
+        }
+        int[] index = {0};
+        harness.measure("Line.intersectionWith", () -> {
+            int i = index[0]++ & (INPUTS - 1);
+            Point p = first[i].intersectionWith(second[i]);
+            return p == null ? 0 : (long) p.getX();
+        });
+    }
+
+    private static void rectangleIntersectionPoints(Microbenchmark harness) {
+        Rectangle rect = new Rectangle(new Point(40, 40), 20, 20);
+        Line[] lines = new Line[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            lines[i] = randomLine(100, 100);
+        }
+        int[] index = {0};
+        harness.measure("Rectangle.intersectionPoints", () -> {
+            int i = index[0]++ & (INPUTS - 1);
+            return rect.intersectionPoints(lines[i]).size();
+        });
+    }
+
+    private static void closestCollision(Microbenchmark harness, int size) {
+        int columns = (int) Math.ceil(Math.sqrt(size));
+        int cellWidth = 40;
+        int cellHeight = 20;
+        GameEnvironment environment = new GameEnvironment();
+        for (int i = 0; i < size; i++) {
+            Point upperLeft = new Point((i % columns) * cellWidth, (i / columns) * cellHeight);
+            environment.addCollidable(new Block(upperLeft, cellWidth / 2, cellHeight / 2, Color.RED, false));
+        }
+        // Short trajectories, like the ones a ball queries every sub-step.
+        Line[] trajectories = new Line[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            double x = RANDOM.nextDouble() * columns * cellWidth;
+            double y = RANDOM.nextDouble() * columns * cellHeight;
+            double angle = RANDOM.nextDouble() * 2 * Math.PI;
+            trajectories[i] = new Line(x, y, x + 3 * Math.cos(angle), y + 3 * Math.sin(angle));
+        }
+        int[] index = {0};
+        harness.measure("GameEnvironment.getClosestCollision/" + size, () -> {
+            int i = index[0]++ & (INPUTS - 1);
+            return environment.getClosestCollision(trajectories[i]) == null ? 0 : 1;
+        });
+    }
+
+    private static void slabFilter(Microbenchmark harness, int size) {
+        double[] minX = new double[size];
+        double[] minY = new double[size];
+        double[] maxX = new double[size];
+        double[] maxY = new double[size];
+        for (int i = 0; i < size; i++) {
+            minX[i] = RANDOM.nextDouble() * 790;
+            minY[i] = RANDOM.nextDouble() * 590;
+            maxX[i] = minX[i] + 10;
+            maxY[i] = minY[i] + 10;
+        }
+        double[] moves = new double[INPUTS * 4];
+        for (int i = 0; i < INPUTS; i++) {
+            double angle = RANDOM.nextDouble() * 2 * Math.PI;
+            moves[i * 4] = RANDOM.nextDouble() * 800;
+            moves[i * 4 + 1] = RANDOM.nextDouble() * 600;
+            moves[i * 4 + 2] = 60 * Math.cos(angle);
+            moves[i * 4 + 3] = 60 * Math.sin(angle);
+        }
+        SlabBatch batch = new SlabBatch();
+        int[] index = {0};
+        harness.measure("SlabBatch.filter/" + size + "/" + SlabBatch.getKernelName(), () -> {
+            int i = (index[0]++ & (INPUTS - 1)) * 4;
+            return batch.filter(minX, minY, maxX, maxY, size, moves[i], moves[i + 1], moves[i + 2], moves[i + 3], 5);
+        });
+    }
+
+    private static void denseSweep(Microbenchmark harness) {
+        // Coarse cells over many small blocks, so every query gathers hundreds of candidates.
+        GameEnvironment environment = new GameEnvironment(256);
+        for (int y = 0; y < 600; y += 10) {
+            for (int x = 0; x < 800; x += 20) {
+                environment.addCollidable(new Block(new Point(x, y), 8, 4, Color.RED, false));
+            }
+        }
+        double[] moves = new double[INPUTS * 4];
+        for (int i = 0; i < INPUTS; i++) {
+            double angle = RANDOM.nextDouble() * 2 * Math.PI;
+            moves[i * 4] = RANDOM.nextDouble() * 800;
+            moves[i * 4 + 1] = RANDOM.nextDouble() * 600;
+            moves[i * 4 + 2] = 6 * Math.cos(angle);
+            moves[i * 4 + 3] = 6 * Math.sin(angle);
+        }
+        SweepHit hit = new SweepHit();
+        int[] index = {0};
+        harness.measure("GameEnvironment.sweepCircle/dense", () -> {
+            int i = (index[0]++ & (INPUTS - 1)) * 4;
+            return environment.sweepCircle(moves[i], moves[i + 1], moves[i + 2], moves[i + 3], 3, hit) ? 1 : 0;
+        });
+    }
+
+    private static void blockGridSweep(Microbenchmark harness) {
+        // A million cells of which every other one holds a brick, in one collidable.
+        int side = 1000;
+        BlockGrid grid = new BlockGrid(0, 0, side, side, 20, 10);
+        for (int cell = 0; cell < side * side; cell++) {
+            if (RANDOM.nextBoolean()) {
+                grid.setCell(cell, (cell & 1) == 0 ? Color.RED : Color.BLUE);
+            }
+        }
+        GameEnvironment environment = new GameEnvironment();
+        environment.addCollidable(grid);
+        double[] moves = new double[INPUTS * 4];
+        for (int i = 0; i < INPUTS; i++) {
+            double angle = RANDOM.nextDouble() * 2 * Math.PI;
+            moves[i * 4] = RANDOM.nextDouble() * side * 20;
+            moves[i * 4 + 1] = RANDOM.nextDouble() * side * 10;
+            moves[i * 4 + 2] = 6 * Math.cos(angle);
+            moves[i * 4 + 3] = 6 * Math.sin(angle);
+        }
+        SweepHit hit = new SweepHit();
+        int[] index = {0};
+        harness.measure("GameEnvironment.sweepCircle/grid" + side + "x" + side, () -> {
+            int i = (index[0]++ & (INPUTS - 1)) * 4;
+            return environment.sweepCircle(moves[i], moves[i + 1], moves[i + 2], moves[i + 3], 3, hit) ? 1 : 0;
+        });
+    }
+
+    private static void ballMoveOneStep(Microbenchmark harness, boolean continuous) {
+        GameEnvironment environment = new GameEnvironment();
+        addBoard(environment, null);
+        Ball ball = new Ball(new Point(400, 500), 5, Color.WHITE);
+        ball.setVelocity(Velocity.fromAngleAndSpeed(300, 8));
+        ball.setBorders(800, 600, 0);
+        ball.setGameEnvironment(environment);
+        ball.setContinuousCollision(continuous);
+        harness.measure("Ball.moveOneStep/" + (continuous ? "continuous" : "subSteps"), () -> {
+            ball.moveOneStep();
+            return ball.getX();
+        });
+    }
+
+    private static void ballSwarm(Microbenchmark harness, int size) {
+        GameEnvironment environment = new GameEnvironment();
+        addBoard(environment, null);
+        BallSwarm swarm = new BallSwarm(environment, size);
+        swarm.setBorders(800, 600, 0);
+        for (int i = 0; i < size; i++) {
+            // Spread below the blocks; the walls keep every ball on the board, so the swarm never shrinks.
+            Velocity v = Velocity.fromAngleAndSpeed(RANDOM.nextDouble() * 360, 3);
+            swarm.addBall(40 + RANDOM.nextDouble() * 720, 290 + RANDOM.nextDouble() * 270, v.getDx(), v.getDy(), 2,
+                    Color.WHITE);
+        }
+        // One operation moves every ball of the swarm one frame.
+        harness.measure("BallSwarm.stepAll/" + size, () -> {
+            swarm.stepAll();
+            return swarm.size();
+        });
+    }
+
+    private static void ballCollisions(Microbenchmark harness, int size) {
+        GameEnvironment environment = new GameEnvironment();
+        addBoard(environment, null);
+        SpriteCollection sprites = new SpriteCollection();
+        BallCollisions collisions = new BallCollisions();
+        int columns = 100;
+        for (int i = 0; i < size; i++) {
+            // A dense field below the blocks, so most balls have neighbors to bounce off.
+            Ball ball = new Ball(new Point(40 + (i % columns) * 7.2, 300 + (i / columns) * 5.2), 2, Color.WHITE);
+            ball.setVelocity(Velocity.fromAngleAndSpeed(RANDOM.nextDouble() * 360, 3));
+            ball.setBorders(800, 600, 0);
+            ball.setGameEnvironment(environment);
+            ball.setContinuousCollision(true);
+            sprites.addSprite(ball);
+            collisions.addBall(ball);
+        }
+        // One operation is a whole tick: every ball moves, then the touching balls bounce.
+        harness.measure("BallCollisions.tick/" + size, () -> {
+            sprites.notifyAllTimePassed();
+            collisions.resolve();
+            return collisions.getPairCount();
+        });
+    }
+
+    private static void loadLevel(Microbenchmark harness, int size) {
+        Level level = new Level(800, 600);
+        Color[] palette = new Color[16];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = new Color(RANDOM.nextInt(0x1000000));
+        }
+        for (int i = 0; i < size; i++) {
+            level.addBlock(RANDOM.nextInt(780), RANDOM.nextInt(580), 20, 10, palette[i % palette.length], 0);
+        }
+        Path file;
+        try {
+            file = Files.createTempFile("bench", ".bbl");
+            file.toFile().deleteOnExit();
+            level.save(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // One operation maps the file and adds every block to a new game.
+        harness.measure("Level.load/" + size, () -> {
+            try {
+                Game game = new Game();
+                game.addLevel(Level.load(file));
+                return game.getRemainingBlocks();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void spriteCollection(Microbenchmark harness) {
+        GameEnvironment environment = new GameEnvironment();
+        SpriteCollection sprites = new SpriteCollection();
+        addBoard(environment, sprites);
+        for (int i = 0; i < 10; i++) {
+            Ball ball = new Ball(new Point(100 + 60 * i, 500), 5, Color.WHITE);
+            ball.setVelocity(Velocity.fromAngleAndSpeed(200 + 15 * i, 8));
+            ball.setBorders(800, 600, 0);
+            ball.setGameEnvironment(environment);
+            ball.setContinuousCollision(true);
+            sprites.addSprite(ball);
+        }
+        NullDrawSurface surface = new NullDrawSurface(800, 600);
+        harness.measure("SpriteCollection.notifyAllTimePassed", () -> {
+            sprites.notifyAllTimePassed();
+            return 1;
+        });
+        harness.measure("SpriteCollection.drawAllOn", () -> {
+            sprites.drawAllOn(surface);
+            return 1;
+        });
+    }
+
+    /**
+     * Adds walls around an 800x600 board and a field of blocks without hit listeners,
+     * so nothing is ever removed and every run sees the same board.
+     *
+     * @param environment the environment to add the collidables to
+     * @param sprites     the collection to add the sprites to, or {@code null}
+     */
+    private static void addBoard(GameEnvironment environment, SpriteCollection sprites) {
+        Color wallColor = Color.GRAY;
+        Block[] walls = {
+                new Block(new Point(0, 0), 800, 30, wallColor, true),
+                new Block(new Point(0, 570), 800, 30, wallColor, true),
+                new Block(new Point(0, 0), 30, 600, wallColor, true),
+                new Block(new Point(770, 0), 30, 600, wallColor, true)
+        };
+        for (Block wall : walls) {
+            add(wall, environment, sprites);
+        }
+        for (int row = 0; row < 6; row++) {
+            for (int column = 0; column < 14; column++) {
+                Point upperLeft = new Point(50 + column * 50, 100 + row * 30);
+                add(new Block(upperLeft, 50, 30, Color.ORANGE, true), environment, sprites);
+            }
+        }
+    }
+
+    private static void add(Block block, GameEnvironment environment, SpriteCollection sprites) {
+        environment.addCollidable(block);
+        if (sprites != null) {
+            sprites.addSprite(block);
+        }
+    }
+
+    private static Line randomLine(int width, int height) {
+        return new Line(RANDOM.nextDouble() * width, RANDOM.nextDouble() * height,
+                RANDOM.nextDouble() * width, RANDOM.nextDouble() * height);
+    }
+}
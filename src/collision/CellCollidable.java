@@ -0,0 +1,29 @@
+package collision;
+
+/**
+ * The {@code CellCollidable} interface is implemented by collidables made of many equal cells on a grid,
+ * such as a whole field of bricks kept in one object. The game environment does not index the cells
+ * one by one; it asks the collidable for the first cell a move runs into, and the cell travels with the
+ * hit as its part, see {@link SweepHit#getPart()}.
+ */
+public interface CellCollidable extends Collidable {
+
+    /**
+     * Finds the first cell a moving point or circle runs into before a given fraction of the move.
+     * Hits on several cells at the same fraction are resolved in favor of the lowest cell number.
+     * The result is only changed when a cell is found, and then holds this collidable and the cell as part.
+     * Implementations must not change any state, so several threads may sweep at once.
+     *
+     * @param x0     the x-coordinate of the start of the move
+     * @param y0     the y-coordinate of the start of the move
+     * @param dx     the x component of the move
+     * @param dy     the y component of the move
+     * @param radius the radius of the circle, ignored for a point
+     * @param circle true to sweep a circle, false to sweep a point
+     * @param limit  only hits before this fraction of the move count
+     * @param result receives the hit, and holds the scratch state of the query
+     * @return true if a cell was hit before the limit
+     */
+    boolean sweepCells(double x0, double y0, double dx, double dy, double radius, boolean circle, double limit,
+                       SweepHit result);
+}
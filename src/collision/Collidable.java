@@ -26,6 +26,37 @@ public interface Collidable {
      * @return the new velocity after the collision
      */
     Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity);
+
+    /**
+     * Notifies the object of a collision like {@link #hit(Ball, Point, Velocity)}, but changes the given
+     * velocity to the velocity after the hit instead of creating new objects. The collidables of the game
+     * override it, so a tick of the game does not allocate anything; the default calls the other method.
+     *
+     * @param hitter     the ball that hit
+     * @param collisionX the x-coordinate of the point at which the collision occurred
+     * @param collisionY the y-coordinate of the point at which the collision occurred
+     * @param velocity   the current velocity of the object that hit this one, changed to the new velocity
+     */
+    default void hit(Ball hitter, double collisionX, double collisionY, Velocity velocity) {
+        Velocity after = hit(hitter, new Point(collisionX, collisionY),
+                new Velocity(velocity.getDx(), velocity.getDy()));
+        velocity.set(after.getDx(), after.getDy());
+    }
+    /**
+     * Notifies the object of a collision with one of its parts, like {@link #hit(Ball, double, double, Velocity)}.
+     * Moving objects pass on the part found by the query, see {@link SweepHit#getPart()}. A collidable made of
+     * many cells uses it to tell which cell was hit; the default ignores it.
+     *
+     * @param hitter     the ball that hit
+     * @param part       the part that was hit, or {@link SweepHit#NO_PART}
+     * @param collisionX the x-coordinate of the point at which the collision occurred
+     * @param collisionY the y-coordinate of the point at which the collision occurred
+     * @param velocity   the current velocity of the object that hit this one, changed to the new velocity
+     */
+    default void hit(Ball hitter, int part, double collisionX, double collisionY, Velocity velocity) {
+        hit(hitter, collisionX, collisionY, velocity);
+    }
+
     /**
      *
      * @return default false and only the block class do override to true
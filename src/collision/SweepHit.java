@@ -0,0 +1,130 @@
+package collision;
+
+import geometry.SlabBatch;
+import geometry.SlabHit;
+
+/**
+ * The {@code SweepHit} class holds the result of sweeping a moving circle through the environment:
+ * the object hit, the part of it that was hit when it is made of several, the fraction of the move
+ * completed at the moment of impact, the side of the object that was hit and the contact point on it.
+ * Unlike {@link CollisionInfo} it is mutable, so a moving object can keep one instance and reuse it for every query.
+ * It also carries the scratch state a query needs, so queries from different threads never share any.
+ */
+public class SweepHit {
+    /** The part of a hit on a collidable that is not made of parts. */
+    public static final int NO_PART = -1;
+
+    private final SlabHit slab = new SlabHit();
+    private final SlabBatch batch = new SlabBatch();
+    private Collidable collidable;
+    private int part = NO_PART;
+    private double t;
+    private int side;
+    private double contactX;
+    private double contactY;
+
+    /**
+     * Stores a new hit.
+     *
+     * @param collidable the object that was hit
+     * @param t          the fraction of the move completed at the moment of impact, between 0 and 1
+     * @param side       the side of the object that was hit, one of the {@link geometry.SlabHit} side constants
+     * @param contactX   the x-coordinate of the contact point on the object
+     * @param contactY   the y-coordinate of the contact point on the object
+     */
+    public void set(Collidable collidable, double t, int side, double contactX, double contactY) {
+        set(collidable, NO_PART, t, side, contactX, contactY);
+    }
+
+    /**
+     * Stores a new hit on one part of a collidable, such as one cell of a {@link CellCollidable}.
+     *
+     * @param collidable the object that was hit
+     * @param part       the part that was hit, or {@link #NO_PART}
+     * @param t          the fraction of the move completed at the moment of impact, between 0 and 1
+     * @param side       the side of the part that was hit, one of the {@link geometry.SlabHit} side constants
+     * @param contactX   the x-coordinate of the contact point on the object
+     * @param contactY   the y-coordinate of the contact point on the object
+     */
+    public void set(Collidable collidable, int part, double t, int side, double contactX, double contactY) {
+        this.collidable = collidable;
+        this.part = part;
+        this.t = t;
+        this.side = side;
+        this.contactX = contactX;
+        this.contactY = contactY;
+    }
+
+    /**
+     * Returns the scratch rectangle test used by queries that fill this result.
+     *
+     * @return the scratch slab test
+     */
+    public SlabHit getSlab() {
+        return this.slab;
+    }
+
+    /**
+     * Returns the scratch batch of candidate rectangles used by queries that fill this result.
+     *
+     * @return the scratch batch
+     */
+    public SlabBatch getBatch() {
+        return this.batch;
+    }
+
+    /**
+     * Returns the part of the object that was hit, to pass on to
+     * {@link Collidable#hit(sprites.Ball, int, double, double, Velocity)}.
+     *
+     * @return the part, or {@link #NO_PART}
+     */
+    public int getPart() {
+        return this.part;
+    }
+
+    /**
+     * Returns the object that was hit.
+     *
+     * @return the collidable
+     */
+    public Collidable getCollidable() {
+        return this.collidable;
+    }
+
+    /**
+     * Returns the fraction of the move completed at the moment of impact.
+     *
+     * @return a value between 0 and 1
+     */
+    public double getT() {
+        return this.t;
+    }
+
+    /**
+     * Returns the side of the object that was hit.
+     *
+     * @return one of the {@link geometry.SlabHit} side constants
+     */
+    public int getSide() {
+        return this.side;
+    }
+
+    /**
+     * Returns the x-coordinate of the contact point on the object.
+     *
+     * @return the contact point x-coordinate
+     */
+    public double getContactX() {
+        return this.contactX;
+    }
+
+    /**
+     * Returns the y-coordinate of the contact point on the object.
+     *
+     * @return the contact point y-coordinate
+     */
+    public double getContactY() {
+        return this.contactY;
+    }
+}
@@ -33,10 +33,33 @@ public class Velocity {
      * @return a new Velocity object representing the given angle and speed
      */
     public static Velocity fromAngleAndSpeed(double angle, double speed) {
-        angle = Math.toRadians(angle); // Convert angle to radians
-        double dx = speed * Math.cos(angle);
-        double dy = speed * Math.sin(angle);
-        return new Velocity(dx, dy);
+        Velocity velocity = new Velocity(0, 0);
+        velocity.setFromAngleAndSpeed(angle, speed);
+        return velocity;
+    }
+
+    /**
+     * Changes this velocity to the given angle and speed, like {@link #fromAngleAndSpeed(double, double)}
+     * but without creating a new object.
+     *
+     * @param angle the angle in degrees, measured from the positive X-axis
+     * @param speed the speed (magnitude) of the velocity
+     */
+    public void setFromAngleAndSpeed(double angle, double speed) {
+        double radians = Math.toRadians(angle); // Convert angle to radians
+        this.dx = speed * Math.cos(radians);
+        this.dy = speed * Math.sin(radians);
+    }
+
+    /**
+     * Changes both components of this velocity.
+     *
+     * @param dx the change in the X direction
+     * @param dy the change in the Y direction
+     */
+    public void set(double dx, double dy) {
+        this.dx = dx;
+        this.dy = dy;
     }
 
     /**
@@ -0,0 +1,138 @@
+package game;
+
+import collision.Velocity;
+import geometry.Point;
+import sprites.Ball;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The {@code BallCollisions} class bounces balls off each other. After every ball has moved in a tick,
+ * {@link #resolve()} updates the bounding box of every ball in a {@link SweepAndPrune} broadphase, which
+ * keeps the overlapping pairs from the previous tick and only adjusts them as balls pass each other, and
+ * then turns every pair of balls that touch and move towards each other into an elastic collision.
+ * Balls are as heavy as their area, and a ball without a velocity is left alone.
+ */
+public class BallCollisions {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final SweepAndPrune broadphase = new SweepAndPrune();
+    private final Map<Ball, Integer> ids = new IdentityHashMap<>();
+    // The ball of every broadphase id, or null for a free id.
+    private Ball[] balls = new Ball[INITIAL_CAPACITY];
+    private int idLimit;
+    private long collisions;
+
+    /**
+     * Adds a ball. Adding a ball that was already added changes nothing.
+     *
+     * @param ball the ball to add
+     */
+    public void addBall(Ball ball) {
+        if (ids.containsKey(ball)) {
+            return;
+        }
+        Point c = ball.getCenter();
+        int r = ball.getSize();
+        int id = broadphase.add(c.getX() - r, c.getY() - r, c.getX() + r, c.getY() + r);
+        if (id == balls.length) {
+            balls = Arrays.copyOf(balls, id * 2);
+        }
+        balls[id] = ball;
+        idLimit = Math.max(idLimit, id + 1);
+        ids.put(ball, id);
+    }
+
+    /**
+     * Removes a ball. Removing a ball that was not added does nothing.
+     *
+     * @param ball the ball to remove
+     */
+    public void removeBall(Ball ball) {
+        Integer id = ids.remove(ball);
+        if (id != null) {
+            broadphase.remove(id);
+            balls[id] = null;
+        }
+    }
+
+    /**
+     * Returns the number of balls.
+     *
+     * @return the ball count
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Returns the number of pairs of balls whose bounding boxes overlapped at the last {@link #resolve()}.
+     *
+     * @return the candidate pair count
+     */
+    public int getPairCount() {
+        return broadphase.pairCount();
+    }
+
+    /**
+     * Returns the number of ball-to-ball bounces since the balls were first added.
+     *
+     * @return the bounce count
+     */
+    public long getCollisionCount() {
+        return collisions;
+    }
+
+    /**
+     * Moves every ball's box to where the ball is now and bounces the balls that touch off each other.
+     * Pairs are handled in the broadphase's order, which only depends on how the balls moved,
+     * so the same game always gives the same bounces.
+     */
+    public void resolve() {
+        for (int id = 0; id < idLimit; id++) {
+            Ball ball = balls[id];
+            if (ball != null) {
+                Point c = ball.getCenter();
+                int r = ball.getSize();
+                broadphase.update(id, c.getX() - r, c.getY() - r, c.getX() + r, c.getY() + r);
+            }
+        }
+        broadphase.refresh();
+        for (int i = 0; i < broadphase.pairCount(); i++) {
+            bounce(balls[broadphase.first(i)], balls[broadphase.second(i)]);
+        }
+    }
+
+    private void bounce(Ball a, Ball b) {
+        Velocity va = a.getVelocity();
+        Velocity vb = b.getVelocity();
+        if (va == null || vb == null) {
+            return;
+        }
+        double nx = b.getCenter().getX() - a.getCenter().getX();
+        double ny = b.getCenter().getY() - a.getCenter().getY();
+        double reach = a.getSize() + b.getSize();
+        double distanceSquared = nx * nx + ny * ny;
+        // Balls with the same center have no direction to bounce in.
+        if (distanceSquared >= reach * reach || distanceSquared == 0) {
+            return;
+        }
+        double distance = Math.sqrt(distanceSquared);
+        nx /= distance;
+        ny /= distance;
+        double approach = (vb.getDx() - va.getDx()) * nx + (vb.getDy() - va.getDy()) * ny;
+        if (approach >= 0) {
+            // Already moving apart, for example right after the bounce of the previous tick.
+            return;
+        }
+        double massA = (double) a.getSize() * a.getSize();
+        double massB = (double) b.getSize() * b.getSize();
+        double shareA = 2 * massB / (massA + massB) * approach;
+        double shareB = 2 * massA / (massA + massB) * approach;
+        va.set(va.getDx() + shareA * nx, va.getDy() + shareA * ny);
+        vb.set(vb.getDx() - shareB * nx, vb.getDy() - shareB * ny);
+        collisions++;
+    }
+}
@@ -0,0 +1,172 @@
+package game;
+
+import biuoop.DrawSurface;
+import sprites.DirtyRegions;
+import sprites.SpriteCollection;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * The {@code DirtyRectRenderer} class keeps the game picture in off-screen images and only redraws
+ * the areas that changed since the last frame: the background of each changed area is cleared and
+ * only the sprites that overlap it are drawn again. The finished image is then drawn on the GUI's surface.
+ * The GUI paints a shown surface later on its own thread, so the renderer alternates between two images
+ * and brings each one up to date with the changes of the last two frames.
+ * When a sprite cannot report its changes, the whole image is redrawn.
+ * Static sprites (walls and blocks) are drawn once into a separate layer image, which is copied into
+ * each redrawn area in one step before the other sprites are drawn on top. The layer itself is only
+ * redrawn where a static sprite was added or removed.
+ */
+public class DirtyRectRenderer {
+    private final int width;
+    private final int height;
+    private final Color background;
+    private final BufferedImage[] images = new BufferedImage[2];
+    private final Graphics2D[] graphics = new Graphics2D[2];
+    private final DrawSurface[] surfaces = new DrawSurface[2];
+    private final DirtyRegions damage = new DirtyRegions();
+    private final DirtyRegions previousDamage = new DirtyRegions();
+    private final DirtyRegions redraw = new DirtyRegions();
+    private final BufferedImage staticLayer;
+    private final Graphics2D staticGraphics;
+    private final DrawSurface staticSurface;
+    private final DirtyRegions staticDamage = new DirtyRegions();
+    private boolean staticLayerDrawn;
+    // Number of images that still have to be redrawn in full.
+    private int fullRedraws = 2;
+    private long frame;
+    private int lastDrawnSprites;
+    private FrameProfiler profiler;
+
+    /**
+     * Constructs a renderer for a screen of the given size.
+     *
+     * @param width      the width of the screen
+     * @param height     the height of the screen
+     * @param background the color the screen is cleared with
+     */
+    public DirtyRectRenderer(int width, int height, Color background) {
+        this.width = width;
+        this.height = height;
+        this.background = background;
+        for (int i = 0; i < 2; i++) {
+            images[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            graphics[i] = images[i].createGraphics();
+            surfaces[i] = new GraphicsDrawSurface(graphics[i], width, height);
+        }
+        staticLayer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        staticGraphics = staticLayer.createGraphics();
+        staticSurface = new GraphicsDrawSurface(staticGraphics, width, height);
+    }
+
+    /**
+     * Brings the next image up to date with the sprites and draws it on the given surface.
+     *
+     * @param sprites the sprites to draw
+     * @param target  the surface to show the image on
+     */
+    public void render(SpriteCollection sprites, DrawSurface target) {
+        int current = (int) (frame & 1);
+        Graphics2D g = graphics[current];
+        DrawSurface surface = surfaces[current];
+
+        long start = System.nanoTime();
+        int drawn = updateStaticLayer(sprites);
+        long backgroundNanos = System.nanoTime() - start;
+
+        damage.clear();
+        if (!sprites.addDamage(damage)) {
+            fullRedraws = 2;
+        }
+        damage.addAll(staticDamage);
+        redraw.clear();
+        if (fullRedraws > 0) {
+            fullRedraws--;
+            redraw.add(0, 0, width - 1, height - 1);
+        } else {
+            // This image last showed the frame before the previous one.
+            redraw.addAll(damage);
+            redraw.addAll(previousDamage);
+        }
+
+        long drawNanos = 0;
+        for (int i = 0; i < redraw.size(); i++) {
+            start = System.nanoTime();
+            g.setClip(redraw.getX(i), redraw.getY(i), redraw.getWidth(i), redraw.getHeight(i));
+            g.drawImage(staticLayer, 0, 0, null);
+            long blitted = System.nanoTime();
+            backgroundNanos += blitted - start;
+            drawn += sprites.drawOverStaticOn(surface, redraw, i);
+            drawNanos += System.nanoTime() - blitted;
+        }
+        g.setClip(null);
+        lastDrawnSprites = drawn;
+        if (profiler != null) {
+            profiler.record(FrameProfiler.BACKGROUND, backgroundNanos);
+            profiler.record(FrameProfiler.DRAW, drawNanos);
+        }
+
+        previousDamage.clear();
+        previousDamage.addAll(damage);
+        frame++;
+        target.drawImage(0, 0, images[current]);
+    }
+
+    /**
+     * Redraws the static layer where static sprites were added or removed, or in full the first time.
+     *
+     * @param sprites the sprites to draw
+     * @return the number of sprite draws
+     */
+    private int updateStaticLayer(SpriteCollection sprites) {
+        staticDamage.clear();
+        sprites.addStaticDamage(staticDamage);
+        if (!staticLayerDrawn) {
+            staticLayerDrawn = true;
+            staticDamage.clear();
+            staticDamage.add(0, 0, width - 1, height - 1);
+        }
+        int drawn = 0;
+        for (int i = 0; i < staticDamage.size(); i++) {
+            staticGraphics.setClip(staticDamage.getX(i), staticDamage.getY(i),
+                    staticDamage.getWidth(i), staticDamage.getHeight(i));
+            staticGraphics.setColor(background);
+            staticGraphics.fillRect(staticDamage.getX(i), staticDamage.getY(i),
+                    staticDamage.getWidth(i), staticDamage.getHeight(i));
+            drawn += sprites.drawStaticOn(staticSurface, staticDamage, i);
+        }
+        staticGraphics.setClip(null);
+        return drawn;
+    }
+
+    /**
+     * Makes the next two frames redraw the whole screen and the static layer, for example after
+     * the background changed.
+     */
+    public void invalidate() {
+        fullRedraws = 2;
+        staticLayerDrawn = false;
+    }
+
+    /**
+     * Sets the profiler the renderer records its background and drawing times in.
+     * Updating the static layer counts as background.
+     *
+     * @param profiler the profiler, or {@code null} to stop recording
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Returns how many times a sprite was drawn in the last frame, summed over the redrawn areas
+     * and including the sprites drawn into the static layer.
+     *
+     * @return the number of sprite draws in the last frame
+     */
+    public int getLastDrawnSprites() {
+        return lastDrawnSprites;
+    }
+}
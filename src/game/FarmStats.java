@@ -0,0 +1,132 @@
+package game;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code FarmStats} class adds up the results of the matches of a {@link MatchFarm}.
+ * Every total is a {@link LongAdder} or {@link LongAccumulator}, so the games that finish at the same time
+ * on different threads add their results without locking or retrying on one shared counter.
+ * The totals can be read while the farm is running; they are then only as recent as the matches
+ * that finished, and a total read right after another may already include one more match.
+ */
+public class FarmStats {
+    private final LongAdder games = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder score = new LongAdder();
+    private final LongAdder framesToClear = new LongAdder();
+    private final LongAdder ballsLost = new LongAdder();
+    private final LongAccumulator bestScore = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    private final LongAccumulator fastestClear = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+    /**
+     * Adds the result of a finished match.
+     *
+     * @param result the result
+     */
+    void add(MatchResult result) {
+        RunResult run = result.getResult();
+        frames.add(run.getFrames());
+        score.add(run.getScore());
+        ballsLost.add(run.getBallsLost());
+        bestScore.accumulate(run.getScore());
+        if (run.isWon()) {
+            framesToClear.add(run.getFrames());
+            fastestClear.accumulate(run.getFrames());
+            wins.increment();
+        }
+        games.increment();
+    }
+
+    /**
+     * Returns the number of finished matches.
+     *
+     * @return the match count
+     */
+    public long getGames() {
+        return games.sum();
+    }
+
+    /**
+     * Returns the number of matches that cleared all the blocks.
+     *
+     * @return the win count
+     */
+    public long getWins() {
+        return wins.sum();
+    }
+
+    /**
+     * Returns the number of frames simulated over all the matches.
+     *
+     * @return the frame count
+     */
+    public long getTotalFrames() {
+        return frames.sum();
+    }
+
+    /**
+     * Returns the sum of the final scores.
+     *
+     * @return the total score
+     */
+    public long getTotalScore() {
+        return score.sum();
+    }
+
+    /**
+     * Returns the average final score.
+     *
+     * @return the average score, or 0 before any match finished
+     */
+    public double getAverageScore() {
+        long count = games.sum();
+        return count == 0 ? 0 : (double) score.sum() / count;
+    }
+
+    /**
+     * Returns the best final score.
+     *
+     * @return the best score, or 0 before any match finished
+     */
+    public long getBestScore() {
+        return games.sum() == 0 ? 0 : bestScore.get();
+    }
+
+    /**
+     * Returns the average number of frames the won matches took to clear all the blocks.
+     *
+     * @return the average frame count, or -1 if no match was won
+     */
+    public double getAverageFramesToClear() {
+        long count = wins.sum();
+        return count == 0 ? -1 : (double) framesToClear.sum() / count;
+    }
+
+    /**
+     * Returns the fewest frames a match took to clear all the blocks.
+     *
+     * @return the frame count, or -1 if no match was won
+     */
+    public long getFastestClear() {
+        long fastest = fastestClear.get();
+        return fastest == Long.MAX_VALUE ? -1 : fastest;
+    }
+
+    /**
+     * Returns the number of balls lost over all the matches.
+     *
+     * @return the lost balls
+     */
+    public long getBallsLost() {
+        return ballsLost.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("games=%d wins=%d frames=%d avgScore=%.1f bestScore=%d avgClear=%.1f fastestClear=%d"
+                        + " ballsLost=%d", getGames(), getWins(), getTotalFrames(), getAverageScore(), getBestScore(),
+                getAverageFramesToClear(), getFastestClear(), getBallsLost());
+    }
+}
@@ -0,0 +1,148 @@
+package game;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code FixedTimestep} class drives a game loop at a fixed tick rate using {@link System#nanoTime()}.
+ * Elapsed time is collected in an accumulator and paid out in whole ticks, so the game runs at the same
+ * speed on every machine, however long each frame takes. Waiting for the next tick parks the thread
+ * until shortly before the deadline and spins for the rest, which is far more precise than sleeping.
+ * The clock counts late frames (the work of a frame ran past the next tick's deadline) and dropped ticks
+ * (ticks skipped because the loop fell too far behind to catch up).
+ */
+public class FixedTimestep {
+    // The last part of a wait is spun instead of parked, since parking may oversleep by about this much.
+    private static final long SPIN_NANOS = 1_000_000L;
+
+    private final long tickNanos;
+    private final int maxTicksPerAdvance;
+    private long lastTime;
+    private long accumulator;
+    private long ticks;
+    private long droppedTicks;
+    private long lateFrames;
+
+    /**
+     * Constructs a clock.
+     *
+     * @param ticksPerSecond     the tick rate
+     * @param maxTicksPerAdvance the most ticks paid out at once; ticks beyond that are dropped
+     */
+    public FixedTimestep(int ticksPerSecond, int maxTicksPerAdvance) {
+        if (ticksPerSecond <= 0 || maxTicksPerAdvance <= 0) {
+            throw new IllegalArgumentException("tick rate and tick limit must be positive");
+        }
+        this.tickNanos = 1_000_000_000L / ticksPerSecond;
+        this.maxTicksPerAdvance = maxTicksPerAdvance;
+    }
+
+    /**
+     * Starts measuring time from now, with an empty accumulator.
+     */
+    public void start() {
+        this.lastTime = System.nanoTime();
+        this.accumulator = 0;
+    }
+
+    /**
+     * Adds the time since the last call to the accumulator and pays it out in whole ticks.
+     *
+     * @return the number of ticks to run now
+     */
+    public int advance() {
+        long now = System.nanoTime();
+        accumulator += now - lastTime;
+        lastTime = now;
+        long due = accumulator / tickNanos;
+        accumulator -= due * tickNanos;
+        if (due > maxTicksPerAdvance) {
+            droppedTicks += due - maxTicksPerAdvance;
+            due = maxTicksPerAdvance;
+        }
+        ticks += due;
+        return (int) due;
+    }
+
+    /**
+     * Waits until the next tick is due. If it is already overdue, the frame is counted as late
+     * and the method returns right away.
+     */
+    public void awaitNextTick() {
+        long deadline = lastTime + tickNanos - accumulator;
+        if (System.nanoTime() > deadline) {
+            lateFrames++;
+            return;
+        }
+        waitUntil(deadline);
+    }
+
+    /**
+     * Waits until the given {@link System#nanoTime()} value, parking while far from it and spinning at the end.
+     *
+     * @param deadline the time to wait for
+     */
+    public static void waitUntil(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        while (remaining > SPIN_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+            remaining = deadline - System.nanoTime();
+        }
+        while (deadline - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Returns how far the clock is between the last tick and the next one, as of the last {@link #advance()}.
+     *
+     * @return a fraction between 0 (inclusive) and 1 (exclusive)
+     */
+    public double getAlpha() {
+        return (double) accumulator / tickNanos;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} value at which the last tick paid out was due.
+     *
+     * @return the time of the last tick
+     */
+    public long getLastTickTime() {
+        return lastTime - accumulator;
+    }
+
+    /**
+     * Returns the length of one tick.
+     *
+     * @return the tick length in nanoseconds
+     */
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * Returns the number of ticks paid out so far.
+     *
+     * @return the tick count
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Returns the number of ticks skipped because the loop fell too far behind.
+     *
+     * @return the dropped tick count
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * Returns the number of frames whose work ran past the next tick's deadline.
+     *
+     * @return the late frame count
+     */
+    public long getLateFrames() {
+        return lateFrames;
+    }
+}
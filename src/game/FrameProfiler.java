@@ -0,0 +1,167 @@
+package game;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The {@code FrameProfiler} class keeps a {@link LatencyHistogram} for each phase of a frame
+ * (filling the background, drawing the sprites, showing the frame, updating the sprites and the time
+ * spent in collision queries) and for the number of collision queries and candidate tests per frame.
+ * Recording never creates objects. The percentiles can be shown as a small overlay at the top
+ * of the screen and written to a CSV file, so runs can be compared.
+ */
+public class FrameProfiler {
+    /** Filling the background, or copying the cached background layer. */
+    public static final int BACKGROUND = 0;
+    /** Drawing the sprites. */
+    public static final int DRAW = 1;
+    /** Showing the finished frame with {@code gui.show}. */
+    public static final int SHOW = 2;
+    /** Updating the sprites with {@code notifyAllTimePassed}. */
+    public static final int UPDATE = 3;
+    /** Time spent in collision queries during one frame. */
+    public static final int COLLISION = 4;
+    /** Collision queries per frame. */
+    public static final int QUERIES = 5;
+    /** Collidables tested by collision queries per frame. */
+    public static final int CANDIDATES = 6;
+
+    private static final String[] NAMES = {"background", "draw", "show", "update", "collision", "queries",
+        "candidates"};
+    private static final String[] SHORT_NAMES = {"bg", "draw", "show", "upd", "coll", "q", "cand"};
+    private static final boolean[] IS_TIME = {true, true, true, true, true, false, false};
+    // The overlay text is rebuilt every this many frames, so drawing it does not create strings every frame.
+    private static final int OVERLAY_REFRESH_FRAMES = 30;
+    private static final Color OVERLAY_COLOR = Color.BLACK;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[NAMES.length];
+    private final QueryStats queryStats = new QueryStats();
+    private boolean overlay;
+    private long frames;
+    private String overlayTop = "";
+    private String overlayBottom = "";
+
+    /**
+     * Constructs a profiler with empty histograms.
+     */
+    public FrameProfiler() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Returns the statistics a {@link GameEnvironment} should count its queries in.
+     *
+     * @return the query statistics
+     */
+    public QueryStats getQueryStats() {
+        return queryStats;
+    }
+
+    /**
+     * Records how long a phase took.
+     *
+     * @param phase   one of the phase constants
+     * @param elapsed the duration in nanoseconds
+     */
+    public void record(int phase, long elapsed) {
+        histograms[phase].record(elapsed);
+    }
+
+    /**
+     * Records the time since the given start in a phase.
+     *
+     * @param phase one of the phase constants
+     * @param start the {@link System#nanoTime()} value at which the phase started
+     */
+    public void recordSince(int phase, long start) {
+        histograms[phase].record(System.nanoTime() - start);
+    }
+
+    /**
+     * Ends a simulation frame, recording the collision queries made since the previous call.
+     */
+    public void endFrame() {
+        histograms[COLLISION].record(queryStats.takeNanos());
+        histograms[QUERIES].record(queryStats.takeQueries());
+        histograms[CANDIDATES].record(queryStats.takeCandidates());
+        frames++;
+    }
+
+    /**
+     * Returns the histogram of a phase.
+     *
+     * @param phase one of the phase constants
+     * @return the histogram
+     */
+    public LatencyHistogram getHistogram(int phase) {
+        return histograms[phase];
+    }
+
+    /**
+     * Turns the overlay on or off.
+     *
+     * @param show true to draw the overlay
+     */
+    public void setOverlay(boolean show) {
+        this.overlay = show;
+    }
+
+    /**
+     * Draws p50/p99/max of every phase in small text to the left of the score, if the overlay is on.
+     * Times are in milliseconds.
+     *
+     * @param d the surface to draw on
+     */
+    public void drawOverlay(DrawSurface d) {
+        if (!overlay) {
+            return;
+        }
+        if (frames % OVERLAY_REFRESH_FRAMES == 0 || overlayTop.isEmpty()) {
+            overlayTop = summary(BACKGROUND) + "  " + summary(DRAW) + "  " + summary(SHOW);
+            overlayBottom = summary(UPDATE) + "  " + summary(COLLISION) + "  " + summary(QUERIES)
+                    + "  " + summary(CANDIDATES);
+        }
+        d.setColor(OVERLAY_COLOR);
+        d.drawText(35, 12, overlayTop, 10);
+        d.drawText(35, 25, overlayBottom, 10);
+    }
+
+    private String summary(int phase) {
+        LatencyHistogram h = histograms[phase];
+        if (IS_TIME[phase]) {
+            return String.format(Locale.ROOT, "%s %.2f/%.2f/%.2f", SHORT_NAMES[phase],
+                    h.percentile(0.5) / 1e6, h.percentile(0.99) / 1e6, h.getMax() / 1e6);
+        }
+        return String.format(Locale.ROOT, "%s %d/%d/%d", SHORT_NAMES[phase],
+                h.percentile(0.5), h.percentile(0.99), h.getMax());
+    }
+
+    /**
+     * Writes one line per phase to a CSV file: the phase, its unit, the number of samples,
+     * p50, p90, p99, max and mean. Times are in microseconds.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeCsv(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println("phase,unit,count,p50,p90,p99,max,mean");
+            for (int i = 0; i < histograms.length; i++) {
+                LatencyHistogram h = histograms[i];
+                double scale = IS_TIME[i] ? 1e3 : 1;
+                out.printf(Locale.ROOT, "%s,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f%n", NAMES[i], IS_TIME[i] ? "us" : "count",
+                        h.getCount(), h.percentile(0.5) / scale, h.percentile(0.9) / scale,
+                        h.percentile(0.99) / scale, h.getMax() / scale, h.getMean() / scale);
+            }
+        }
+    }
+}
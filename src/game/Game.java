@@ -10,13 +10,18 @@ import geometry.Point;
 import sprites.SpriteCollection;
 import sprites.Sprite;
 import sprites.Ball;
+import sprites.BallSwarm;
+import sprites.Block;
+import sprites.BlockGrid;
 import sprites.Paddle;
 import sprites.BlockRemover;
-import sprites.Block;
 import sprites.ScoreIndicator;
 import sprites.BallRemover;
+import observe.HitEventQueue;
 
 import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The {@code Game} class is responsible for initializing, managing, and running the game.
@@ -24,104 +29,440 @@ import java.awt.Color;
  * It also renders joyful visual elements such as bright colors and a smiling face.
  */
 public class Game {
+    private static final int FRAMES_PER_SECOND = 60;
+    // Ticks run back to back after a stall before the rest are dropped.
+    private static final int MAX_TICKS_PER_FRAME = 5;
+    private static final Color BACKGROUND = new Color(240, 255, 255); // Azure background
     private final SpriteCollection sprites = new SpriteCollection();
     private final GameEnvironment environment = new GameEnvironment();
     private Ball[] balls;
     private GUI gui;
+    private KeyboardSensor keyboard;
     private final Counter blockCounter = new Counter();
     private final Counter ballCounter = new Counter();
     private final Counter scoreCounter = new Counter();
+    private final HitEventQueue hitEvents = new HitEventQueue();
+    private final BallCollisions ballCollisions = new BallCollisions();
     private BlockRemover blockRemover;
     private BallRemover ballRemover;
     private ScoreIndicator scoreIndicator;
     private ScoreTrackingListener scoreTrackingListener;
+    private boolean bonusGiven = false;
+    private DirtyRectRenderer renderer;
+    private int ticksPerSecond = FRAMES_PER_SECOND;
+    private volatile FixedTimestep timestep;
+    private FrameProfiler profiler;
+    private InputRecorder recorder;
+    private ScriptedKeyboardSensor recordedKeys;
+    private Level level;
+    private Block[] levelBlocks = new Block[0];
+    private Paddle paddle;
+    private int swarmSize;
 
     /**
-     * Initializes the game environment by adding the paddle, walls, internal blocks,
-     * balls, and a decorative smiley face.
+     * Initializes the game environment by adding the paddle, the blocks of the level and the balls.
+     * Without a level set by {@link #setLevel(Level)} the game plays {@link Level#standard()}.
      */
     public void initialize() {
-        int firstBlockHeight = 150;
-        int blockWidth = 50;
+        if (recorder != null) {
+            recordedKeys = new ScriptedKeyboardSensor();
+        }
+        if (level == null) {
+            level = Level.standard();
+        }
         int blockHeight = 30;
         createScoreIndicator(blockHeight);
         createBalls();
         addPaddle();
-        addWalls(blockHeight);
-        addInsideBlocks(firstBlockHeight, blockWidth, blockHeight);
+        addLevel(level);
         for (Ball ball : balls) {
             ball.setGameEnvironment(environment);
         }
 
         addBalls();
+        if (swarmSize > 0) {
+            addSwarm();
+        }
         ballRemover = new BallRemover(this, ballCounter);
         blockRemover = new BlockRemover(this, blockCounter);
         scoreTrackingListener = new ScoreTrackingListener(scoreCounter);
 
-        for (Collidable c : environment.getCollidablesObj()) {
-            if (c.isBlock()) {
-                Block block = (Block) c;
-                if (block.isBottomBlock()) {
-                    block.addHitListener(ballRemover);
-                } else {
-                    block.addHitListener(blockRemover);
-                    addListeners(block);
-                    block.addHitListener(scoreTrackingListener);
-                }
-            }
-        }
+        hitEvents.addHitListener(HitEventQueue.DEATH_ZONE, ballRemover);
+        hitEvents.addHitListener(HitEventQueue.BREAKABLE, blockRemover);
+        hitEvents.addHitListener(HitEventQueue.BREAKABLE, scoreTrackingListener);
     }
 
     /**
      * Starts the game loop. It repeatedly draws all game elements, updates them,
-     * and refreshes the screen at a fixed frame rate.
+     * and refreshes the screen. The game is updated at a fixed tick rate measured with
+     * {@link System#nanoTime()}; when drawing falls behind, several ticks run before the next frame.
      */
     public void run() {
         Sleeper sleeper = new Sleeper();
-        int framesPerSecond = 60;
-        int millisecondsPerFrame = 1000 / framesPerSecond;
-
-        boolean bonusGiven = false;
+        FixedTimestep clock = new FixedTimestep(ticksPerSecond, MAX_TICKS_PER_FRAME);
+        this.timestep = clock;
+        clock.start();
 
         while (ballCounter.getValue() != 0) {
-            long startTime = System.currentTimeMillis();
             DrawSurface d = gui.getDrawSurface();
-            d.setColor(new Color(240, 255, 255)); // Azure background
-            d.fillRectangle(0, 0, d.getWidth(), d.getHeight());
-
-            if (blockCounter.getValue() == 0) {
-                scoreTrackingListener.getCurrentScore().increase(100);
-                bonusGiven = true;
-            }
-            scoreIndicator.setCounter(scoreTrackingListener.getCurrentScore());
-            this.sprites.drawAllOn(d);
+            renderFrame(d);
+            long start = profileStart();
             gui.show(d);
-            this.sprites.notifyAllTimePassed();
-            long usedTime = System.currentTimeMillis() - startTime;
-            long milliSecondLeftToSleep = millisecondsPerFrame - usedTime;
-            if (milliSecondLeftToSleep > 0) {
-                sleeper.sleepFor(milliSecondLeftToSleep);
-            }
+            profileEnd(FrameProfiler.SHOW, start);
             if (bonusGiven) {
                 System.out.println("You Win!");
                 System.out.println("Your score is: " + scoreTrackingListener.getCurrentScore().getValue());
                 DrawSurface finalScreen = gui.getDrawSurface();
-                finalScreen.setColor(new Color(240, 255, 255));
+                finalScreen.setColor(BACKGROUND);
                 finalScreen.fillRectangle(0, 0, finalScreen.getWidth(), finalScreen.getHeight());
                 this.sprites.drawAllOn(finalScreen);
                 gui.show(finalScreen);
                 sleeper.sleepFor(2000);
                 break;
             }
+            clock.awaitNextTick();
+            int ticks = clock.advance();
+            for (int i = 0; i < ticks && ballCounter.getValue() != 0; i++) {
+                timePassed();
+            }
         }
         if (!bonusGiven) {
             System.out.println("Game Over.");
             System.out.println("Your score is: " + scoreTrackingListener.getCurrentScore().getValue());
         }
+        printLoopStats(clock);
 
         gui.close();
     }
 
+    /**
+     * Starts the game like {@link #run()}, but with the simulation on its own thread.
+     * The simulation thread updates the game at a fixed tick rate and publishes a {@link WorldSnapshot}
+     * after each batch of ticks; the calling thread draws the latest snapshot at the frame rate, placing
+     * the balls and the paddle between their last two positions according to the time since the tick.
+     * The two threads only meet in a lock-free {@link SnapshotBuffer}, so a slow show never delays
+     * the physics and a heavy physics tick never delays the screen.
+     */
+    public void runThreaded() {
+        Sleeper sleeper = new Sleeper();
+        SnapshotBuffer snapshots = new SnapshotBuffer();
+        FixedTimestep simulationClock = new FixedTimestep(ticksPerSecond, MAX_TICKS_PER_FRAME);
+        this.timestep = simulationClock;
+        Thread simulation = new Thread(() -> simulate(snapshots, simulationClock), "simulation");
+        simulation.setDaemon(true);
+        simulation.start();
+
+        FixedTimestep frameClock = new FixedTimestep(FRAMES_PER_SECOND, 1);
+        frameClock.start();
+        WorldSnapshot snapshot = snapshots.latest();
+        while (!snapshot.isOver()) {
+            snapshot = snapshots.latest();
+            if (snapshot.getFrame() >= 0) {
+                DrawSurface d = gui.getDrawSurface();
+                long start = profileStart();
+                snapshot.drawOn(d, BACKGROUND, snapshot.alphaAt(System.nanoTime()));
+                profileEnd(FrameProfiler.DRAW, start);
+                if (profiler != null) {
+                    profiler.drawOverlay(d);
+                }
+                start = profileStart();
+                gui.show(d);
+                profileEnd(FrameProfiler.SHOW, start);
+            }
+            frameClock.awaitNextTick();
+            frameClock.advance();
+        }
+
+        if (snapshot.isWon()) {
+            System.out.println("You Win!");
+            System.out.println("Your score is: " + snapshot.getScore());
+            sleeper.sleepFor(2000);
+        } else {
+            System.out.println("Game Over.");
+            System.out.println("Your score is: " + snapshot.getScore());
+        }
+        try {
+            simulation.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        printLoopStats(simulationClock);
+        gui.close();
+    }
+
+    /**
+     * The simulation loop of {@link #runThreaded()}: publishes a snapshot of the current frame,
+     * then runs the ticks that are due, until no balls are left or the player won.
+     *
+     * @param snapshots the buffer to publish the snapshots to
+     * @param clock     the clock that paces the ticks
+     */
+    private void simulate(SnapshotBuffer snapshots, FixedTimestep clock) {
+        clock.start();
+        long tick = 0;
+        while (true) {
+            prepareFrame();
+            WorldSnapshot snapshot = snapshots.back();
+            snapshot.capture(this.sprites, tick, scoreTrackingListener.getCurrentScore().getValue());
+            snapshot.setTickTime(clock.getLastTickTime(), clock.getTickNanos());
+            if (bonusGiven || ballCounter.getValue() == 0) {
+                snapshot.setOver(bonusGiven);
+                snapshots.publish();
+                return;
+            }
+            snapshots.publish();
+            clock.awaitNextTick();
+            int ticks = clock.advance();
+            for (int i = 0; i < ticks && ballCounter.getValue() != 0; i++) {
+                timePassed();
+                tick++;
+            }
+        }
+    }
+
+    // Prints the loop counters when profiling; a normal game keeps them to getTimestep().
+    private void printLoopStats(FixedTimestep clock) {
+        if (profiler == null) {
+            return;
+        }
+        System.out.println("Ticks: " + clock.getTicks() + ", late frames: " + clock.getLateFrames()
+                + ", dropped ticks: " + clock.getDroppedTicks());
+    }
+
+    /**
+     * Sets how many times per second the game is updated. Takes effect when the game loop starts.
+     *
+     * @param ticksPerSecond the tick rate
+     */
+    public void setTickRate(int ticksPerSecond) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("tick rate must be positive: " + ticksPerSecond);
+        }
+        this.ticksPerSecond = ticksPerSecond;
+    }
+
+    /**
+     * Returns the clock of the running (or last) game loop, which counts ticks, late frames and dropped ticks.
+     *
+     * @return the clock, or {@code null} if no loop was started
+     */
+    public FixedTimestep getTimestep() {
+        return this.timestep;
+    }
+
+    /**
+     * Draws one frame of the game. Before drawing, it awards the bonus if all the blocks are cleared.
+     *
+     * @param d the surface to draw on
+     */
+    public void drawFrame(DrawSurface d) {
+        prepareFrame();
+        long start = profileStart();
+        d.setColor(BACKGROUND);
+        d.fillRectangle(0, 0, d.getWidth(), d.getHeight());
+        profileEnd(FrameProfiler.BACKGROUND, start);
+        start = profileStart();
+        this.sprites.drawAllOn(d);
+        profileEnd(FrameProfiler.DRAW, start);
+        if (profiler != null) {
+            profiler.drawOverlay(d);
+        }
+    }
+
+    /**
+     * Draws one frame of the game like {@link #drawFrame(DrawSurface)}, but only redraws the areas
+     * that changed since the previous frame and then shows the whole picture on the given surface.
+     *
+     * @param d the surface to draw on
+     */
+    public void renderFrame(DrawSurface d) {
+        prepareFrame();
+        if (renderer == null) {
+            renderer = new DirtyRectRenderer(d.getWidth(), d.getHeight(), BACKGROUND);
+            renderer.setProfiler(profiler);
+        }
+        renderer.render(this.sprites, d);
+        if (profiler != null) {
+            profiler.drawOverlay(d);
+        }
+    }
+
+    private void prepareFrame() {
+        // The bonus is awarded once, however many frames are drawn after the last block is cleared.
+        if (!bonusGiven && blockCounter.getValue() == 0) {
+            scoreTrackingListener.getCurrentScore().increase(100);
+            bonusGiven = true;
+        }
+        scoreIndicator.setCounter(scoreTrackingListener.getCurrentScore());
+    }
+
+    /**
+     * Advances the game by one tick without drawing, for programs that control the paddle themselves and never
+     * look at the screen. {@link #timePassed()} runs, and when the tick cleared the last block while a ball is
+     * still in play, the bonus is awarded right away, so {@link #hasWon()} is true as soon as the step returns.
+     * The score goes exactly like in a game that draws a frame between ticks, which awards the bonus before
+     * drawing. Stepping a game that is over, won or lost, does nothing.
+     */
+    public void step() {
+        prepareFrame();
+        if (bonusGiven || ballCounter.getValue() == 0) {
+            return;
+        }
+        timePassed();
+        if (ballCounter.getValue() != 0) {
+            prepareFrame();
+        }
+    }
+
+    /**
+     * Advances the game by one frame, notifying every sprite that time has passed.
+     * Once every sprite has moved, the balls that touch bounce off each other and then
+     * the hits of the frame are delivered to the listeners.
+     */
+    public void timePassed() {
+        if (recorder != null) {
+            recordedKeys.setKeys(ScriptedKeyboardSensor.keysOf(keyboard));
+            recorder.record(recordedKeys.getKeys(), stateChecksum());
+        }
+        long start = profileStart();
+        this.sprites.notifyAllTimePassed();
+        this.ballCollisions.resolve();
+        this.hitEvents.dispatch();
+        if (profiler != null) {
+            profiler.recordSince(FrameProfiler.UPDATE, start);
+            profiler.endFrame();
+        }
+    }
+
+    /**
+     * Sets the profiler that records how long each phase of a frame takes and counts the collision
+     * queries. With a profiler set, the frames also show its overlay if it is turned on.
+     *
+     * @param profiler the profiler, or {@code null} to stop profiling
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+        this.environment.setQueryStats(profiler == null ? null : profiler.getQueryStats());
+        if (renderer != null) {
+            renderer.setProfiler(profiler);
+        }
+    }
+
+    private long profileStart() {
+        return profiler == null ? 0 : System.nanoTime();
+    }
+
+    private void profileEnd(int phase, long start) {
+        if (profiler != null) {
+            profiler.recordSince(phase, start);
+        }
+    }
+
+    /**
+     * Sets the recorder that records the keys of every tick, so the game can be replayed later.
+     * Must be called before {@link #initialize()}.
+     *
+     * @param recorder the recorder, or {@code null} to not record
+     */
+    public void setInputRecorder(InputRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Computes a checksum of the game state: the score, the counters, and the exact position and velocity
+     * of every ball and the position of the paddle. Two runs of the same game with the same keys have
+     * the same checksum after every tick, so a replay can compare it with the recorded one.
+     *
+     * @return the checksum
+     */
+    public long stateChecksum() {
+        long hash = scoreCounter.getValue();
+        hash = hash * 31 + blockCounter.getValue();
+        hash = hash * 31 + ballCounter.getValue();
+        for (int i = 0; i < sprites.size(); i++) {
+            Sprite s = sprites.get(i);
+            if (s instanceof Ball) {
+                Ball ball = (Ball) s;
+                Point center = ball.getCenter();
+                hash = mix(hash, Double.doubleToLongBits(center.getX()));
+                hash = mix(hash, Double.doubleToLongBits(center.getY()));
+                hash = mix(hash, Double.doubleToLongBits(ball.getVelocity().getDx()));
+                hash = mix(hash, Double.doubleToLongBits(ball.getVelocity().getDy()));
+            } else if (s instanceof Paddle) {
+                hash = mix(hash, Double.doubleToLongBits(((Paddle) s).getCollisionRectangle().getUpperLeft().getX()));
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Checks whether the player cleared all the blocks and got the bonus.
+     *
+     * @return true if the game was won
+     */
+    public boolean hasWon() {
+        return bonusGiven;
+    }
+
+    /**
+     * Returns the current score.
+     *
+     * @return the score
+     */
+    public int getScore() {
+        return scoreCounter.getValue();
+    }
+
+    /**
+     * Returns the number of blocks left to clear.
+     *
+     * @return the remaining blocks
+     */
+    public int getRemainingBlocks() {
+        return blockCounter.getValue();
+    }
+
+    /**
+     * Returns the number of balls still in play.
+     *
+     * @return the remaining balls
+     */
+    public int getRemainingBalls() {
+        return ballCounter.getValue();
+    }
+
+    /**
+     * Returns the balls the game started with, including the ones that were lost since.
+     *
+     * @return the balls, in the order they were created
+     */
+    Ball[] getBalls() {
+        return balls;
+    }
+
+    /**
+     * Returns the paddle.
+     *
+     * @return the paddle, or {@code null} before {@link #initialize()}
+     */
+    Paddle getPaddle() {
+        return paddle;
+    }
+
+    /**
+     * Returns the blocks of the level, including the ones that were broken since.
+     *
+     * @return the blocks, in the order of the level
+     */
+    Block[] getLevelBlocks() {
+        return levelBlocks;
+    }
+
     /**
      * Creates the balls used in the game with initial position, color, size and velocity.
      */
@@ -132,7 +473,8 @@ public class Game {
         for (int i = 0; i < numOfBalls; i++) {
             Ball ball = new Ball(new Point(400, 450 - m), 5, new Color(255, 230, 200));
             ball.setVelocity(6 + i / 10, 5);
-            ball.setBorders(800, 600, 30);
+            ball.setBorders(level.getWidth(), level.getHeight(), 30);
+            ball.setContinuousCollision(true);
             balls1[i] = ball;
         }
         ballCounter.increase(numOfBalls);
@@ -150,25 +492,21 @@ public class Game {
     }
 
     /**
-     * Adds four wall blocks (top, bottom, left, right) to the game to prevent
-     * balls and other elements from exiting the screen.
-     *
-     * @param wallThick the thickness of the wall blocks
+     * Adds the extra balls set by {@link #setSwarmSize(int)} as one {@link BallSwarm}, spread over the lower
+     * part of the screen and moving up at random angles. The positions come from a fixed seed, so a recorded
+     * game replays the same way.
      */
-    public void addWalls(int wallThick) {
-        Color wallColor = new Color(173, 216, 230);
-        Block topBorder = new Block(new Point(0, wallThick), 800, wallThick, wallColor, true);
-        topBorder.addToGame(this);
-
-        Block rightBorder = new Block(new Point(800 - wallThick, 0), wallThick, 600, wallColor, true);
-        rightBorder.addToGame(this);
-
-        Block leftBorder = new Block(new Point(0, 0), wallThick, 600, wallColor, true);
-        leftBorder.addToGame(this);
-
-        Block bottomBorder = new Block(new Point(0, 600 - wallThick), 800, wallThick, wallColor, true);
-        bottomBorder.addToGame(this);
-        bottomBorder.setBottomBlock(true);
+    private void addSwarm() {
+        BallSwarm swarm = new BallSwarm(environment, swarmSize);
+        swarm.setBorders(level.getWidth(), level.getHeight(), 30);
+        Random random = new Random(swarmSize);
+        Color color = new Color(255, 230, 200);
+        for (int i = 0; i < swarmSize; i++) {
+            double x = 40 + random.nextDouble() * (level.getWidth() - 80);
+            double y = level.getHeight() / 2.0 + random.nextDouble() * (level.getHeight() / 2.0 - 80);
+            swarm.addBall(x, y, random.nextDouble() * 8 - 4, -1 - random.nextDouble() * 5, 2, color);
+        }
+        swarm.addToGame(this);
     }
 
     /**
@@ -182,64 +520,49 @@ public class Game {
     }
 
     /**
-     * Adds multiple rows of blocks arranged in a triangular pattern
-     * using a bright and cheerful palette.
-     *
-     * @param blockYPointPlace the initial Y coordinate of the first row
-     * @param width            the width of each block
-     * @param height           the height of each block
-     */
-    public void addInsideBlocks(int blockYPointPlace, int width, int height) {
-        Color[] rowColor = {
-                new Color(232, 8, 94),
-                new Color(195, 156, 22),
-                new Color(152, 43, 152),
-                new Color(56, 122, 56),
-                new Color(91, 195, 106),
-                new Color(227, 154, 227)
-        };
-
-        for (int i = 0; i < 6; i++) {
-            int blockXPointPlace = 720;
-            for (int j = 0; j < 12 - i; j++) {
-                Point p = new Point(blockXPointPlace, blockYPointPlace);
-                Block block = new Block(p, width, height, rowColor[i], false);
-                addListeners(block);
-                block.addToGame(this);
-                blockXPointPlace -= width;
-                blockCounter.increase(1);
-            }
-            blockYPointPlace += height;
-        }
+     * Adds the blocks of a level to the game, in the order of the level, and counts the blocks to clear.
+     * Room for all the blocks is made up front, so even a level with many blocks is added in one pass.
+     * The grids of the level are added after its blocks, as {@link BlockGrid}s.
+     *
+     * @param level the level to add
+     */
+    public void addLevel(Level level) {
+        environment.ensureCapacity(level.size());
+        sprites.ensureCapacity(level.size());
+        Block[] added = new Block[level.size()];
+        blockCounter.increase(level.addBlocks(this, added));
+        levelBlocks = added;
+        level.addGrids(this);
     }
 
     /**
-     * Adds a paddle to the game, which is controlled by the keyboard.
+     * Adds a grid of bricks to the game and counts its bricks as blocks to clear.
+     *
+     * @param grid the grid to add
      */
-    public void addPaddle() {
-        KeyboardSensor keyboard = this.gui.getKeyboardSensor();
-        Paddle paddle = new Paddle(new Point(350, 560), 150, 10, keyboard, false);
-        paddle.addToGame(this);
+    public void addBlockGrid(BlockGrid grid) {
+        grid.addToGame(this);
+        blockCounter.increase(grid.getAliveCount());
     }
 
     /**
-     * Adds hit listeners (balls) to the given block.
-     *
-     * @param block the block to attach listeners to
+     * Adds a paddle to the game, which is controlled by the keyboard.
      */
-    public void addListeners(Block block) {
-        for (Ball ball : this.balls) {
-            block.addHitListener(ball);
-        }
+    public void addPaddle() {
+        // While recording, the paddle reads the keys sampled once per tick instead of the live keyboard.
+        KeyboardSensor paddleKeys = recordedKeys != null ? recordedKeys : keyboard;
+        paddle = new Paddle(new Point(350, 560), 150, 10, paddleKeys, false);
+        paddle.addToGame(this);
     }
 
     /**
      * Adds a {@link Collidable} to the game environment.
      *
      * @param c the collidable to add
+     * @return the handle to remove the collidable with
      */
-    public void addCollidable(Collidable c) {
-        environment.addCollidable(c);
+    public long addCollidable(Collidable c) {
+        return environment.addCollidable(c);
     }
 
     /**
@@ -251,6 +574,39 @@ public class Game {
         this.environment.removeCollidable(c);
     }
 
+    /**
+     * Removes a {@link Collidable} from the game environment by the handle it was added with,
+     * in constant time. Removing it again does nothing.
+     *
+     * @param handle the handle returned by {@link #addCollidable(Collidable)}
+     */
+    public void removeCollidable(long handle) {
+        this.environment.removeCollidable(handle);
+    }
+
+    /**
+     * Records that part of a collidable changed in place, so balls that planned their move through
+     * the area plan it again. See {@link GameEnvironment#recordChange(double, double, double, double)}.
+     *
+     * @param minX the minimum X coordinate of the changed area
+     * @param minY the minimum Y coordinate of the changed area
+     * @param maxX the maximum X coordinate of the changed area
+     * @param maxY the maximum Y coordinate of the changed area
+     */
+    public void recordCollidableChange(double minX, double minY, double maxX, double maxY) {
+        environment.recordChange(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Tells the sprite collection that a static sprite changed its look, so the changed area is drawn
+     * again in the cached static layer. Static sprites are not asked for their damage otherwise.
+     *
+     * @param s the static sprite that changed
+     */
+    public void recordSpriteChange(Sprite s) {
+        this.sprites.recordChange(s);
+    }
+
     /**
      * Removes a {@link Sprite} from the sprite collection.
      *
@@ -270,11 +626,72 @@ public class Game {
     }
 
     /**
-     * Sets the GUI used for rendering the game.
+     * Returns the queue that collects the hits of a frame until every sprite has moved.
+     * Hit listeners for whole groups of blocks are registered on it.
+     *
+     * @return the hit event queue
+     */
+    public HitEventQueue getHitEvents() {
+        return hitEvents;
+    }
+
+    /**
+     * Returns the balls that bounce off each other at the end of every frame.
+     *
+     * @return the ball collisions
+     */
+    public BallCollisions getBallCollisions() {
+        return ballCollisions;
+    }
+
+    /**
+     * Sets the number of extra balls to play as one {@link BallSwarm}, which is stored in flat arrays
+     * so even tens of thousands of balls stay cheap to update. The swarm's balls break blocks and score
+     * like the game's own balls, but they are not lives: a swarm ball that falls out is just gone, and the
+     * game still ends when its own balls are lost. Must be called before {@link #initialize()}.
+     *
+     * @param balls the number of swarm balls, or 0 (the default) for no swarm
+     */
+    public void setSwarmSize(int balls) {
+        this.swarmSize = balls;
+    }
+
+    /**
+     * Sets the level to play. Must be called before {@link #initialize()}.
+     *
+     * @param level the level, or {@code null} for the standard level
+     */
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * Sets the GUI used for rendering the game. The paddle is controlled by the GUI's keyboard.
      *
      * @param gui the GUI instance to use
      */
     public void setGui(GUI gui) {
         this.gui = gui;
+        this.keyboard = gui.getKeyboardSensor();
+    }
+
+    /**
+     * Sets the keyboard sensor that controls the paddle, for games that run without a GUI.
+     * Must be called before {@link #initialize()}.
+     *
+     * @param keyboard the keyboard sensor to use
+     */
+    public void setKeyboardSensor(KeyboardSensor keyboard) {
+        this.keyboard = keyboard;
+    }
+
+    /**
+     * Sets the pool used to plan the balls' moves in parallel. The result of every frame is the same
+     * as without a pool.
+     *
+     * @param pool the pool to plan in, or {@code null} to update everything on the calling thread
+     */
+    public void setParallelism(ForkJoinPool pool) {
+        this.sprites.setParallelism(pool);
     }
 }
@@ -0,0 +1,351 @@
+package game;
+
+import observe.HitEventQueue;
+import observe.HitListener;
+import sprites.Ball;
+import sprites.Block;
+
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The {@code GameBatch} class runs a batch of games on one level for programs that control the paddles
+ * themselves, such as bots in training. {@link #step(int[], ByteBuffer)} advances every game by one tick
+ * with the keys given for it and writes what each game looks like afterwards into a buffer the caller owns,
+ * usually a direct one that other code reads in place. Nothing is drawn, and a step creates no objects.
+ * <p>
+ * The observation of game {@code i} starts at {@code i * getStride()} and is laid out as follows, in the
+ * byte order of the buffer:
+ * <pre>
+ *   {@link #SCORE}       int    the score
+ *   {@link #BALLS}       int    the number of balls in play
+ *   {@link #BLOCKS}      int    the number of blocks left to clear
+ *   {@link #STATUS}      int    {@link #PLAYING}, {@link #WON} or {@link #LOST}
+ *   {@link #PADDLE_X}    float  the x-coordinate of the left edge of the paddle
+ *   {@link #BALL_MASK}   int    bit b is set while ball b is in play
+ *   {@link #BALL_DATA}   for each of {@link #getBallSlots()} balls: float x, float y, float dx, float dy
+ *   {@link #getBlockMaskOffset()}  long words; bit b of word w is set while block 64 * w + b of the level
+ *                      is in the game, borders included; the bricks of the level's grids have no bits
+ * </pre>
+ * A ball that is out of play keeps the values it had when it was lost. The stride is a multiple of 8,
+ * so every mask word is aligned when the buffer is.
+ * <p>
+ * The step that clears the last block already reports {@link #WON}, with the bonus in the score, and the step
+ * that loses the last ball reports {@link #LOST}. A game that is over is no longer stepped and keeps its last
+ * observation until {@link #reset(int)}.
+ * The batch is called from one thread at a time. With a pool set by {@link #setParallelism(ForkJoinPool)}
+ * a step splits the games into ranges that run on the pool; games share nothing and write to their own
+ * part of the buffer, so the observations are the same as without a pool.
+ */
+public class GameBatch {
+    /** Offset of the score. */
+    public static final int SCORE = 0;
+    /** Offset of the number of balls in play. */
+    public static final int BALLS = 4;
+    /** Offset of the number of blocks left to clear. */
+    public static final int BLOCKS = 8;
+    /** Offset of the status of the game. */
+    public static final int STATUS = 12;
+    /** Offset of the x-coordinate of the paddle. */
+    public static final int PADDLE_X = 16;
+    /** Offset of the mask of the balls in play. */
+    public static final int BALL_MASK = 20;
+    /** Offset of the positions and velocities of the balls. */
+    public static final int BALL_DATA = 24;
+    /** Bytes taken by one ball in the observation. */
+    public static final int BALL_BYTES = 16;
+
+    /** Status of a game that is still going. */
+    public static final int PLAYING = 0;
+    /** Status of a game whose blocks were all cleared. */
+    public static final int WON = 1;
+    /** Status of a game that lost all its balls. */
+    public static final int LOST = 2;
+
+    private static final int MAX_BALLS = Integer.SIZE;
+    // Ranges per pool thread, so a thread that finishes its games early can take over another range.
+    private static final int RANGES_PER_THREAD = 4;
+
+    private final Level level;
+    private final Game[] games;
+    private final ScriptedKeyboardSensor[] keyboards;
+    private final BlockMask[] masks;
+    private final int ballSlots;
+    private final int blockWords;
+    private final int stride;
+    private ForkJoinPool pool;
+    private ParallelStep parallelStep;
+
+    /**
+     * Constructs a batch of games and starts all of them.
+     *
+     * @param size  the number of games
+     * @param level the level every game plays, or {@code null} for the standard level
+     */
+    public GameBatch(int size, Level level) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("batch size must be positive: " + size);
+        }
+        // The games only read the level, so they all share one.
+        this.level = level == null ? Level.standard() : level;
+        this.games = new Game[size];
+        this.keyboards = new ScriptedKeyboardSensor[size];
+        this.masks = new BlockMask[size];
+        for (int i = 0; i < size; i++) {
+            reset(i);
+        }
+        this.ballSlots = games[0].getBalls().length;
+        if (ballSlots > MAX_BALLS) {
+            throw new IllegalStateException("a game has more than " + MAX_BALLS + " balls: " + ballSlots);
+        }
+        this.blockWords = (this.level.size() + Long.SIZE - 1) / Long.SIZE;
+        int bytes = BALL_DATA + ballSlots * BALL_BYTES + blockWords * Long.BYTES;
+        this.stride = (bytes + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    /**
+     * Replaces a game with a new one that starts from the beginning of the level.
+     *
+     * @param index the position of the game in the batch
+     */
+    public void reset(int index) {
+        ScriptedKeyboardSensor keyboard = new ScriptedKeyboardSensor();
+        Game game = new Game();
+        game.setLevel(level);
+        game.setKeyboardSensor(keyboard);
+        game.initialize();
+        BlockMask mask = new BlockMask(game.getLevelBlocks());
+        game.getHitEvents().addHitListener(HitEventQueue.BREAKABLE, mask);
+        games[index] = game;
+        keyboards[index] = keyboard;
+        masks[index] = mask;
+    }
+
+    /**
+     * Returns the number of games.
+     *
+     * @return the batch size
+     */
+    public int size() {
+        return games.length;
+    }
+
+    /**
+     * Returns the number of bytes between the observations of two games.
+     *
+     * @return the stride
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * Returns the number of balls in every observation.
+     *
+     * @return the ball slots
+     */
+    public int getBallSlots() {
+        return ballSlots;
+    }
+
+    /**
+     * Returns the offset of the block mask in an observation.
+     *
+     * @return the offset
+     */
+    public int getBlockMaskOffset() {
+        return BALL_DATA + ballSlots * BALL_BYTES;
+    }
+
+    /**
+     * Returns a game of the batch, for example to draw it.
+     *
+     * @param index the position of the game in the batch
+     * @return the game
+     */
+    public Game getGame(int index) {
+        return games[index];
+    }
+
+    /**
+     * Sets the pool the games are stepped on. The tasks are created here and reused by every step.
+     *
+     * @param pool the pool, or {@code null} to step every game on the calling thread
+     */
+    public void setParallelism(ForkJoinPool pool) {
+        this.pool = pool;
+        this.parallelStep = pool == null ? null : new ParallelStep(pool.getParallelism() * RANGES_PER_THREAD);
+    }
+
+    /**
+     * Advances every game that is not over by one tick and writes the observation of every game.
+     *
+     * @param actions      the keys of each game for this tick, a bit mask of {@link ScriptedKeyboardSensor#LEFT}
+     *                     and {@link ScriptedKeyboardSensor#RIGHT}, at least {@link #size()} of them
+     * @param observations the buffer to write to, from position 0; at least {@code size() * getStride()} bytes
+     */
+    public void step(int[] actions, ByteBuffer observations) {
+        if (actions.length < games.length) {
+            throw new IllegalArgumentException("need " + games.length + " actions, got " + actions.length);
+        }
+        checkCapacity(observations);
+        if (parallelStep == null) {
+            stepRange(0, games.length, actions, observations);
+        } else {
+            parallelStep.actions = actions;
+            parallelStep.observations = observations;
+            parallelStep.reinitialize();
+            pool.invoke(parallelStep);
+            parallelStep.actions = null;
+            parallelStep.observations = null;
+        }
+    }
+
+    private void stepRange(int from, int to, int[] actions, ByteBuffer observations) {
+        for (int i = from; i < to; i++) {
+            Game game = games[i];
+            if (status(game) == PLAYING) {
+                keyboards[i].setKeys(actions[i]);
+                game.step();
+            }
+            write(i, observations);
+        }
+    }
+
+    /**
+     * Writes the observation of every game without advancing them, for example right after a reset.
+     *
+     * @param observations the buffer to write to, from position 0; at least {@code size() * getStride()} bytes
+     */
+    public void observe(ByteBuffer observations) {
+        checkCapacity(observations);
+        for (int i = 0; i < games.length; i++) {
+            write(i, observations);
+        }
+    }
+
+    private void checkCapacity(ByteBuffer observations) {
+        if (observations.limit() < (long) games.length * stride) {
+            throw new IllegalArgumentException("observation buffer holds " + observations.limit()
+                    + " bytes, need " + (long) games.length * stride);
+        }
+    }
+
+    private static int status(Game game) {
+        if (game.hasWon()) {
+            return WON;
+        }
+        return game.getRemainingBalls() == 0 ? LOST : PLAYING;
+    }
+
+    private void write(int index, ByteBuffer out) {
+        Game game = games[index];
+        int base = index * stride;
+        out.putInt(base + SCORE, game.getScore());
+        out.putInt(base + BALLS, game.getRemainingBalls());
+        out.putInt(base + BLOCKS, game.getRemainingBlocks());
+        out.putInt(base + STATUS, status(game));
+        out.putFloat(base + PADDLE_X, (float) game.getPaddle().getUpperLeft().getX());
+        Ball[] balls = game.getBalls();
+        int ballMask = 0;
+        int at = base + BALL_DATA;
+        for (int b = 0; b < ballSlots; b++) {
+            Ball ball = balls[b];
+            if (ball.isInGame()) {
+                ballMask |= 1 << b;
+            }
+            out.putFloat(at, (float) ball.getCenter().getX());
+            out.putFloat(at + 4, (float) ball.getCenter().getY());
+            out.putFloat(at + 8, (float) ball.getVelocity().getDx());
+            out.putFloat(at + 12, (float) ball.getVelocity().getDy());
+            at += BALL_BYTES;
+        }
+        out.putInt(base + BALL_MASK, ballMask);
+        long[] words = masks[index].words;
+        for (int w = 0; w < blockWords; w++) {
+            out.putLong(at, words[w]);
+            at += Long.BYTES;
+        }
+    }
+
+    /**
+     * One step of the whole batch on the pool: every range of games runs as its own task.
+     * The tasks are made once and reinitialized for every step, so stepping on the pool creates no objects.
+     */
+    private final class ParallelStep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final StepRange[] ranges;
+        private int[] actions;
+        private ByteBuffer observations;
+
+        private ParallelStep(int rangeCount) {
+            int count = Math.min(rangeCount, games.length);
+            ranges = new StepRange[count];
+            for (int r = 0; r < count; r++) {
+                ranges[r] = new StepRange(this, games.length * r / count, games.length * (r + 1) / count);
+            }
+        }
+
+        @Override
+        protected void compute() {
+            for (StepRange range : ranges) {
+                range.reinitialize();
+            }
+            invokeAll(ranges);
+        }
+    }
+
+    /**
+     * The games of one range, stepped by a task of a {@link ParallelStep}.
+     */
+    private final class StepRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ParallelStep step;
+        private final int from;
+        private final int to;
+
+        private StepRange(ParallelStep step, int from, int to) {
+            this.step = step;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            stepRange(from, to, step.actions, step.observations);
+        }
+    }
+
+    /**
+     * The blocks of one game that are still in it, as a bit per block in level order. A block's bit is
+     * cleared when a hit removes it, after the listeners registered before this one ran, so a step only
+     * copies the words instead of looking at every block.
+     */
+    private static final class BlockMask implements HitListener {
+        private final long[] words;
+        private final Map<Block, Integer> positions = new IdentityHashMap<>();
+
+        private BlockMask(Block[] blocks) {
+            words = new long[(blocks.length + Long.SIZE - 1) / Long.SIZE];
+            for (int i = 0; i < blocks.length; i++) {
+                words[i / Long.SIZE] |= 1L << i;
+                positions.put(blocks[i], i);
+            }
+        }
+
+        @Override
+        public void hitEvent(Block beingHit, Ball hitter) {
+            if (!beingHit.isInGame()) {
+                Integer position = positions.get(beingHit);
+                if (position != null) {
+                    words[position / Long.SIZE] &= ~(1L << position);
+                }
+            }
+        }
+    }
+}
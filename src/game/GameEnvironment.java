@@ -1,73 +1,479 @@
 package game;
 
+import collision.CellCollidable;
 import collision.Collidable;
 import collision.CollisionInfo;
+import collision.SweepHit;
 import geometry.Line;
 import geometry.Point;
+import geometry.Rectangle;
+import geometry.SlabBatch;
+import geometry.SlabHit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The {@code GameEnvironment} class holds a collection of collidable objects.
  * It is responsible for handling collision detection between a moving object
  * (defined by a trajectory line) and the objects in the environment.
+ * Blocks never move, so they are indexed in a uniform {@link SpatialGrid} and a query only tests
+ * the blocks in the cells around the trajectory. Other collidables (such as the paddle) may move
+ * at any time, so they are always tested. A {@link CellCollidable} is one collidable made of many cells,
+ * which finds its own cells, so it is asked directly instead of being indexed cell by cell.
+ * Queries do not change the environment and keep their scratch state in the caller's {@link SweepHit},
+ * so several threads may query at once as long as nothing is added or removed meanwhile. The one exception is
+ * {@link #getClosestCollision(Line)}, which keeps its scratch state in the environment.
+ * Adding a collidable returns a generational handle: the index of a slot in the low 32 bits and the
+ * slot's generation in the high 32 bits. Removing by handle is a constant-time swap-remove, and a handle
+ * whose collidable was already removed no longer matches its slot's generation, so removing it again
+ * does nothing.
  */
 public class GameEnvironment {
-    private final List<Collidable> collidablesObj = new ArrayList<>();
+    private static final int DEFAULT_CELL_SIZE = 64;
+    // Slack around a trajectory, so rectangles that touch it on a cell border are never missed.
+    private static final double QUERY_PADDING = 1e-6;
+    private static final int CHANGE_LOG_SIZE = 256;
+    private static final int INITIAL_CAPACITY = 64;
+    /** A handle that never refers to a collidable. */
+    public static final long NO_HANDLE = 0;
+
+    // Dense storage in iteration order, and for each entry the slot its handle refers to.
+    private Collidable[] collidables = new Collidable[INITIAL_CAPACITY];
+    private SpatialGrid.Entry[] entries = new SpatialGrid.Entry[INITIAL_CAPACITY];
+    private int[] denseSlot = new int[INITIAL_CAPACITY];
+    private int count;
+    // For each slot, the dense index it refers to (or the next free slot while free) and its generation.
+    private int[] slotIndex = new int[INITIAL_CAPACITY];
+    private int[] slotGeneration = new int[INITIAL_CAPACITY];
+    private int slotCount;
+    // The grid entry and first grid cell of every block by slot, looked up by the slots a cell holds.
+    private SpatialGrid.Entry[] slotEntry = new SpatialGrid.Entry[INITIAL_CAPACITY];
+    private int[] slotMinCx = new int[INITIAL_CAPACITY];
+    private int[] slotMinCy = new int[INITIAL_CAPACITY];
+    private int freeSlot = -1;
+    private final SpatialGrid grid;
+    private final Map<Collidable, SpatialGrid.Entry> gridEntries = new IdentityHashMap<>();
+    private final List<SpatialGrid.Entry> movingEntries = new ArrayList<>();
+    private final List<SpatialGrid.Entry> cellEntries = new ArrayList<>();
+    private long nextOrder = 0;
+    // Ring buffer of the bounds of the latest additions and removals, indexed by version.
+    private final double[] changedBounds = new double[CHANGE_LOG_SIZE * 4];
+    private long version = 0;
+    private volatile QueryStats queryStats;
+    // The scratch state of getClosestCollision, so the Line-based query only creates its result.
+    private final SweepHit lineHit = new SweepHit();
+
+    /**
+     * Constructs an empty environment with the default grid cell size.
+     */
+    public GameEnvironment() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Constructs an empty environment.
+     *
+     * @param cellSize the side length of the spatial index cells
+     */
+    public GameEnvironment(int cellSize) {
+        this.grid = new SpatialGrid(cellSize);
+    }
+
     /**
-     * get the callable objects list.
-     * @return the list
+     * Returns the collidables in the environment, in iteration order.
+     * The order only depends on the order of the additions and removals.
+     *
+     * @return a copy of the collidables
      */
     public List<Collidable> getCollidablesObj() {
-        return collidablesObj;
+        return Arrays.asList(Arrays.copyOf(collidables, count));
     }
+
     /**
-     * Adds a collidable object to the environment.
+     * Returns the number of collidables in the environment.
+     *
+     * @return the collidable count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Adds a collidable object to the environment. Adding a collidable that is already
+     * in the environment changes nothing and returns its current handle.
      *
      * @param c the collidable to add
+     * @return the handle to remove the collidable with, or {@link #NO_HANDLE} if it is {@code null}
      */
-    public void addCollidable(Collidable c) {
-        if (c != null) {
-            collidablesObj.add(c);
+    public long addCollidable(Collidable c) {
+        if (c == null) {
+            return NO_HANDLE;
+        }
+        SpatialGrid.Entry existing = gridEntries.get(c);
+        if (existing != null) {
+            return existing.handle();
+        }
+        int slot = allocateSlot();
+        long handle = ((long) slotGeneration[slot] << 32) | slot;
+        SpatialGrid.Entry entry = new SpatialGrid.Entry(grid, c, nextOrder++, handle);
+        if (count == collidables.length) {
+            int capacity = count * 2;
+            collidables = Arrays.copyOf(collidables, capacity);
+            entries = Arrays.copyOf(entries, capacity);
+            denseSlot = Arrays.copyOf(denseSlot, capacity);
+        }
+        collidables[count] = c;
+        entries[count] = entry;
+        denseSlot[count] = slot;
+        slotIndex[slot] = count;
+        count++;
+        gridEntries.put(c, entry);
+        if (c instanceof CellCollidable) {
+            cellEntries.add(entry);
+        } else if (c.isBlock()) {
+            slotEntry[slot] = entry;
+            slotMinCx[slot] = entry.minCx();
+            slotMinCy[slot] = entry.minCy();
+            grid.insert(entry);
+        } else {
+            movingEntries.add(entry);
         }
+        recordChange(entry);
+        return handle;
     }
+
     /**
-     * Removes a collidable object to the environment.
+     * Makes room for more collidables, so adding many of them at once does not grow the storage step by step.
+     *
+     * @param additional the number of collidables about to be added
+     */
+    public void ensureCapacity(int additional) {
+        int capacity = count + additional;
+        if (capacity > collidables.length) {
+            collidables = Arrays.copyOf(collidables, capacity);
+            entries = Arrays.copyOf(entries, capacity);
+            denseSlot = Arrays.copyOf(denseSlot, capacity);
+        }
+        int slots = slotCount + additional;
+        if (slots > slotIndex.length) {
+            slotIndex = Arrays.copyOf(slotIndex, slots);
+            slotGeneration = Arrays.copyOf(slotGeneration, slots);
+            slotEntry = Arrays.copyOf(slotEntry, slots);
+            slotMinCx = Arrays.copyOf(slotMinCx, slots);
+            slotMinCy = Arrays.copyOf(slotMinCy, slots);
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeSlot >= 0) {
+            int slot = freeSlot;
+            freeSlot = slotIndex[slot];
+            return slot;
+        }
+        if (slotCount == slotIndex.length) {
+            slotIndex = Arrays.copyOf(slotIndex, slotCount * 2);
+            slotGeneration = Arrays.copyOf(slotGeneration, slotCount * 2);
+            slotEntry = Arrays.copyOf(slotEntry, slotCount * 2);
+            slotMinCx = Arrays.copyOf(slotMinCx, slotCount * 2);
+            slotMinCy = Arrays.copyOf(slotMinCy, slotCount * 2);
+        }
+        // Generations start at 1, so no handle is ever equal to NO_HANDLE.
+        slotGeneration[slotCount] = 1;
+        return slotCount++;
+    }
+
+    /**
+     * Removes a collidable object from the environment. Removing a collidable that is not
+     * in the environment does nothing.
      *
      * @param c the collidable to remove
      */
     public void removeCollidable(Collidable c) {
-        collidablesObj.remove(c);
+        SpatialGrid.Entry entry = gridEntries.get(c);
+        if (entry != null) {
+            removeCollidable(entry.handle());
+        }
+    }
+
+    /**
+     * Removes the collidable a handle refers to, in constant time. The last collidable in iteration
+     * order takes the place of the removed one. A handle whose collidable was already removed is ignored.
+     *
+     * @param handle the handle returned when the collidable was added
+     * @return true if a collidable was removed
+     */
+    public boolean removeCollidable(long handle) {
+        if (!contains(handle)) {
+            return false;
+        }
+        int slot = (int) handle;
+        int index = slotIndex[slot];
+        SpatialGrid.Entry entry = entries[index];
+        Collidable c = collidables[index];
+
+        int last = --count;
+        collidables[index] = collidables[last];
+        entries[index] = entries[last];
+        denseSlot[index] = denseSlot[last];
+        slotIndex[denseSlot[index]] = index;
+        collidables[last] = null;
+        entries[last] = null;
+
+        if (++slotGeneration[slot] == 0) {
+            slotGeneration[slot] = 1;
+        }
+        slotIndex[slot] = freeSlot;
+        freeSlot = slot;
+
+        gridEntries.remove(c);
+        if (c instanceof CellCollidable) {
+            cellEntries.remove(entry);
+        } else if (c.isBlock()) {
+            grid.remove(entry);
+            slotEntry[slot] = null;
+        } else {
+            movingEntries.remove(entry);
+        }
+        recordChange(entry);
+        return true;
+    }
+
+    /**
+     * Checks whether a handle still refers to a collidable in the environment.
+     *
+     * @param handle the handle returned when the collidable was added
+     * @return true if the collidable was not removed yet
+     */
+    public boolean contains(long handle) {
+        int slot = (int) handle;
+        return slot >= 0 && slot < slotCount && slotGeneration[slot] == (int) (handle >>> 32);
+    }
+
+    private void recordChange(SpatialGrid.Entry entry) {
+        recordChange(entry.minX(), entry.minY(), entry.maxX(), entry.maxY());
+    }
+
+    /**
+     * Records that part of a collidable in the environment changed without the collidable being added or
+     * removed, such as a cell of a {@link CellCollidable} that was cleared. The version grows by one and
+     * {@link #changedSince(long, double, double, double, double)} reports the area as changed.
+     *
+     * @param minX the minimum X coordinate of the changed area
+     * @param minY the minimum Y coordinate of the changed area
+     * @param maxX the maximum X coordinate of the changed area
+     * @param maxY the maximum Y coordinate of the changed area
+     */
+    public void recordChange(double minX, double minY, double maxX, double maxY) {
+        version++;
+        int slot = (int) (version % CHANGE_LOG_SIZE) * 4;
+        changedBounds[slot] = minX;
+        changedBounds[slot + 1] = minY;
+        changedBounds[slot + 2] = maxX;
+        changedBounds[slot + 3] = maxY;
+    }
+
+    /**
+     * Returns the version of the environment, which grows by one with every addition, removal or recorded change.
+     *
+     * @return the current version
+     */
+    public long getVersion() {
+        return version;
     }
+
+    /**
+     * Checks whether a collidable touching the given area was added, removed or changed after the given version.
+     * A query whose swept area did not change returns the same result as it did at that version.
+     * When the version is too old to be fully remembered, the answer is conservatively true.
+     *
+     * @param sinceVersion the version to compare with
+     * @param minX         the minimum X coordinate of the area
+     * @param minY         the minimum Y coordinate of the area
+     * @param maxX         the maximum X coordinate of the area
+     * @param maxY         the maximum Y coordinate of the area
+     * @return true if the area may have changed
+     */
+    public boolean changedSince(long sinceVersion, double minX, double minY, double maxX, double maxY) {
+        if (version - sinceVersion > CHANGE_LOG_SIZE) {
+            return true;
+        }
+        for (long v = sinceVersion + 1; v <= version; v++) {
+            int slot = (int) (v % CHANGE_LOG_SIZE) * 4;
+            if (changedBounds[slot] <= maxX + QUERY_PADDING && changedBounds[slot + 2] >= minX - QUERY_PADDING
+                    && changedBounds[slot + 1] <= maxY + QUERY_PADDING
+                    && changedBounds[slot + 3] >= minY - QUERY_PADDING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets where the environment counts its queries. Counting costs two clock reads per query.
+     *
+     * @param stats the statistics to add to, or {@code null} to stop counting
+     */
+    public void setQueryStats(QueryStats stats) {
+        this.queryStats = stats;
+    }
+
     /**
      * Returns information about the closest collision that is going to occur
      * if an object moves along the given trajectory.
+     * The result is the same as testing every collidable in the order they were added.
+     * Only the {@link CollisionInfo} is created. The query reuses scratch state held by the environment, so unlike
+     * {@link #findClosestHit}, it must not be called from several threads at once.
      *
      * @param trajectory the path along which an object is moving
      * @return a {@link CollisionInfo} object describing the closest collision,
      *         or {@code null} if no collision will occur
      */
     public CollisionInfo getClosestCollision(Line trajectory) {
-        Point closestPoint = null;
-        Collidable closestCollidable = null;
-        double minDistance = 400; // Arbitrary large distance to start comparison
-
-        for (Collidable collidable : collidablesObj) {
-            Point intersection = trajectory.closestIntersectionToStartOfLine(collidable.getCollisionRectangle());
-            if (intersection != null) {
-                double distance = trajectory.start().distance(intersection);
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    closestPoint = intersection;
-                    closestCollidable = collidable;
+        Point start = trajectory.start();
+        Point end = trajectory.end();
+        if (!findClosestHit(start.getX(), start.getY(), end.getX() - start.getX(), end.getY() - start.getY(),
+                lineHit)) {
+            return null;
+        }
+        return new CollisionInfo(lineHit.getCollidable(), new Point(lineHit.getContactX(), lineHit.getContactY()));
+    }
+
+    /**
+     * Finds the closest collidable a point moving along a segment runs into, without creating any objects.
+     * This is the same query as {@link #getClosestCollision(Line)}; the contact point is the hit point.
+     *
+     * @param x0     the x-coordinate of the segment start
+     * @param y0     the y-coordinate of the segment start
+     * @param dx     the x component of the segment direction
+     * @param dy     the y component of the segment direction
+     * @param result receives the closest hit, and holds the scratch state of the query
+     * @return true if the segment hits something, false otherwise
+     */
+    public boolean findClosestHit(double x0, double y0, double dx, double dy, SweepHit result) {
+        return query(x0, y0, dx, dy, 0, false, result);
+    }
+
+    /**
+     * Finds the first collidable a moving circle touches during a move, with the exact time of impact.
+     * Only the blocks in the cells covered by the swept circle are tested.
+     *
+     * @param x0     the x-coordinate of the circle's center at the start of the move
+     * @param y0     the y-coordinate of the circle's center at the start of the move
+     * @param dx     the x component of the move
+     * @param dy     the y component of the move
+     * @param radius the radius of the circle
+     * @param result receives the closest hit, and holds the scratch state of the query
+     * @return true if the circle hits something during the move, false otherwise
+     */
+    public boolean sweepCircle(double x0, double y0, double dx, double dy, double radius, SweepHit result) {
+        return query(x0, y0, dx, dy, radius, true, result);
+    }
+
+    private boolean query(double x0, double y0, double dx, double dy, double radius, boolean circle,
+                          SweepHit result) {
+        QueryStats stats = queryStats;
+        long start = stats == null ? 0 : System.nanoTime();
+        int tested = 0;
+        SlabHit slab = result.getSlab();
+        // Point queries keep the original limit on how far away a hit may be.
+        double limit = circle ? Double.POSITIVE_INFINITY : 400 / Math.sqrt(dx * dx + dy * dy);
+        double closestT = limit;
+        SpatialGrid.Entry closest = null;
+
+        for (int m = 0; m < movingEntries.size(); m++) {
+            SpatialGrid.Entry entry = movingEntries.get(m);
+            Rectangle rect = entry.collidable().getCollisionRectangle();
+            tested++;
+            boolean hit = circle ? slab.sweepCircle(x0, y0, dx, dy, radius, rect)
+                    : slab.intersect(x0, y0, dx, dy, rect);
+            if (hit && isCloser(slab.getT(), closestT, entry, closest)) {
+                closestT = slab.getT();
+                closest = entry;
+                store(result, entry, slab, circle, x0, y0, dx, dy);
+            }
+        }
+
+        for (int m = 0; m < cellEntries.size(); m++) {
+            SpatialGrid.Entry entry = cellEntries.get(m);
+            tested++;
+            // A hit at the same distance as the closest one wins if the collidable was added first.
+            double cellLimit = closest != null && entry.order() < closest.order() ? Math.nextUp(closestT) : closestT;
+            if (((CellCollidable) entry.collidable()).sweepCells(x0, y0, dx, dy, radius, circle, cellLimit, result)) {
+                closestT = result.getT();
+                closest = entry;
+            }
+        }
+
+        // Filter the packed bounds of each covered cell at once, then test the few blocks left exactly.
+        double reach = radius + QUERY_PADDING;
+        SlabBatch batch = result.getBatch();
+        int minCx = grid.cellOf(Math.min(x0, x0 + dx) - reach);
+        int maxCx = grid.cellOf(Math.max(x0, x0 + dx) + reach);
+        int minCy = grid.cellOf(Math.min(y0, y0 + dy) - reach);
+        int maxCy = grid.cellOf(Math.max(y0, y0 + dy) + reach);
+        for (int cy = minCy; cy <= maxCy; cy++) {
+            for (int cx = minCx; cx <= maxCx; cx++) {
+                SpatialGrid.Cell cell = grid.cellAt(cx, cy, false);
+                if (cell == null) {
+                    continue;
+                }
+                double[] left = cell.minX();
+                double[] top = cell.minY();
+                double[] right = cell.maxX();
+                double[] bottom = cell.maxY();
+                tested += cell.size();
+                int kept = batch.filter(left, top, right, bottom, cell.size(), x0, y0, dx, dy, reach);
+                for (int k = 0; k < kept; k++) {
+                    int i = batch.get(k);
+                    int id = cell.get(i);
+                    // A block covering several cells is only tested in the first of them the query visits.
+                    if (cx != Math.max(slotMinCx[id], minCx) || cy != Math.max(slotMinCy[id], minCy)) {
+                        continue;
+                    }
+                    boolean hit = circle
+                            ? slab.sweepCircle(x0, y0, dx, dy, radius, left[i], top[i], right[i], bottom[i])
+                            : slab.intersect(x0, y0, dx, dy, left[i], top[i], right[i], bottom[i]);
+                    SpatialGrid.Entry entry = slotEntry[id];
+                    if (hit && isCloser(slab.getT(), closestT, entry, closest)) {
+                        closestT = slab.getT();
+                        closest = entry;
+                        store(result, entry, slab, circle, x0, y0, dx, dy);
+                    }
                 }
             }
         }
+        if (stats != null) {
+            stats.addQuery(tested, System.nanoTime() - start);
+        }
+        return closest != null;
+    }
 
-        if (closestPoint == null) {
-            return null;
+    private static void store(SweepHit result, SpatialGrid.Entry entry, SlabHit slab, boolean circle,
+                              double x0, double y0, double dx, double dy) {
+        double t = slab.getT();
+        if (circle) {
+            result.set(entry.collidable(), t, slab.getSide(), slab.getContactX(), slab.getContactY());
+        } else {
+            result.set(entry.collidable(), t, slab.getSide(), x0 + t * dx, y0 + t * dy);
         }
-        return new CollisionInfo(closestCollidable, closestPoint);
+    }
+
+    /**
+     * Checks whether a hit should replace the closest hit found so far. Hits at the same
+     * distance are resolved in favor of the collidable that was added first.
+     *
+     * @param t        how far along the trajectory the new hit is
+     * @param closestT how far along the trajectory the closest hit so far is
+     * @param candidate the entry that was hit
+     * @param closest   the entry of the closest hit so far, or {@code null}
+     * @return true if the new hit is closer
+     */
+    private static boolean isCloser(double t, double closestT, SpatialGrid.Entry candidate,
+                                    SpatialGrid.Entry closest) {
+        return t < closestT || (t == closestT && closest != null && candidate.order() < closest.order());
     }
 }
@@ -0,0 +1,112 @@
+package game;
+
+import biuoop.AlphaChannelNotSupportedException;
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.Polygon;
+
+/**
+ * The {@code GraphicsDrawSurface} class is a {@link DrawSurface} that draws right away on a
+ * {@link Graphics} object, for example the graphics of an off-screen image.
+ * Every command draws the same pixels as the surfaces returned by {@code GUI.getDrawSurface()}.
+ */
+public class GraphicsDrawSurface implements DrawSurface {
+    private final Graphics graphics;
+    private final int width;
+    private final int height;
+
+    /**
+     * Constructs a surface that draws on the given graphics.
+     *
+     * @param graphics the graphics to draw on
+     * @param width    the width reported by the surface
+     * @param height   the height reported by the surface
+     */
+    public GraphicsDrawSurface(Graphics graphics, int width, int height) {
+        this.graphics = graphics;
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        if (color.getAlpha() != 255) {
+            throw new AlphaChannelNotSupportedException(
+                    "Alpha may not be used, the color provided had an alpha value of " + color.getAlpha());
+        }
+        graphics.setColor(color);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        graphics.drawLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int w, int h) {
+        graphics.drawOval(x, y, w, h);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int w, int h) {
+        graphics.fillOval(x, y, w, h);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int w, int h) {
+        graphics.drawRect(x, y, w, h);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int w, int h) {
+        graphics.fillRect(x, y, w, h);
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image image) {
+        graphics.drawImage(image, x, y, null);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        graphics.drawOval(x - r, y - r, 2 * r, 2 * r);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        graphics.fillOval(x - r, y - r, 2 * r, 2 * r);
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        Font font = graphics.getFont();
+        if (font.getSize() != fontSize) {
+            graphics.setFont(new Font(font.getFontName(), font.getStyle(), fontSize));
+        }
+        graphics.drawString(text, x, y);
+    }
+
+    @Override
+    public void drawPolygon(Polygon polygon) {
+        graphics.drawPolygon(polygon);
+    }
+
+    @Override
+    public void fillPolygon(Polygon polygon) {
+        graphics.fillPolygon(polygon);
+    }
+}
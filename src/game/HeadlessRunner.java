@@ -0,0 +1,54 @@
+package game;
+
+/**
+ * The {@code HeadlessRunner} class runs a {@link Game} without a GUI and without waiting between frames,
+ * so the simulation goes as fast as the CPU allows. Drawing goes to a {@link NullDrawSurface} and the
+ * paddle is driven by a {@link KeyScript}. It is meant for performance tests and long soak runs.
+ */
+public class HeadlessRunner {
+    private static final int SCREEN_WIDTH = 800;
+    private static final int SCREEN_HEIGHT = 600;
+
+    private final KeyScript script;
+    private final long maxFrames;
+
+    /**
+     * Constructs a runner.
+     *
+     * @param script    decides which keys are pressed on each frame
+     * @param maxFrames the frame limit, after which the game is stopped even if it is not over
+     */
+    public HeadlessRunner(KeyScript script, long maxFrames) {
+        this.script = script;
+        this.maxFrames = maxFrames;
+    }
+
+    /**
+     * Initializes the given game and runs it until it is won, lost, or reaches the frame limit.
+     *
+     * @param game a game that was not initialized yet
+     * @return the outcome of the run
+     */
+    public RunResult run(Game game) {
+        ScriptedKeyboardSensor keyboard = new ScriptedKeyboardSensor();
+        NullDrawSurface surface = new NullDrawSurface(SCREEN_WIDTH, SCREEN_HEIGHT);
+        game.setKeyboardSensor(keyboard);
+        game.initialize();
+        int startingBalls = game.getRemainingBalls();
+
+        long frames = 0;
+        long startTime = System.nanoTime();
+        while (game.getRemainingBalls() != 0 && frames < maxFrames) {
+            keyboard.setKeys(script.keysAt(frames));
+            game.drawFrame(surface);
+            game.timePassed();
+            frames++;
+            if (game.hasWon()) {
+                break;
+            }
+        }
+        long elapsed = System.nanoTime() - startTime;
+        return new RunResult(frames, elapsed, game.getScore(), game.getRemainingBlocks(),
+                game.getRemainingBalls(), startingBalls - game.getRemainingBalls(), game.hasWon());
+    }
+}
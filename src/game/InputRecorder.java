@@ -0,0 +1,155 @@
+package game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The {@code InputRecorder} class records the keys that control the paddle on every tick of a game.
+ * The game is deterministic, so the initial layout plus these keys reproduce the whole game.
+ * The keys are run-length encoded, so holding a key for a long time takes only a few bytes.
+ * Every keyframe interval the recorder also stores a keyframe: where the frame's keys are in the run data,
+ * so a {@link ReplayPlayer} can jump to any frame, and a checksum of the game state,
+ * so a replay can tell the exact point where it stopped matching the recorded game.
+ * See {@link ReplayFormat} for the file layout.
+ */
+public class InputRecorder {
+    /** The keyframe interval used by default, ten seconds at 60 ticks per second. */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 600;
+
+    private final int keyframeInterval;
+    private final ByteArrayOutputStream runs = new ByteArrayOutputStream();
+    private int runKeys = -1;
+    private long runLength;
+    private long frames;
+
+    private long[] keyframeFrame = new long[16];
+    private long[] keyframeOffset = new long[16];
+    private long[] keyframeSkip = new long[16];
+    private long[] keyframeChecksum = new long[16];
+    private int keyframes;
+
+    /**
+     * Constructs a recorder with the default keyframe interval.
+     */
+    public InputRecorder() {
+        this(DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Constructs a recorder.
+     *
+     * @param keyframeInterval the number of frames between two keyframes
+     */
+    public InputRecorder(int keyframeInterval) {
+        if (keyframeInterval <= 0) {
+            throw new IllegalArgumentException("keyframe interval must be positive: " + keyframeInterval);
+        }
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Records the keys of the next frame, before the game is updated with them.
+     *
+     * @param keys          the pressed keys, as {@link ScriptedKeyboardSensor} bits
+     * @param stateChecksum the checksum of the game state before the update, see {@link Game#stateChecksum()}
+     */
+    public void record(int keys, long stateChecksum) {
+        if (keys != runKeys) {
+            flushRun();
+            runKeys = keys;
+        }
+        if (frames % keyframeInterval == 0) {
+            addKeyframe(frames, runs.size(), runLength, stateChecksum);
+        }
+        runLength++;
+        frames++;
+    }
+
+    private void flushRun() {
+        if (runLength > 0) {
+            ReplayFormat.writeVarint(runs, runLength);
+            runs.write(runKeys);
+        }
+        runLength = 0;
+    }
+
+    private void addKeyframe(long frame, long offset, long skip, long checksum) {
+        if (keyframes == keyframeFrame.length) {
+            int size = keyframes * 2;
+            keyframeFrame = Arrays.copyOf(keyframeFrame, size);
+            keyframeOffset = Arrays.copyOf(keyframeOffset, size);
+            keyframeSkip = Arrays.copyOf(keyframeSkip, size);
+            keyframeChecksum = Arrays.copyOf(keyframeChecksum, size);
+        }
+        keyframeFrame[keyframes] = frame;
+        keyframeOffset[keyframes] = offset;
+        keyframeSkip[keyframes] = skip;
+        keyframeChecksum[keyframes] = checksum;
+        keyframes++;
+    }
+
+    /**
+     * Returns the number of frames recorded so far.
+     *
+     * @return the frame count
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Writes the recording. Recording may go on afterwards, and a later write includes the new frames.
+     *
+     * @param out the stream to write to; it is not closed
+     * @throws IOException if writing fails
+     */
+    public void write(OutputStream out) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        ReplayFormat.writeVarint(body, keyframeInterval);
+        ReplayFormat.writeVarint(body, frames);
+        byte[] runData = runDataWithPendingRun();
+        ReplayFormat.writeVarint(body, runData.length);
+        body.write(runData, 0, runData.length);
+        ReplayFormat.writeVarint(body, keyframes);
+        DataOutputStream data = new DataOutputStream(body);
+        for (int i = 0; i < keyframes; i++) {
+            ReplayFormat.writeVarint(body, keyframeFrame[i]);
+            ReplayFormat.writeVarint(body, keyframeOffset[i]);
+            ReplayFormat.writeVarint(body, keyframeSkip[i]);
+            data.writeLong(keyframeChecksum[i]);
+        }
+
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(ReplayFormat.MAGIC);
+        header.writeByte(ReplayFormat.VERSION);
+        body.writeTo(header);
+        header.flush();
+    }
+
+    private byte[] runDataWithPendingRun() {
+        ByteArrayOutputStream all = new ByteArrayOutputStream(runs.size() + 11);
+        all.write(runs.toByteArray(), 0, runs.size());
+        if (runLength > 0) {
+            ReplayFormat.writeVarint(all, runLength);
+            all.write(runKeys);
+        }
+        return all.toByteArray();
+    }
+
+    /**
+     * Writes the recording to a file.
+     *
+     * @param file the file to write
+     * @throws IOException if writing fails
+     */
+    public void save(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(out);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package game;
+
+/**
+ * The {@code KeyScript} interface decides which keys are pressed on each frame of a game
+ * that runs without a real keyboard.
+ */
+public interface KeyScript {
+
+    /**
+     * Returns the keys pressed on the given frame.
+     *
+     * @param frame the frame number, starting at 0
+     * @return a bit mask of {@link ScriptedKeyboardSensor#LEFT} and {@link ScriptedKeyboardSensor#RIGHT}
+     */
+    int keysAt(long frame);
+
+    /**
+     * Returns a script that holds a random choice of no key, {@link ScriptedKeyboardSensor#LEFT} or
+     * {@link ScriptedKeyboardSensor#RIGHT} for stretches of frames. The keys only depend on the seed
+     * and the frame, so the script can be shared by games on different threads and seeked freely.
+     *
+     * @param seed       the seed; the same seed always gives the same keys
+     * @param holdFrames the number of frames each choice is held for
+     * @return the script
+     */
+    static KeyScript random(long seed, int holdFrames) {
+        if (holdFrames <= 0) {
+            throw new IllegalArgumentException("hold frames must be positive: " + holdFrames);
+        }
+        return frame -> {
+            long h = seed * 0x9E3779B97F4A7C15L + frame / holdFrames;
+            h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+            h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+            h ^= h >>> 31;
+            // 0 is no key, 1 is LEFT and 2 is RIGHT.
+            return (int) Long.remainderUnsigned(h, 3);
+        };
+    }
+}
@@ -0,0 +1,105 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * The {@code LatencyHistogram} class counts recorded values in log-linear buckets: values below 64 are
+ * counted exactly, and above that every power of two is split into 32 buckets, so a percentile is
+ * accurate to about 3% at any scale. Recording only increments an array slot and never creates objects,
+ * which keeps it cheap enough to record every phase of every frame.
+ * A histogram must only be recorded into from one thread at a time.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS + 2 * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * Records one value. Negative values are recorded as 0.
+     *
+     * @param value the value, typically a duration in nanoseconds
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts[indexOf(v)]++;
+        count++;
+        sum += v;
+        if (v > max) {
+            max = v;
+        }
+    }
+
+    private static int indexOf(long v) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(v) - SUB_BITS);
+        return shift * SUB_BUCKETS + (int) (v >>> shift);
+    }
+
+    private static long highestValueAt(int index) {
+        int shift = index < 2 * SUB_BUCKETS ? 0 : index / SUB_BUCKETS - 1;
+        long sub = index - (long) shift * SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Returns the value below or at which the given fraction of the recorded values lies.
+     *
+     * @param fraction the fraction, between 0 and 1 (for example 0.99 for the 99th percentile)
+     * @return the percentile, or 0 if nothing was recorded
+     */
+    public long percentile(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return the maximum, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the average of the recorded values.
+     *
+     * @return the mean, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Forgets every recorded value.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+}
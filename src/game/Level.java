@@ -0,0 +1,464 @@
+package game;
+
+import geometry.Point;
+import sprites.Block;
+import sprites.BlockGrid;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The {@code Level} class holds the layout of the blocks of a game: the size of the board, a palette of
+ * colors, a fixed-size record for every block, in the order the blocks are added to the game, and the
+ * grids of bricks that are added after the blocks as {@link BlockGrid}s.
+ * A level file is laid out as follows, with every number big-endian:
+ * <pre>
+ *   int    magic "BBLV"
+ *   byte   format version, 1 or 2
+ *   int    board width
+ *   int    board height
+ *   int    palette size, at most 256
+ *   int    block count
+ *   int    grid count (version 2 only)
+ *   int    RGB value of every palette color
+ *   for every block, 14 bytes:
+ *          int x and int y of the upper-left corner, unsigned short width and unsigned short height,
+ *          unsigned byte palette index and byte flags ({@link #BORDER}, {@link #DEATH_ZONE})
+ *   for every grid (version 2 only), 16 bytes followed by a byte per cell:
+ *          int x and int y of the upper-left corner, unsigned short columns, unsigned short rows,
+ *          unsigned short cell width and unsigned short cell height,
+ *          then the cells row by row: 0 for an empty cell, or 1 + the palette index of its brick
+ * </pre>
+ * A level without grids is written as version 1, so it stays readable by builds that predate grids.
+ * {@link #load(Path)} maps the file into memory and keeps reading the block records from the mapping,
+ * so loading a level only checks the records and {@link Game#addLevel(Level)} turns them into blocks
+ * in one pass, without parsing text or copying the records first.
+ * Blocks that share a palette color share one {@link Color}, like the blocks of a row always did.
+ */
+public class Level {
+    /** Flag of a block that bounces balls without being broken or recoloring them. */
+    public static final int BORDER = 1;
+    /** Flag of a block that removes the balls that hit it. */
+    public static final int DEATH_ZONE = 2;
+
+    private static final int MAGIC = 0x42424C56;
+    private static final int VERSION = 1;
+    private static final int GRID_VERSION = 2;
+    private static final int HEADER_BYTES = 21;
+    private static final int GRID_HEADER_BYTES = 25;
+    private static final int RECORD_BYTES = 14;
+    private static final int GRID_RECORD_BYTES = 16;
+    // A cell byte holds 1 + the palette index of its brick, so bricks use the colors below the last one.
+    private static final int MAX_GRID_COLORS = 255;
+    private static final int MAX_COLORS = 256;
+    private static final int MAX_SIZE = 0xFFFF;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int width;
+    private final int height;
+    private Color[] palette = new Color[16];
+    private int colorCount;
+    // The block records, laid out as in the file; a mapped level starts out reading the file itself.
+    private ByteBuffer records;
+    private int count;
+    // The grid records and their cells, laid out as in the file.
+    private ByteBuffer grids = ByteBuffer.allocate(0);
+    private int gridBytes;
+    private int gridCount;
+
+    /**
+     * Constructs an empty level.
+     *
+     * @param width  the width of the board
+     * @param height the height of the board
+     */
+    public Level(int width, int height) {
+        this(width, height, ByteBuffer.allocate(INITIAL_CAPACITY * RECORD_BYTES));
+    }
+
+    private Level(int width, int height, ByteBuffer records) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("board size must be positive: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.records = records;
+    }
+
+    /**
+     * Creates the standard level: walls around an 800x600 board, the bottom one removing balls,
+     * and a triangle of six rows of blocks, one color per row.
+     *
+     * @return the level
+     */
+    public static Level standard() {
+        Level level = new Level(800, 600);
+        int wallThick = 30;
+        Color wallColor = new Color(173, 216, 230);
+        level.addBlock(0, wallThick, 800, wallThick, wallColor, BORDER);
+        level.addBlock(800 - wallThick, 0, wallThick, 600, wallColor, BORDER);
+        level.addBlock(0, 0, wallThick, 600, wallColor, BORDER);
+        level.addBlock(0, 600 - wallThick, 800, wallThick, wallColor, BORDER | DEATH_ZONE);
+
+        Color[] rowColor = {
+                new Color(232, 8, 94),
+                new Color(195, 156, 22),
+                new Color(152, 43, 152),
+                new Color(56, 122, 56),
+                new Color(91, 195, 106),
+                new Color(227, 154, 227)
+        };
+        int width = 50;
+        int height = 30;
+        int y = 150;
+        for (int i = 0; i < rowColor.length; i++) {
+            int x = 720;
+            for (int j = 0; j < 12 - i; j++) {
+                level.addBlock(x, y, width, height, rowColor[i], 0);
+                x -= width;
+            }
+            y += height;
+        }
+        return level;
+    }
+
+    /**
+     * Adds a block after the blocks already in the level.
+     *
+     * @param x      the x-coordinate of the upper-left corner
+     * @param y      the y-coordinate of the upper-left corner
+     * @param width  the width, between 0 and 65535
+     * @param height the height, between 0 and 65535
+     * @param color  the color; a level holds at most 256 different colors
+     * @param flags  {@link #BORDER} and {@link #DEATH_ZONE}, or 0 for a block that is broken by a hit
+     */
+    public void addBlock(int x, int y, int width, int height, Color color, int flags) {
+        if (width < 0 || width > MAX_SIZE || height < 0 || height > MAX_SIZE) {
+            throw new IllegalArgumentException("block size out of range: " + width + "x" + height);
+        }
+        if ((flags & ~(BORDER | DEATH_ZONE)) != 0) {
+            throw new IllegalArgumentException("unknown block flags: " + flags);
+        }
+        int colorIndex = colorIndex(color);
+        if ((count + 1) * RECORD_BYTES > records.capacity() || records.isReadOnly()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(INITIAL_CAPACITY, count * 2) * RECORD_BYTES);
+            grown.put(records.duplicate().position(0).limit(count * RECORD_BYTES));
+            records = grown;
+        }
+        int at = count * RECORD_BYTES;
+        records.putInt(at, x);
+        records.putInt(at + 4, y);
+        records.putShort(at + 8, (short) width);
+        records.putShort(at + 10, (short) height);
+        records.put(at + 12, (byte) colorIndex);
+        records.put(at + 13, (byte) flags);
+        count++;
+    }
+
+    /**
+     * Adds a grid of bricks after the grids already in the level. The game adds the grids after the blocks.
+     *
+     * @param x          the x-coordinate of the upper-left corner
+     * @param y          the y-coordinate of the upper-left corner
+     * @param columns    the number of columns, between 1 and 65535
+     * @param rows       the number of rows, between 1 and 65535
+     * @param cellWidth  the width of a cell, between 1 and 65535
+     * @param cellHeight the height of a cell, between 1 and 65535
+     * @param cells      the color of the brick in every cell, row by row, or {@code null} for an empty cell;
+     *                   bricks use the first 255 colors of the level
+     */
+    public void addGrid(int x, int y, int columns, int rows, int cellWidth, int cellHeight, Color[] cells) {
+        if (columns <= 0 || columns > MAX_SIZE || rows <= 0 || rows > MAX_SIZE
+                || cellWidth <= 0 || cellWidth > MAX_SIZE || cellHeight <= 0 || cellHeight > MAX_SIZE) {
+            throw new IllegalArgumentException("grid size out of range: " + columns + "x" + rows
+                    + " cells of " + cellWidth + "x" + cellHeight);
+        }
+        if (cells.length != (long) columns * rows) {
+            throw new IllegalArgumentException("a " + columns + "x" + rows + " grid needs " + (long) columns * rows
+                    + " cells, not " + cells.length);
+        }
+        int bytes = GRID_RECORD_BYTES + cells.length;
+        if (gridBytes + bytes > grids.capacity() || grids.isReadOnly()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(gridBytes + bytes, gridBytes * 2));
+            grown.put(grids.duplicate().position(0).limit(gridBytes));
+            grids = grown;
+        }
+        int at = gridBytes;
+        for (int i = 0; i < cells.length; i++) {
+            int cell = 0;
+            if (cells[i] != null) {
+                int colorIndex = colorIndex(cells[i]);
+                if (colorIndex >= MAX_GRID_COLORS) {
+                    throw new IllegalArgumentException("grid bricks use the first " + MAX_GRID_COLORS
+                            + " colors of a level");
+                }
+                cell = colorIndex + 1;
+            }
+            grids.put(at + GRID_RECORD_BYTES + i, (byte) cell);
+        }
+        grids.putInt(at, x);
+        grids.putInt(at + 4, y);
+        grids.putShort(at + 8, (short) columns);
+        grids.putShort(at + 10, (short) rows);
+        grids.putShort(at + 12, (short) cellWidth);
+        grids.putShort(at + 14, (short) cellHeight);
+        gridBytes += bytes;
+        gridCount++;
+    }
+
+    private int colorIndex(Color color) {
+        for (int i = 0; i < colorCount; i++) {
+            if (palette[i].getRGB() == color.getRGB()) {
+                return i;
+            }
+        }
+        if (colorCount == MAX_COLORS) {
+            throw new IllegalArgumentException("a level holds at most " + MAX_COLORS + " colors");
+        }
+        if (colorCount == palette.length) {
+            palette = Arrays.copyOf(palette, colorCount * 2);
+        }
+        palette[colorCount] = color;
+        return colorCount++;
+    }
+
+    /**
+     * Returns the width of the board.
+     *
+     * @return the width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the board.
+     *
+     * @return the height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of blocks in the level, not counting the bricks of its grids.
+     *
+     * @return the block count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the number of grids of bricks in the level.
+     *
+     * @return the grid count
+     */
+    public int getGridCount() {
+        return gridCount;
+    }
+
+    /**
+     * Creates the blocks of the level and adds them to a game, in the order of the level.
+     *
+     * @param game   the game to add the blocks to
+     * @param blocks receives every block at its position in the level; must hold {@link #size()} blocks
+     * @return the number of blocks that are broken by a hit
+     */
+    int addBlocks(Game game, Block[] blocks) {
+        int breakable = 0;
+        for (int i = 0; i < count; i++) {
+            int at = i * RECORD_BYTES;
+            int flags = records.get(at + 13);
+            Block block = new Block(new Point(records.getInt(at), records.getInt(at + 4)),
+                    Short.toUnsignedInt(records.getShort(at + 8)), Short.toUnsignedInt(records.getShort(at + 10)),
+                    palette[Byte.toUnsignedInt(records.get(at + 12))], (flags & BORDER) != 0);
+            block.addToGame(game);
+            blocks[i] = block;
+            if ((flags & DEATH_ZONE) != 0) {
+                block.setBottomBlock(true);
+            } else if ((flags & BORDER) == 0) {
+                breakable++;
+            }
+        }
+        return breakable;
+    }
+
+    /**
+     * Creates the grids of the level and adds them to a game, in the order of the level.
+     *
+     * @param game the game to add the grids to
+     */
+    void addGrids(Game game) {
+        int at = 0;
+        for (int g = 0; g < gridCount; g++) {
+            int columns = Short.toUnsignedInt(grids.getShort(at + 8));
+            int rows = Short.toUnsignedInt(grids.getShort(at + 10));
+            int cells = columns * rows;
+            BlockGrid grid = new BlockGrid(grids.getInt(at), grids.getInt(at + 4), columns, rows,
+                    Short.toUnsignedInt(grids.getShort(at + 12)), Short.toUnsignedInt(grids.getShort(at + 14)));
+            at += GRID_RECORD_BYTES;
+            for (int cell = 0; cell < cells; cell++) {
+                int colorIndex = Byte.toUnsignedInt(grids.get(at + cell));
+                if (colorIndex != 0) {
+                    grid.setCell(cell, palette[colorIndex - 1]);
+                }
+            }
+            at += cells;
+            game.addBlockGrid(grid);
+        }
+    }
+
+    /**
+     * Reads a level from a buffer holding a level file, from its position to its limit.
+     * The level keeps reading its blocks from the buffer, which must not change afterwards.
+     *
+     * @param buffer the buffer
+     * @return the level
+     * @throws IOException if the buffer does not hold a valid level
+     */
+    public static Level read(ByteBuffer buffer) throws IOException {
+        ByteBuffer in = buffer.slice();
+        if (in.remaining() < HEADER_BYTES || in.getInt(0) != MAGIC) {
+            throw new IOException("not a level file");
+        }
+        int version = Byte.toUnsignedInt(in.get(4));
+        if (version != VERSION && version != GRID_VERSION) {
+            throw new IOException("unsupported level version: " + version);
+        }
+        int headerBytes = version == GRID_VERSION ? GRID_HEADER_BYTES : HEADER_BYTES;
+        if (in.remaining() < headerBytes) {
+            throw new IOException("not a level file");
+        }
+        int width = in.getInt(5);
+        int height = in.getInt(9);
+        int colors = in.getInt(13);
+        int blocks = in.getInt(17);
+        int gridCount = version == GRID_VERSION ? in.getInt(21) : 0;
+        if (width <= 0 || height <= 0 || colors < 0 || colors > MAX_COLORS || blocks < 0 || gridCount < 0) {
+            throw new IOException("malformed level header");
+        }
+        long recordsAt = headerBytes + 4L * colors;
+        long gridsAt = recordsAt + (long) RECORD_BYTES * blocks;
+        if (gridCount == 0 ? in.remaining() != gridsAt : in.remaining() < gridsAt) {
+            throw new IOException("level file has the wrong length for " + blocks + " blocks");
+        }
+        ByteBuffer grids = in.duplicate().position((int) gridsAt).slice();
+        checkGrids(grids, gridCount, colors);
+        ByteBuffer records = in.limit((int) gridsAt).position((int) recordsAt).slice();
+        for (int at = 12; at < records.limit(); at += RECORD_BYTES) {
+            int colorIndex = Byte.toUnsignedInt(records.get(at));
+            if (colorIndex >= colors || (records.get(at + 1) & ~(BORDER | DEATH_ZONE)) != 0) {
+                throw new IOException("malformed block " + at / RECORD_BYTES + " in level file");
+            }
+        }
+        Level level = new Level(width, height, records);
+        level.palette = new Color[Math.max(colors, 1)];
+        for (int i = 0; i < colors; i++) {
+            level.palette[i] = new Color(in.getInt(headerBytes + 4 * i));
+        }
+        level.colorCount = colors;
+        level.count = blocks;
+        level.grids = grids;
+        level.gridBytes = grids.limit();
+        level.gridCount = gridCount;
+        return level;
+    }
+
+    private static void checkGrids(ByteBuffer grids, int gridCount, int colors) throws IOException {
+        int at = 0;
+        for (int g = 0; g < gridCount; g++) {
+            if (grids.limit() - at < GRID_RECORD_BYTES) {
+                throw new IOException("level file ends inside grid " + g);
+            }
+            int columns = Short.toUnsignedInt(grids.getShort(at + 8));
+            int rows = Short.toUnsignedInt(grids.getShort(at + 10));
+            if (columns == 0 || rows == 0 || grids.getShort(at + 12) == 0 || grids.getShort(at + 14) == 0) {
+                throw new IOException("malformed grid " + g + " in level file");
+            }
+            at += GRID_RECORD_BYTES;
+            if (grids.limit() - at < (long) columns * rows) {
+                throw new IOException("level file ends inside grid " + g);
+            }
+            int cells = columns * rows;
+            for (int cell = 0; cell < cells; cell++) {
+                if (Byte.toUnsignedInt(grids.get(at + cell)) > colors) {
+                    throw new IOException("malformed cell " + cell + " of grid " + g + " in level file");
+                }
+            }
+            at += cells;
+        }
+        if (at != grids.limit()) {
+            throw new IOException("level file has the wrong length for " + gridCount + " grids");
+        }
+    }
+
+    /**
+     * Reads a level file by mapping it into memory.
+     *
+     * @param file the file to read
+     * @return the level
+     * @throws IOException if reading fails or the file is not a level
+     */
+    public static Level load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("level file too large: " + channel.size() + " bytes");
+            }
+            // The mapping stays valid after the channel is closed.
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes the level.
+     *
+     * @param out the stream to write to; it is not closed
+     * @throws IOException if writing fails
+     */
+    public void write(OutputStream out) throws IOException {
+        boolean hasGrids = gridCount > 0;
+        ByteBuffer header = ByteBuffer.allocate((hasGrids ? GRID_HEADER_BYTES : HEADER_BYTES) + 4 * colorCount);
+        header.putInt(MAGIC).put((byte) (hasGrids ? GRID_VERSION : VERSION)).putInt(width).putInt(height)
+                .putInt(colorCount).putInt(count);
+        if (hasGrids) {
+            header.putInt(gridCount);
+        }
+        for (int i = 0; i < colorCount; i++) {
+            header.putInt(palette[i].getRGB() & 0xFFFFFF);
+        }
+        WritableByteChannel channel = Channels.newChannel(out);
+        header.flip();
+        writeFully(channel, header);
+        writeFully(channel, records.duplicate().position(0).limit(count * RECORD_BYTES));
+        writeFully(channel, grids.duplicate().position(0).limit(gridBytes));
+        out.flush();
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Writes the level to a file.
+     *
+     * @param file the file to write
+     * @throws IOException if writing fails
+     */
+    public void save(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(out);
+        }
+    }
+}
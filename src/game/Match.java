@@ -0,0 +1,59 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code Match} class describes one game for a {@link MatchFarm}: a seed for the paddle-control policy
+ * and the level to play. A level only holds block records that the games read, so many matches can share
+ * one level, even a mapped one, while they run on different threads.
+ */
+public class Match {
+    private final long seed;
+    private final Level level;
+
+    /**
+     * Constructs a match.
+     *
+     * @param seed  the seed the policy gets for this match
+     * @param level the level to play, or {@code null} for the standard level
+     */
+    public Match(long seed, Level level) {
+        this.seed = seed;
+        this.level = level;
+    }
+
+    /**
+     * Creates matches on one level for a run of consecutive seeds.
+     *
+     * @param firstSeed the seed of the first match
+     * @param count     the number of matches
+     * @param level     the level to play, or {@code null} for the standard level
+     * @return the matches, in seed order
+     */
+    public static List<Match> seeds(long firstSeed, int count, Level level) {
+        List<Match> matches = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            matches.add(new Match(firstSeed + i, level));
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the seed the policy gets for this match.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the level to play.
+     *
+     * @return the level, or {@code null} for the standard level
+     */
+    public Level getLevel() {
+        return level;
+    }
+}
@@ -0,0 +1,116 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * The {@code MatchFarm} class plays many games at once without a GUI, for balancing and regression runs.
+ * Every match gets its own {@link Game} and {@link HeadlessRunner}, and games share no state, so at most
+ * {@code parallelism} of them run side by side on a fixed pool of worker threads. A game never blocks,
+ * so one thread per core keeps every core busy and throughput grows with the number of cores.
+ * Results are handed to a listener as soon as each game ends and are added up in a {@link FarmStats}.
+ */
+public class MatchFarm {
+    private static final AtomicInteger FARMS = new AtomicInteger();
+
+    private final int parallelism;
+    private final long maxFrames;
+
+    /**
+     * Constructs a farm.
+     *
+     * @param parallelism the greatest number of games played at the same time
+     * @param maxFrames   the frame limit of every game, after which it is stopped even if it is not over
+     */
+    public MatchFarm(int parallelism, long maxFrames) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.maxFrames = maxFrames;
+    }
+
+    /**
+     * Constructs a farm that plays one game per available processor at a time.
+     *
+     * @param maxFrames the frame limit of every game, after which it is stopped even if it is not over
+     */
+    public MatchFarm(long maxFrames) {
+        this(Runtime.getRuntime().availableProcessors(), maxFrames);
+    }
+
+    /**
+     * Plays every match and waits until all of them ended.
+     *
+     * @param matches  the matches to play; they are started in order
+     * @param policy   creates the paddle-control script of a match from its seed; it is called on the
+     *                 worker threads, so it must be safe to call from several threads at once
+     * @param listener gets the result of every match as soon as it ends, on the thread that played it, so
+     *                 it must be safe to call from several threads at once; may be {@code null}
+     * @return the totals over all the matches
+     * @throws InterruptedException if the calling thread is interrupted while waiting; the games that did not
+     *                              start yet are dropped and the running ones finish in the background
+     * @throws IllegalStateException if a game failed, after all the other games ended
+     */
+    public FarmStats run(List<Match> matches, LongFunction<KeyScript> policy, Consumer<MatchResult> listener)
+            throws InterruptedException {
+        FarmStats stats = new FarmStats();
+        if (matches.isEmpty()) {
+            return stats;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, matches.size()),
+                workerFactory());
+        List<Future<?>> futures = new ArrayList<>(matches.size());
+        try {
+            for (Match match : matches) {
+                futures.add(pool.submit(() -> play(match, policy, listener, stats)));
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            throw e;
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("match with seed " + matches.get(i).getSeed() + " failed",
+                        e.getCause());
+            }
+        }
+        return stats;
+    }
+
+    private void play(Match match, LongFunction<KeyScript> policy, Consumer<MatchResult> listener,
+                      FarmStats stats) {
+        Game game = new Game();
+        game.setLevel(match.getLevel());
+        RunResult run = new HeadlessRunner(policy.apply(match.getSeed()), maxFrames).run(game);
+        MatchResult result = new MatchResult(match, run);
+        stats.add(result);
+        if (listener != null) {
+            listener.accept(result);
+        }
+    }
+
+    private static ThreadFactory workerFactory() {
+        int farm = FARMS.incrementAndGet();
+        AtomicInteger workers = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, "match-farm-" + farm + "-" + workers.incrementAndGet());
+            // A farm left running by an exiting program does not keep it alive.
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
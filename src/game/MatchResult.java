@@ -0,0 +1,52 @@
+package game;
+
+/**
+ * The {@code MatchResult} class holds the outcome of one {@link Match} run by a {@link MatchFarm}.
+ */
+public class MatchResult {
+    private final Match match;
+    private final RunResult result;
+
+    /**
+     * Constructs a result.
+     *
+     * @param match  the match that was played
+     * @param result the outcome of the game
+     */
+    public MatchResult(Match match, RunResult result) {
+        this.match = match;
+        this.result = result;
+    }
+
+    /**
+     * Returns the match that was played.
+     *
+     * @return the match
+     */
+    public Match getMatch() {
+        return match;
+    }
+
+    /**
+     * Returns the outcome of the game.
+     *
+     * @return the run result
+     */
+    public RunResult getResult() {
+        return result;
+    }
+
+    /**
+     * Returns the number of frames it took to clear all the blocks.
+     *
+     * @return the frame count, or -1 if the game was not won
+     */
+    public long getFramesToClear() {
+        return result.isWon() ? result.getFrames() : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "seed=" + match.getSeed() + " " + result + " lost=" + result.getBallsLost();
+    }
+}
@@ -0,0 +1,53 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code QueryStats} class counts the collision queries a {@link GameEnvironment} answers,
+ * the collidables each query tests and the time spent answering them.
+ * Queries may run on several threads at once, so the totals are atomic.
+ */
+public class QueryStats {
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong candidates = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+
+    /**
+     * Adds one answered query.
+     *
+     * @param tested  the number of collidables the query tested
+     * @param elapsed the time the query took, in nanoseconds
+     */
+    public void addQuery(int tested, long elapsed) {
+        queries.incrementAndGet();
+        candidates.addAndGet(tested);
+        nanos.addAndGet(elapsed);
+    }
+
+    /**
+     * Returns the number of queries since the last reset and resets it.
+     *
+     * @return the query count
+     */
+    public long takeQueries() {
+        return queries.getAndSet(0);
+    }
+
+    /**
+     * Returns the number of collidables tested since the last reset and resets it.
+     *
+     * @return the candidate test count
+     */
+    public long takeCandidates() {
+        return candidates.getAndSet(0);
+    }
+
+    /**
+     * Returns the time spent in queries since the last reset and resets it.
+     *
+     * @return the query time in nanoseconds
+     */
+    public long takeNanos() {
+        return nanos.getAndSet(0);
+    }
+}
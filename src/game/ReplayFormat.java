@@ -0,0 +1,66 @@
+package game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * The {@code ReplayFormat} class holds the constants and the variable-length integer coding shared by
+ * {@link InputRecorder} and {@link ReplayPlayer}.
+ * A replay file is laid out as follows, with every count and offset written as an unsigned varint
+ * (seven bits per byte, lowest group first, high bit set on every byte but the last):
+ * <pre>
+ *   int    magic "BBRP"
+ *   byte   format version
+ *   varint keyframe interval, in frames
+ *   varint frame count
+ *   varint length of the run data in bytes, followed by the run data:
+ *            for each run of frames with the same keys, varint run length and one byte of key bits
+ *   varint keyframe count, followed by each keyframe:
+ *            varint frame, varint offset of the run holding the frame,
+ *            varint frames of that run before the keyframe, long game state checksum
+ * </pre>
+ */
+final class ReplayFormat {
+    /** The magic number that starts every replay file. */
+    static final int MAGIC = 0x42425250;
+    /** The current format version. */
+    static final int VERSION = 1;
+
+    private ReplayFormat() {
+    }
+
+    /**
+     * Writes an unsigned varint to a byte stream.
+     *
+     * @param out   the stream
+     * @param value the value, at least 0
+     */
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    /**
+     * Reads an unsigned varint from a stream.
+     *
+     * @param in the stream
+     * @return the value
+     * @throws IOException if reading fails or the varint is malformed
+     */
+    static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint in replay file");
+    }
+}
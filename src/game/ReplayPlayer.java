@@ -0,0 +1,197 @@
+package game;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The {@code ReplayPlayer} class plays back a game recorded by an {@link InputRecorder}.
+ * As a {@link KeyScript} it hands out the recorded keys frame by frame. Reading frames in order only
+ * steps through the run data; jumping to another frame starts from the nearest keyframe before it,
+ * found by a binary search, instead of from the start.
+ * {@link #play(Game, long)} replays a new game headless at full speed, for example to reproduce a bug
+ * report or as a benchmark workload, and checks the game state against every keyframe on the way.
+ */
+public class ReplayPlayer implements KeyScript {
+    private final long frameCount;
+    private final byte[] runs;
+    private final long[] keyframeFrame;
+    private final long[] keyframeOffset;
+    private final long[] keyframeSkip;
+    private final long[] keyframeChecksum;
+    private final int keyframeInterval;
+
+    // Decoding position: the keys and remaining length of the run holding frame cursorFrame.
+    private int position;
+    private int runKeys;
+    private long runRemaining;
+    private long cursorFrame = -1;
+
+    private Game checkedGame;
+    private long divergedFrame = -1;
+
+    private ReplayPlayer(int keyframeInterval, long frameCount, byte[] runs, long[] keyframeFrame,
+                         long[] keyframeOffset, long[] keyframeSkip, long[] keyframeChecksum) {
+        this.keyframeInterval = keyframeInterval;
+        this.frameCount = frameCount;
+        this.runs = runs;
+        this.keyframeFrame = keyframeFrame;
+        this.keyframeOffset = keyframeOffset;
+        this.keyframeSkip = keyframeSkip;
+        this.keyframeChecksum = keyframeChecksum;
+    }
+
+    /**
+     * Reads a recording.
+     *
+     * @param in the stream to read from; it is not closed
+     * @return the player
+     * @throws IOException if reading fails or the stream is not a replay
+     */
+    public static ReplayPlayer read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != ReplayFormat.MAGIC) {
+            throw new IOException("not a replay file");
+        }
+        int version = data.readUnsignedByte();
+        if (version != ReplayFormat.VERSION) {
+            throw new IOException("unsupported replay version: " + version);
+        }
+        int interval = (int) ReplayFormat.readVarint(data);
+        long frames = ReplayFormat.readVarint(data);
+        byte[] runs = new byte[(int) ReplayFormat.readVarint(data)];
+        data.readFully(runs);
+        int keyframes = (int) ReplayFormat.readVarint(data);
+        long[] frame = new long[keyframes];
+        long[] offset = new long[keyframes];
+        long[] skip = new long[keyframes];
+        long[] checksum = new long[keyframes];
+        for (int i = 0; i < keyframes; i++) {
+            frame[i] = ReplayFormat.readVarint(data);
+            offset[i] = ReplayFormat.readVarint(data);
+            skip[i] = ReplayFormat.readVarint(data);
+            checksum[i] = data.readLong();
+        }
+        return new ReplayPlayer(interval, frames, runs, frame, offset, skip, checksum);
+    }
+
+    /**
+     * Reads a recording from a file.
+     *
+     * @param file the file to read
+     * @return the player
+     * @throws IOException if reading fails or the file is not a replay
+     */
+    public static ReplayPlayer load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Returns the recorded keys of a frame. Frames after the end of the recording have no keys pressed.
+     * While a game is being replayed by {@link #play(Game, long)}, asking for a keyframe's keys also checks
+     * the game state against the keyframe.
+     *
+     * @param frame the frame number, starting at 0
+     * @return the pressed keys, as {@link ScriptedKeyboardSensor} bits
+     */
+    @Override
+    public int keysAt(long frame) {
+        if (checkedGame != null && divergedFrame < 0 && frame % keyframeInterval == 0) {
+            int k = keyframeIndex(frame);
+            if (k >= 0 && keyframeFrame[k] == frame && keyframeChecksum[k] != checkedGame.stateChecksum()) {
+                divergedFrame = frame;
+            }
+        }
+        if (frame < 0 || frame >= frameCount) {
+            return 0;
+        }
+        if (frame < cursorFrame || cursorFrame < 0 || frame - cursorFrame > keyframeInterval) {
+            seek(frame);
+        }
+        long ahead = frame - cursorFrame;
+        while (ahead >= runRemaining) {
+            ahead -= runRemaining;
+            cursorFrame += runRemaining;
+            readRun();
+        }
+        runRemaining -= ahead;
+        cursorFrame = frame;
+        return runKeys;
+    }
+
+    /**
+     * Moves the decoding position to the keyframe at or before the given frame.
+     *
+     * @param frame the frame to move towards
+     */
+    private void seek(long frame) {
+        int k = keyframeIndex(frame);
+        position = (int) keyframeOffset[k];
+        readRun();
+        runRemaining -= keyframeSkip[k];
+        cursorFrame = keyframeFrame[k];
+    }
+
+    private int keyframeIndex(long frame) {
+        int index = Arrays.binarySearch(keyframeFrame, frame);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private void readRun() {
+        long length = 0;
+        int shift = 0;
+        while (true) {
+            int b = runs[position++];
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            shift += 7;
+        }
+        runRemaining = length;
+        runKeys = runs[position++];
+    }
+
+    /**
+     * Replays the recording on a new game without drawing anything, as fast as possible, up to the given
+     * frame or the end of the game. Every keyframe passed on the way is checked against the game state;
+     * see {@link #getDivergedFrame()}. Afterwards the game is left at that frame.
+     *
+     * @param game    a new game with the same layout as the recorded one; it is initialized by this method
+     * @param toFrame the number of frames to replay
+     * @return the result of the run
+     */
+    public RunResult play(Game game, long toFrame) {
+        checkedGame = game;
+        divergedFrame = -1;
+        try {
+            return new HeadlessRunner(this, toFrame).run(game);
+        } finally {
+            checkedGame = null;
+        }
+    }
+
+    /**
+     * Returns the first keyframe at which the last {@link #play(Game, long)} found a different game state
+     * than the recorded one.
+     *
+     * @return the frame number, or -1 if every checked keyframe matched
+     */
+    public long getDivergedFrame() {
+        return divergedFrame;
+    }
+
+    /**
+     * Returns the number of recorded frames.
+     *
+     * @return the frame count
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+}
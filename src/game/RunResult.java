@@ -0,0 +1,115 @@
+package game;
+
+/**
+ * The {@code RunResult} class holds the outcome of a game run by a {@link HeadlessRunner}:
+ * how many frames were simulated, how long it took, and the final score and counters.
+ */
+public class RunResult {
+    private final long frames;
+    private final long elapsedNanos;
+    private final int score;
+    private final int remainingBlocks;
+    private final int remainingBalls;
+    private final int ballsLost;
+    private final boolean won;
+
+    /**
+     * Constructs a result.
+     *
+     * @param frames          the number of frames simulated
+     * @param elapsedNanos    the wall-clock time the simulation took, in nanoseconds
+     * @param score           the final score
+     * @param remainingBlocks the number of blocks left at the end
+     * @param remainingBalls  the number of balls left at the end
+     * @param ballsLost       the number of balls that fell out of the board
+     * @param won             whether all the blocks were cleared
+     */
+    public RunResult(long frames, long elapsedNanos, int score, int remainingBlocks, int remainingBalls,
+                     int ballsLost, boolean won) {
+        this.frames = frames;
+        this.elapsedNanos = elapsedNanos;
+        this.score = score;
+        this.remainingBlocks = remainingBlocks;
+        this.remainingBalls = remainingBalls;
+        this.ballsLost = ballsLost;
+        this.won = won;
+    }
+
+    /**
+     * Returns the number of frames simulated.
+     *
+     * @return the frame count
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the wall-clock time the simulation took.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the simulation speed.
+     *
+     * @return the number of frames simulated per second of wall-clock time
+     */
+    public double getFramesPerSecond() {
+        return elapsedNanos == 0 ? 0 : frames * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the final score.
+     *
+     * @return the score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the number of blocks left at the end.
+     *
+     * @return the remaining blocks
+     */
+    public int getRemainingBlocks() {
+        return remainingBlocks;
+    }
+
+    /**
+     * Returns the number of balls left at the end.
+     *
+     * @return the remaining balls
+     */
+    public int getRemainingBalls() {
+        return remainingBalls;
+    }
+
+    /**
+     * Returns the number of balls that fell out of the board during the run.
+     *
+     * @return the lost balls
+     */
+    public int getBallsLost() {
+        return ballsLost;
+    }
+
+    /**
+     * Checks whether all the blocks were cleared.
+     *
+     * @return true if the game was won
+     */
+    public boolean isWon() {
+        return won;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("frames=%d fps=%.1f score=%d blocks=%d balls=%d won=%b",
+                frames, getFramesPerSecond(), score, remainingBlocks, remainingBalls, won);
+    }
+}
@@ -0,0 +1,63 @@
+package game;
+
+import biuoop.KeyboardSensor;
+
+/**
+ * The {@code ScriptedKeyboardSensor} class is a {@link KeyboardSensor} whose keys are set by code
+ * instead of a real keyboard. The paddle only reads the left and right keys, so the state is kept
+ * as a bit mask of {@link #LEFT} and {@link #RIGHT}.
+ */
+public class ScriptedKeyboardSensor implements KeyboardSensor {
+    /** Bit set in the key mask while the left key is pressed. */
+    public static final int LEFT = 1;
+    /** Bit set in the key mask while the right key is pressed. */
+    public static final int RIGHT = 2;
+
+    private int keys;
+
+    /**
+     * Sets which keys are currently pressed.
+     *
+     * @param keys a bit mask of {@link #LEFT} and {@link #RIGHT}
+     */
+    public void setKeys(int keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Returns which keys are currently pressed.
+     *
+     * @return a bit mask of {@link #LEFT} and {@link #RIGHT}
+     */
+    public int getKeys() {
+        return keys;
+    }
+
+    /**
+     * Reads the left and right keys of another keyboard sensor as a key mask.
+     *
+     * @param keyboard the keyboard to read
+     * @return a bit mask of {@link #LEFT} and {@link #RIGHT}
+     */
+    public static int keysOf(KeyboardSensor keyboard) {
+        int keys = 0;
+        if (keyboard.isPressed(LEFT_KEY)) {
+            keys |= LEFT;
+        }
+        if (keyboard.isPressed(RIGHT_KEY)) {
+            keys |= RIGHT;
+        }
+        return keys;
+    }
+
+    @Override
+    public boolean isPressed(String key) {
+        if (LEFT_KEY.equals(key)) {
+            return (keys & LEFT) != 0;
+        }
+        if (RIGHT_KEY.equals(key)) {
+            return (keys & RIGHT) != 0;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,54 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code SnapshotBuffer} class hands {@link WorldSnapshot}s from the simulation thread to the
+ * render thread through a lock-free triple buffer. The writer always fills its own back snapshot and
+ * the reader always draws its own front snapshot; the third one sits in the middle and is swapped with
+ * a single atomic operation on either side, so neither thread ever waits for the other.
+ * The reader always gets the latest published snapshot and skips the ones it was too slow to draw.
+ * There must be exactly one writer thread and one reader thread.
+ */
+public class SnapshotBuffer {
+    private static final int INDEX_MASK = 3;
+    // Set in the middle slot when it holds a snapshot the reader has not taken yet.
+    private static final int FRESH = 4;
+
+    private final WorldSnapshot[] snapshots = {new WorldSnapshot(), new WorldSnapshot(), new WorldSnapshot()};
+    private final AtomicInteger middle = new AtomicInteger(1);
+    // Only used by the writer.
+    private int back = 0;
+    // Only used by the reader.
+    private int front = 2;
+
+    /**
+     * Returns the snapshot the writer fills next. Only the writer thread may call this.
+     *
+     * @return the back snapshot
+     */
+    public WorldSnapshot back() {
+        return snapshots[back];
+    }
+
+    /**
+     * Publishes the back snapshot, which becomes the latest one, and takes a new back snapshot.
+     * Only the writer thread may call this.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Returns the latest published snapshot. The snapshot stays valid until the next call.
+     * Only the reader thread may call this.
+     *
+     * @return the latest snapshot, or an empty one if nothing was published yet
+     */
+    public WorldSnapshot latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return snapshots[front];
+    }
+}
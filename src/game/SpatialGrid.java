@@ -0,0 +1,358 @@
+package game;
+
+import collision.Collidable;
+import geometry.Rectangle;
+
+import java.util.Arrays;
+
+/**
+ * The {@code SpatialGrid} class is a uniform grid (spatial hash) over the plane.
+ * Every collidable is stored in each square cell its collision rectangle touches, so a query
+ * only has to look at the few cells around a trajectory instead of the whole environment.
+ * Cells are kept in an open-addressing table keyed by the packed cell coordinates, which lets
+ * the grid cover any area without knowing the size of the board in advance.
+ * A cell keeps the bounds of its entries in packed arrays of coordinates next to their slot numbers,
+ * so a query can test all of them in one pass without following a reference per entry.
+ */
+class SpatialGrid {
+    private static final int INITIAL_TABLE_SIZE = 64;
+
+    private final int cellSize;
+    private long[] keys = new long[INITIAL_TABLE_SIZE];
+    private Cell[] cells = new Cell[INITIAL_TABLE_SIZE];
+    private int usedCells;
+
+    /**
+     * Constructs an empty grid.
+     *
+     * @param cellSize the side length of each square cell
+     */
+    SpatialGrid(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cell size must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Returns the index of the cell containing the given coordinate.
+     *
+     * @param value an x or y coordinate
+     * @return the cell index along that axis
+     */
+    int cellOf(double value) {
+        return (int) Math.floor(value / cellSize);
+    }
+
+    /**
+     * Inserts an entry into every cell covered by its rectangle.
+     *
+     * @param entry the entry to insert
+     */
+    void insert(Entry entry) {
+        for (int cy = entry.minCy; cy <= entry.maxCy; cy++) {
+            for (int cx = entry.minCx; cx <= entry.maxCx; cx++) {
+                cellAt(cx, cy, true).add(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes an entry from every cell it was inserted into.
+     *
+     * @param entry the entry to remove
+     */
+    void remove(Entry entry) {
+        for (int cy = entry.minCy; cy <= entry.maxCy; cy++) {
+            for (int cx = entry.minCx; cx <= entry.maxCx; cx++) {
+                Cell cell = cellAt(cx, cy, false);
+                if (cell != null) {
+                    cell.remove(entry.slot());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cell at the given coordinates.
+     *
+     * @param cx     the cell column
+     * @param cy     the cell row
+     * @param create whether to create the cell when it does not exist yet
+     * @return the cell, or {@code null} if it does not exist and {@code create} is false
+     */
+    Cell cellAt(int cx, int cy, boolean create) {
+        long key = ((long) cx << 32) | (cy & 0xffffffffL);
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (cells[slot] != null) {
+            if (keys[slot] == key) {
+                return cells[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!create) {
+            return null;
+        }
+        Cell cell = new Cell();
+        keys[slot] = key;
+        cells[slot] = cell;
+        usedCells++;
+        if (usedCells * 2 > keys.length) {
+            grow();
+        }
+        return cell;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Cell[] oldCells = cells;
+        keys = new long[oldKeys.length * 2];
+        cells = new Cell[oldCells.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldCells.length; i++) {
+            if (oldCells[i] != null) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (cells[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                cells[slot] = oldCells[i];
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * A single grid cell holding the slots and bounds of the entries that touch it.
+     */
+    static final class Cell {
+        private int[] slots = new int[4];
+        private double[] minX = new double[4];
+        private double[] minY = new double[4];
+        private double[] maxX = new double[4];
+        private double[] maxY = new double[4];
+        private int count;
+
+        private void add(Entry entry) {
+            if (count == slots.length) {
+                int capacity = count * 2;
+                slots = Arrays.copyOf(slots, capacity);
+                minX = Arrays.copyOf(minX, capacity);
+                minY = Arrays.copyOf(minY, capacity);
+                maxX = Arrays.copyOf(maxX, capacity);
+                maxY = Arrays.copyOf(maxY, capacity);
+            }
+            slots[count] = entry.slot();
+            minX[count] = entry.minX();
+            minY[count] = entry.minY();
+            maxX[count] = entry.maxX();
+            maxY[count] = entry.maxY();
+            count++;
+        }
+
+        private void remove(int slot) {
+            for (int i = 0; i < count; i++) {
+                if (slots[i] == slot) {
+                    count--;
+                    slots[i] = slots[count];
+                    minX[i] = minX[count];
+                    minY[i] = minY[count];
+                    maxX[i] = maxX[count];
+                    maxY[i] = maxY[count];
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Returns the number of entries in the cell.
+         *
+         * @return the entry count
+         */
+        int size() {
+            return count;
+        }
+
+        /**
+         * Returns the slot of the entry at the given position.
+         *
+         * @param i the position, between 0 and {@link #size()}
+         * @return the slot of the entry in the environment
+         */
+        int get(int i) {
+            return slots[i];
+        }
+
+        /**
+         * Returns the minimum X coordinates of the entries, valid up to {@link #size()}.
+         *
+         * @return the packed coordinates
+         */
+        double[] minX() {
+            return minX;
+        }
+
+        /**
+         * Returns the minimum Y coordinates of the entries, valid up to {@link #size()}.
+         *
+         * @return the packed coordinates
+         */
+        double[] minY() {
+            return minY;
+        }
+
+        /**
+         * Returns the maximum X coordinates of the entries, valid up to {@link #size()}.
+         *
+         * @return the packed coordinates
+         */
+        double[] maxX() {
+            return maxX;
+        }
+
+        /**
+         * Returns the maximum Y coordinates of the entries, valid up to {@link #size()}.
+         *
+         * @return the packed coordinates
+         */
+        double[] maxY() {
+            return maxY;
+        }
+    }
+
+    /**
+     * A collidable stored in the grid, together with the range of cells it covers and
+     * the order in which it was added to the environment.
+     */
+    static final class Entry {
+        private final Collidable collidable;
+        private final long order;
+        private final long handle;
+        private final int minCx;
+        private final int minCy;
+        private final int maxCx;
+        private final int maxCy;
+        private final double minX;
+        private final double minY;
+        private final double maxX;
+        private final double maxY;
+
+        /**
+         * Constructs an entry for the given collidable.
+         *
+         * @param grid       the grid the entry is placed in
+         * @param collidable the collidable
+         * @param order      the insertion order of the collidable in the environment
+         * @param handle     the handle of the collidable in the environment
+         */
+        Entry(SpatialGrid grid, Collidable collidable, long order, long handle) {
+            Rectangle rect = collidable.getCollisionRectangle();
+            this.collidable = collidable;
+            this.order = order;
+            this.handle = handle;
+            this.minX = rect.getMinX();
+            this.minY = rect.getMinY();
+            this.maxX = rect.getMaxX();
+            this.maxY = rect.getMaxY();
+            this.minCx = grid.cellOf(rect.getMinX());
+            this.minCy = grid.cellOf(rect.getMinY());
+            this.maxCx = grid.cellOf(rect.getMaxX());
+            this.maxCy = grid.cellOf(rect.getMaxY());
+        }
+
+        /**
+         * Returns the stored collidable.
+         *
+         * @return the collidable
+         */
+        Collidable collidable() {
+            return collidable;
+        }
+
+        /**
+         * Returns the minimum X coordinate of the collision rectangle when the entry was created.
+         *
+         * @return the minimum X coordinate
+         */
+        double minX() {
+            return minX;
+        }
+
+        /**
+         * Returns the minimum Y coordinate of the collision rectangle when the entry was created.
+         *
+         * @return the minimum Y coordinate
+         */
+        double minY() {
+            return minY;
+        }
+
+        /**
+         * Returns the maximum X coordinate of the collision rectangle when the entry was created.
+         *
+         * @return the maximum X coordinate
+         */
+        double maxX() {
+            return maxX;
+        }
+
+        /**
+         * Returns the maximum Y coordinate of the collision rectangle when the entry was created.
+         *
+         * @return the maximum Y coordinate
+         */
+        double maxY() {
+            return maxY;
+        }
+
+        /**
+         * Returns the insertion order of the collidable.
+         *
+         * @return the order
+         */
+        long order() {
+            return order;
+        }
+
+        /**
+         * Returns the handle of the collidable in the environment.
+         *
+         * @return the handle
+         */
+        long handle() {
+            return handle;
+        }
+
+        /**
+         * Returns the slot of the collidable in the environment, the low half of its handle.
+         *
+         * @return the slot
+         */
+        int slot() {
+            return (int) handle;
+        }
+
+        /**
+         * Returns the first cell column covered by the entry.
+         *
+         * @return the cell column
+         */
+        int minCx() {
+            return minCx;
+        }
+
+        /**
+         * Returns the first cell row covered by the entry.
+         *
+         * @return the cell row
+         */
+        int minCy() {
+            return minCy;
+        }
+    }
+}
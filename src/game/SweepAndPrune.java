@@ -0,0 +1,315 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * The {@code SweepAndPrune} class finds the pairs of overlapping axis-aligned boxes among many moving boxes.
+ * The minimum and maximum of every box are kept in one sorted list of end points per axis. Boxes move
+ * only a little from one tick to the next, so {@link #refresh()} sorts the lists again with an insertion
+ * sort that does close to linear work. Two boxes start overlapping exactly when the minimum of one passes
+ * the maximum of the other on some axis, so new pairs are found from those swaps alone. The pairs are
+ * carried over from tick to tick instead of being searched for again, and the few that stopped overlapping
+ * are dropped by one pass over the pair list. Boxes touch without overlapping when they only share a border.
+ */
+class SweepAndPrune {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long NO_PAIR = -1;
+
+    private double[] minX = new double[INITIAL_CAPACITY];
+    private double[] minY = new double[INITIAL_CAPACITY];
+    private double[] maxX = new double[INITIAL_CAPACITY];
+    private double[] maxY = new double[INITIAL_CAPACITY];
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private int idCount;
+    private final Axis xAxis = new Axis();
+    private final Axis yAxis = new Axis();
+
+    // The overlapping pairs as packed ids, in a dense list for iteration and a linear-probing table
+    // from a pair to its position in the list.
+    private long[] pairs = new long[INITIAL_CAPACITY];
+    private int pairCount;
+    private long[] tableKeys = newTable(INITIAL_CAPACITY * 2);
+    private int[] tableIndex = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Adds a box. Its pairs are found by the next {@link #refresh()}.
+     *
+     * @param left   the minimum X coordinate of the box
+     * @param top    the minimum Y coordinate of the box
+     * @param right  the maximum X coordinate of the box
+     * @param bottom the maximum Y coordinate of the box
+     * @return the id of the box, which is reused once the box is removed
+     */
+    int add(double left, double top, double right, double bottom) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            if (idCount == minX.length) {
+                int capacity = idCount * 2;
+                minX = Arrays.copyOf(minX, capacity);
+                minY = Arrays.copyOf(minY, capacity);
+                maxX = Arrays.copyOf(maxX, capacity);
+                maxY = Arrays.copyOf(maxY, capacity);
+                freeIds = Arrays.copyOf(freeIds, capacity);
+            }
+            id = idCount++;
+        }
+        setBounds(id, left, top, right, bottom);
+        xAxis.add(id);
+        yAxis.add(id);
+        return id;
+    }
+
+    /**
+     * Moves a box. Its pairs are brought up to date by the next {@link #refresh()}.
+     *
+     * @param id     the id of the box
+     * @param left   the new minimum X coordinate of the box
+     * @param top    the new minimum Y coordinate of the box
+     * @param right  the new maximum X coordinate of the box
+     * @param bottom the new maximum Y coordinate of the box
+     */
+    void update(int id, double left, double top, double right, double bottom) {
+        setBounds(id, left, top, right, bottom);
+    }
+
+    /**
+     * Removes a box together with all its pairs, and brings the other pairs up to date.
+     * The box is moved past the end of both axes, where it overlaps nothing.
+     *
+     * @param id the id of the box
+     */
+    void remove(int id) {
+        double far = Double.POSITIVE_INFINITY;
+        update(id, far, far, far, far);
+        refresh();
+        xAxis.removeLast();
+        yAxis.removeLast();
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * Sorts both axes again after boxes were added or moved, adding the pairs whose end points passed each
+     * other and dropping the pairs that no longer overlap.
+     */
+    void refresh() {
+        xAxis.load(minX, maxX, minY, maxY);
+        xAxis.sort();
+        yAxis.load(minY, maxY, minX, maxX);
+        yAxis.sort();
+        for (int i = pairCount - 1; i >= 0; i--) {
+            long key = pairs[i];
+            if (!overlaps((int) (key >>> 32), (int) key)) {
+                removePair(key);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of overlapping pairs.
+     *
+     * @return the pair count
+     */
+    int pairCount() {
+        return pairCount;
+    }
+
+    /**
+     * Returns the smaller id of a pair.
+     *
+     * @param i the position of the pair, between 0 and {@link #pairCount()}
+     * @return the id of the first box of the pair
+     */
+    int first(int i) {
+        return (int) (pairs[i] >>> 32);
+    }
+
+    /**
+     * Returns the larger id of a pair.
+     *
+     * @param i the position of the pair, between 0 and {@link #pairCount()}
+     * @return the id of the second box of the pair
+     */
+    int second(int i) {
+        return (int) pairs[i];
+    }
+
+    private void setBounds(int id, double left, double top, double right, double bottom) {
+        minX[id] = left;
+        minY[id] = top;
+        maxX[id] = right;
+        maxY[id] = bottom;
+    }
+
+    private boolean overlaps(int a, int b) {
+        return minX[a] < maxX[b] && minX[b] < maxX[a] && minY[a] < maxY[b] && minY[b] < maxY[a];
+    }
+
+    // Called when the minimum of box a passed the maximum of box b on some axis. Every pair that started
+    // to overlap since the last refresh does so on at least one axis, and the coordinates are already final.
+    private void crossed(int a, int b) {
+        if (overlaps(a, b)) {
+            addPair(a < b ? ((long) a << 32) | b : ((long) b << 32) | a);
+        }
+    }
+
+    private void addPair(long key) {
+        int mask = tableKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (tableKeys[slot] != NO_PAIR) {
+            if (tableKeys[slot] == key) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (pairCount == pairs.length) {
+            pairs = Arrays.copyOf(pairs, pairCount * 2);
+        }
+        tableKeys[slot] = key;
+        tableIndex[slot] = pairCount;
+        pairs[pairCount++] = key;
+        if (pairCount * 2 > tableKeys.length) {
+            growTable();
+        }
+    }
+
+    private void removePair(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return;
+        }
+        // The last pair in the list takes the place of the removed one.
+        int index = tableIndex[slot];
+        long last = pairs[--pairCount];
+        if (index != pairCount) {
+            pairs[index] = last;
+            tableIndex[find(last)] = index;
+        }
+        // Backward-shift deletion keeps every remaining key reachable without tombstones.
+        int mask = tableKeys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (tableKeys[next] != NO_PAIR) {
+            int home = hash(tableKeys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                tableKeys[hole] = tableKeys[next];
+                tableIndex[hole] = tableIndex[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        tableKeys[hole] = NO_PAIR;
+    }
+
+    private int find(long key) {
+        int mask = tableKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (tableKeys[slot] != NO_PAIR) {
+            if (tableKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void growTable() {
+        tableKeys = newTable(tableKeys.length * 2);
+        tableIndex = new int[tableKeys.length];
+        int mask = tableKeys.length - 1;
+        for (int i = 0; i < pairCount; i++) {
+            int slot = hash(pairs[i]) & mask;
+            while (tableKeys[slot] != NO_PAIR) {
+                slot = (slot + 1) & mask;
+            }
+            tableKeys[slot] = pairs[i];
+            tableIndex[slot] = i;
+        }
+    }
+
+    private static long[] newTable(int size) {
+        long[] table = new long[size];
+        Arrays.fill(table, NO_PAIR);
+        return table;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * The sorted end points of every box along one axis. An end point is tagged with the id of its box
+     * shifted left by one, plus one for a minimum. Equal values sort maxima first, so boxes that only
+     * share a border never count as overlapping. Next to every end point the axis keeps its box's interval
+     * on the other axis, so most swaps are dismissed by comparing values that are already at hand.
+     */
+    private final class Axis {
+        private double[] values = new double[INITIAL_CAPACITY * 2];
+        private int[] tags = new int[INITIAL_CAPACITY * 2];
+        private double[] otherMin = new double[INITIAL_CAPACITY * 2];
+        private double[] otherMax = new double[INITIAL_CAPACITY * 2];
+        private int size;
+
+        private void add(int id) {
+            if (size == tags.length) {
+                int capacity = size * 2;
+                values = Arrays.copyOf(values, capacity);
+                tags = Arrays.copyOf(tags, capacity);
+                otherMin = Arrays.copyOf(otherMin, capacity);
+                otherMax = Arrays.copyOf(otherMax, capacity);
+            }
+            tags[size++] = id << 1;
+            tags[size++] = (id << 1) | 1;
+        }
+
+        private void removeLast() {
+            size -= 2;
+        }
+
+        /**
+         * Reads the current bounds of every box into the end points, keeping their order from the last sort.
+         */
+        private void load(double[] min, double[] max, double[] crossMin, double[] crossMax) {
+            for (int i = 0; i < size; i++) {
+                int tag = tags[i];
+                int id = tag >> 1;
+                values[i] = (tag & 1) != 0 ? min[id] : max[id];
+                otherMin[i] = crossMin[id];
+                otherMax[i] = crossMax[id];
+            }
+        }
+
+        private void sort() {
+            for (int i = 1; i < size; i++) {
+                double value = values[i];
+                int tag = tags[i];
+                double low = otherMin[i];
+                double high = otherMax[i];
+                boolean isMin = (tag & 1) != 0;
+                int j = i - 1;
+                while (j >= 0 && (value < values[j] || (value == values[j] && (tag & 1) < (tags[j] & 1)))) {
+                    int other = tags[j];
+                    // A minimum passing a maximum starts an overlap on this axis, which only makes a new pair if
+                    // the boxes overlap on the other axis too. That is rarely true, so it is tested first, with
+                    // a min that compiles without branches.
+                    if (isMin && Math.min(high - otherMin[j], otherMax[j] - low) > 0
+                            && (other & 1) == 0 && (tag >> 1) != (other >> 1)) {
+                        crossed(tag >> 1, other >> 1);
+                    }
+                    values[j + 1] = values[j];
+                    tags[j + 1] = other;
+                    otherMin[j + 1] = otherMin[j];
+                    otherMax[j + 1] = otherMax[j];
+                    j--;
+                }
+                values[j + 1] = value;
+                tags[j + 1] = tag;
+                otherMin[j + 1] = low;
+                otherMax[j + 1] = high;
+            }
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package game;
+
+import biuoop.DrawSurface;
+import sprites.Ball;
+import sprites.Block;
+import sprites.BlockGrid;
+import sprites.Paddle;
+import sprites.ScoreIndicator;
+import sprites.Sprite;
+import sprites.SpriteCollection;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * The {@code WorldSnapshot} class holds everything needed to draw one frame of the game:
+ * the balls, the paddle, the blocks that are still alive and the score.
+ * The simulation thread fills a snapshot after each tick and hands it over through a {@link SnapshotBuffer};
+ * from then on the snapshot is only read, so the render thread can draw it while the game keeps moving.
+ * A {@link BlockGrid} is copied as its packed cells, and only when they changed since this snapshot last copied
+ * that grid, so a large field of bricks costs nothing per tick while no brick breaks.
+ * Snapshots are reused from frame to frame, so their arrays only grow and are never reallocated per frame.
+ */
+public class WorldSnapshot {
+    private long frame = -1;
+    private int score;
+    private boolean over;
+    private boolean won;
+    private long tickTime;
+    private long tickNanos;
+
+    private boolean hasIndicator;
+    private int indicatorX;
+    private int indicatorY;
+    private int indicatorWidth;
+    private int indicatorHeight;
+    private Color indicatorColor;
+
+    private boolean hasPaddle;
+    private double paddleX;
+    private double previousPaddleX;
+    private int paddleY;
+    private int paddleWidth;
+    private int paddleHeight;
+
+    private int blockCount;
+    private int[] blockX = new int[64];
+    private int[] blockY = new int[64];
+    private int[] blockWidth = new int[64];
+    private int[] blockHeight = new int[64];
+    private Color[] blockColor = new Color[64];
+
+    private int gridCount;
+    private GridCopy[] grids = new GridCopy[0];
+
+    private int ballCount;
+    private double[] ballX = new double[8];
+    private double[] ballY = new double[8];
+    private double[] previousBallX = new double[8];
+    private double[] previousBallY = new double[8];
+    private int[] ballRadius = new int[8];
+    private Color[] ballColor = new Color[8];
+
+    /**
+     * Copies the state of the given sprites into the snapshot. Sprites other than balls, blocks,
+     * the paddle and the score indicator are not part of a snapshot.
+     *
+     * @param sprites the sprites of the game
+     * @param tick    the number of the simulation tick the snapshot was taken after
+     * @param points  the current score
+     */
+    public void capture(SpriteCollection sprites, long tick, int points) {
+        this.frame = tick;
+        this.score = points;
+        this.over = false;
+        this.won = false;
+        this.hasIndicator = false;
+        this.hasPaddle = false;
+        this.blockCount = 0;
+        this.gridCount = 0;
+        this.ballCount = 0;
+        for (int i = 0; i < sprites.size(); i++) {
+            Sprite s = sprites.get(i);
+            if (s instanceof Ball) {
+                addBall((Ball) s);
+            } else if (s instanceof Paddle) {
+                Paddle paddle = (Paddle) s;
+                this.hasPaddle = true;
+                this.paddleX = paddle.getUpperLeft().getX();
+                this.previousPaddleX = paddle.getPreviousX();
+                this.paddleY = (int) paddle.getUpperLeft().getY();
+                this.paddleWidth = (int) paddle.getWidth();
+                this.paddleHeight = (int) paddle.getHeight();
+            } else if (s instanceof ScoreIndicator) {
+                ScoreIndicator indicator = (ScoreIndicator) s;
+                this.hasIndicator = true;
+                this.indicatorX = (int) indicator.getUpperLeft().getX();
+                this.indicatorY = (int) indicator.getUpperLeft().getY();
+                this.indicatorWidth = (int) indicator.getWidth();
+                this.indicatorHeight = (int) indicator.getHeight();
+                this.indicatorColor = indicator.getColor();
+            } else if (s instanceof Block) {
+                addBlock((Block) s);
+            } else if (s instanceof BlockGrid) {
+                addBricks((BlockGrid) s);
+            }
+        }
+    }
+
+    private void addBall(Ball ball) {
+        if (ballCount == ballX.length) {
+            int size = ballCount * 2;
+            ballX = Arrays.copyOf(ballX, size);
+            ballY = Arrays.copyOf(ballY, size);
+            previousBallX = Arrays.copyOf(previousBallX, size);
+            previousBallY = Arrays.copyOf(previousBallY, size);
+            ballRadius = Arrays.copyOf(ballRadius, size);
+            ballColor = Arrays.copyOf(ballColor, size);
+        }
+        ballX[ballCount] = ball.getCenter().getX();
+        ballY[ballCount] = ball.getCenter().getY();
+        previousBallX[ballCount] = ball.getPreviousCenter().getX();
+        previousBallY[ballCount] = ball.getPreviousCenter().getY();
+        ballRadius[ballCount] = ball.getSize();
+        ballColor[ballCount] = ball.getColor();
+        ballCount++;
+    }
+
+    private void addBlock(Block block) {
+        addBlock((int) block.getUpperLeft().getX(), (int) block.getUpperLeft().getY(), (int) block.getWidth(),
+                (int) block.getHeight(), block.getColor());
+    }
+
+    private void addBlock(int x, int y, int width, int height, Color color) {
+        if (blockCount == blockX.length) {
+            int size = blockCount * 2;
+            blockX = Arrays.copyOf(blockX, size);
+            blockY = Arrays.copyOf(blockY, size);
+            blockWidth = Arrays.copyOf(blockWidth, size);
+            blockHeight = Arrays.copyOf(blockHeight, size);
+            blockColor = Arrays.copyOf(blockColor, size);
+        }
+        blockX[blockCount] = x;
+        blockY[blockCount] = y;
+        blockWidth[blockCount] = width;
+        blockHeight[blockCount] = height;
+        blockColor[blockCount] = color;
+        blockCount++;
+    }
+
+    private void addBricks(BlockGrid grid) {
+        if (gridCount == grids.length) {
+            grids = Arrays.copyOf(grids, gridCount + 1);
+            grids[gridCount] = new GridCopy();
+        }
+        grids[gridCount++].capture(grid, blockCount);
+    }
+
+    /**
+     * Records when the tick the snapshot was taken after was due, so the render thread can tell
+     * how far the game has moved on since.
+     *
+     * @param time    the {@link System#nanoTime()} value at which the tick was due
+     * @param perTick the length of one tick in nanoseconds
+     */
+    public void setTickTime(long time, long perTick) {
+        this.tickTime = time;
+        this.tickNanos = perTick;
+    }
+
+    /**
+     * Returns how far the given time is between the tick of this snapshot and the next tick.
+     *
+     * @param now a {@link System#nanoTime()} value
+     * @return a fraction between 0 and 1, or 1 if the tick time is unknown
+     */
+    public double alphaAt(long now) {
+        if (tickNanos <= 0) {
+            return 1;
+        }
+        return Math.max(0, Math.min(1, (double) (now - tickTime) / tickNanos));
+    }
+
+    /**
+     * Marks the snapshot as the last one of the game.
+     *
+     * @param playerWon true if the player cleared all the blocks
+     */
+    public void setOver(boolean playerWon) {
+        this.over = true;
+        this.won = playerWon;
+    }
+
+    /**
+     * Draws the snapshot in the same order as the game draws its sprites:
+     * the score indicator, the paddle, the walls and blocks, and then the balls.
+     *
+     * @param d          the surface to draw on
+     * @param background the color the screen is cleared with
+     */
+    public void drawOn(DrawSurface d, Color background) {
+        drawOn(d, background, 1);
+    }
+
+    /**
+     * Draws the snapshot with the balls and the paddle part of the way between their positions
+     * before and after the tick, which keeps motion smooth when frames and ticks do not line up.
+     *
+     * @param d          the surface to draw on
+     * @param background the color the screen is cleared with
+     * @param alpha      how far to move between the previous and the current positions, from 0 to 1
+     */
+    public void drawOn(DrawSurface d, Color background, double alpha) {
+        d.setColor(background);
+        d.fillRectangle(0, 0, d.getWidth(), d.getHeight());
+        if (hasIndicator) {
+            drawBlock(d, indicatorX, indicatorY, indicatorWidth, indicatorHeight, indicatorColor);
+            d.drawText(400, 20, "Score: " + score, 18);
+        }
+        if (hasPaddle) {
+            d.setColor(Color.DARK_GRAY);
+            d.fillRectangle((int) lerp(previousPaddleX, paddleX, alpha), paddleY, paddleWidth, paddleHeight);
+        }
+        // Grids are drawn between the blocks, in the order the game has its sprites.
+        int block = 0;
+        for (int g = 0; g <= gridCount; g++) {
+            int end = g < gridCount ? grids[g].blocksBefore : blockCount;
+            for (; block < end; block++) {
+                drawBlock(d, blockX[block], blockY[block], blockWidth[block], blockHeight[block], blockColor[block]);
+            }
+            if (g < gridCount) {
+                grids[g].drawOn(d);
+            }
+        }
+        for (int i = 0; i < ballCount; i++) {
+            d.setColor(ballColor[i]);
+            d.fillCircle((int) Math.round(lerp(previousBallX[i], ballX[i], alpha)),
+                    (int) Math.round(lerp(previousBallY[i], ballY[i], alpha)), ballRadius[i]);
+        }
+    }
+
+    private static double lerp(double from, double to, double alpha) {
+        return alpha >= 1 ? to : from + alpha * (to - from);
+    }
+
+    private static void drawBlock(DrawSurface d, int x, int y, int width, int height, Color color) {
+        d.setColor(color == null ? Color.BLACK : color);
+        d.fillRectangle(x, y, width, height);
+        d.setColor(Color.BLACK);
+        d.drawRectangle(x, y, width, height);
+    }
+
+    /**
+     * Returns the number of the simulation tick the snapshot was taken after.
+     *
+     * @return the tick number, or -1 for a snapshot that was never filled
+     */
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * Returns the score at the time of the snapshot.
+     *
+     * @return the score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Checks whether this is the last snapshot of the game.
+     *
+     * @return true if the game is over
+     */
+    public boolean isOver() {
+        return over;
+    }
+
+    /**
+     * Checks whether the game ended with the player clearing all the blocks.
+     *
+     * @return true if the player won
+     */
+    public boolean isWon() {
+        return won;
+    }
+
+    /**
+     * Returns the number of balls in the snapshot.
+     *
+     * @return the ball count
+     */
+    public int getBallCount() {
+        return ballCount;
+    }
+
+    /**
+     * Returns the number of blocks in the snapshot, including the walls and the bricks of block grids.
+     *
+     * @return the block count
+     */
+    public int getBlockCount() {
+        int count = blockCount;
+        for (int g = 0; g < gridCount; g++) {
+            count += grids[g].aliveCount;
+        }
+        return count;
+    }
+
+    /**
+     * The cells of a {@link BlockGrid} as they were when a snapshot was taken. A copy keeps the version
+     * of the grid it copied and copies again only when the grid or its version changed.
+     */
+    private static final class GridCopy {
+        private BlockGrid source;
+        private long version;
+        private int blocksBefore;
+        private int left;
+        private int top;
+        private int columns;
+        private int rows;
+        private int cellWidth;
+        private int cellHeight;
+        private int aliveCount;
+        private long[] alive;
+        private byte[] colors;
+        private final Color[] palette = new Color[256];
+
+        private void capture(BlockGrid grid, int blocks) {
+            this.blocksBefore = blocks;
+            if (grid == source && grid.getVersion() == version) {
+                return;
+            }
+            source = grid;
+            version = grid.getVersion();
+            left = grid.getLeft();
+            top = grid.getTop();
+            columns = grid.getColumns();
+            rows = grid.getRows();
+            cellWidth = grid.getCellWidth();
+            cellHeight = grid.getCellHeight();
+            aliveCount = grid.getAliveCount();
+            alive = grid.copyAlive(alive);
+            colors = grid.copyColorIndices(colors);
+            grid.copyPalette(palette);
+        }
+
+        private void drawOn(DrawSurface d) {
+            // Only the rows and columns on the surface are visited, like BlockGrid draws itself; a brick's
+            // outline reaches one pixel past its cell.
+            int firstColumn = Math.max(0, Math.floorDiv(-1 - left, cellWidth));
+            int lastColumn = Math.min(columns - 1, Math.floorDiv(d.getWidth() - left, cellWidth));
+            int firstRow = Math.max(0, Math.floorDiv(-1 - top, cellHeight));
+            int lastRow = Math.min(rows - 1, Math.floorDiv(d.getHeight() - top, cellHeight));
+            for (int row = firstRow; row <= lastRow; row++) {
+                int last = row * columns + lastColumn;
+                for (int cell = nextAlive(row * columns + firstColumn, last); cell >= 0;
+                     cell = nextAlive(cell + 1, last)) {
+                    drawBlock(d, left + (cell % columns) * cellWidth, top + row * cellHeight, cellWidth, cellHeight,
+                            palette[colors[cell] & 0xFF]);
+                }
+            }
+        }
+
+        private int nextAlive(int from, int to) {
+            if (from > to) {
+                return -1;
+            }
+            int word = from >>> 6;
+            long bits = alive[word] & (-1L << from);
+            while (bits == 0) {
+                if (++word > to >>> 6) {
+                    return -1;
+                }
+                bits = alive[word];
+            }
+            int cell = (word << 6) + Long.numberOfTrailingZeros(bits);
+            return cell <= to ? cell : -1;
+        }
+    }
+}
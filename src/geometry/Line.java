@@ -2,24 +2,29 @@ package geometry;
 
 import tools.Tools;
 
-import java.util.List;
 /**
  * The {@code Line} class represents a line segment defined by two points: a start and an end point.
  * It provides methods for calculating the line's properties, such as length, middle point,
  * intersections with other lines, and distances from points.
+ * The direction and length are computed once, when the line is created, and the intersection methods
+ * are thin wrappers over the parametric kernel in {@link SegmentHit}.
  */
 public class Line {
     private final Point start;
     private final Point end;
+    private final double dx;
+    private final double dy;
+    private final double length;
+
     /**
      * Constructs a line segment using two {@code Point} objects.
+     * The line keeps its own copies of the points, so its direction never goes stale.
      *
      * @param start the start point of the line
      * @param end the end point of the line
      */
     public Line(Point start, Point end) {
-        this.start = start;
-        this.end = end;
+        this(start.getX(), start.getY(), end.getX(), end.getY());
     }
 
     /**
@@ -33,6 +38,9 @@ public class Line {
     public Line(double x1, double y1, double x2, double y2) {
         this.start = new Point(x1, y1);
         this.end = new Point(x2, y2);
+        this.dx = x2 - x1;
+        this.dy = y2 - y1;
+        this.length = Math.sqrt(this.dx * this.dx + this.dy * this.dy);
     }
 
     /**
@@ -41,7 +49,39 @@ public class Line {
      * @return the length of the line
      */
     public double length() {
-        return this.start.distance(end);
+        return this.length;
+    }
+
+    /**
+     * Returns the x component of the line's direction, from the start to the end.
+     *
+     * @return the end x-coordinate minus the start x-coordinate
+     */
+    public double getDx() {
+        return this.dx;
+    }
+
+    /**
+     * Returns the y component of the line's direction, from the start to the end.
+     *
+     * @return the end y-coordinate minus the start y-coordinate
+     */
+    public double getDy() {
+        return this.dy;
+    }
+
+    /**
+     * Returns the point at a parameter along the line, where 0 is the start and 1 is the end.
+     * The ends are returned exactly.
+     *
+     * @param t the parameter
+     * @return a new point on the line
+     */
+    public Point pointAt(double t) {
+        if (t == 1) {
+            return new Point(this.end.getX(), this.end.getY());
+        }
+        return new Point(this.start.getX() + t * this.dx, this.start.getY() + t * this.dy);
     }
 
     /**
@@ -77,51 +117,25 @@ public class Line {
     }
 
     /**
-     * Checks if this line has overlap with another line.
-     *
-     * @param other the other line to check for overlap
-     * @return true if the lines overlap, false otherwise
-     */
-    private boolean hasOverlap(Line other) {
-        return Math.max(start.getX(), end.getX()) >= Math.min(other.start.getX(), other.end.getX())
-                && Math.min(start.getX(), end.getX()) <= Math.max(other.start.getX(), other.end.getX())
-                && Math.max(start.getY(), end.getY()) >= Math.min(other.start.getY(), other.end.getY())
-                && Math.min(start.getY(), end.getY()) <= Math.max(other.start.getY(), other.end.getY());
-    }
-
-    /**
-     * Checks if this line intersects with two other lines.
+     * Checks if this line intersects with two other lines, each at a single point.
      *
      * @param other1 the first line to check for intersection
      * @param other2 the second line to check for intersection
      * @return true if this line intersects both lines, false otherwise
      */
     public boolean isIntersecting(Line other1, Line other2) {
-        return isIntersecting(other1) && isIntersecting(other2)
-                && intersectionWith(other1) != null && intersectionWith(other2) != null;
+        SegmentHit hit = new SegmentHit();
+        return hit.intersect(this, other1) == SegmentHit.POINT && hit.intersect(this, other2) == SegmentHit.POINT;
     }
 
     /**
-     * Checks if this line intersects with another line.
+     * Checks if this line intersects with another line, including when they overlap on the same line.
      *
      * @param other the other line to check for intersection
-     * @return true if the lines intersect, false otherwise
+     * @return true if the lines have a common point, false otherwise
      */
     public boolean isIntersecting(Line other) {
-        if (Double.isNaN(this.lineSlope()) && Double.isNaN(other.lineSlope())
-                && Tools.doubleEquals(this.start.getX(), other.start.getX())) {
-            double thisMinY = Math.min(this.start.getY(), this.end.getY());
-            double thisMaxY = Math.max(this.start.getY(), this.end.getY());
-            double otherMinY = Math.min(other.start.getY(), other.end.getY());
-            double otherMaxY = Math.max(other.start.getY(), other.end.getY());
-            return (thisMaxY >= otherMinY) && (thisMinY <= otherMaxY);
-        }
-        if (Tools.doubleEquals(this.lineSlope(), other.lineSlope())
-                && Tools.doubleEquals(this.lineIntercept(), other.lineIntercept())) {
-            return hasOverlap(other);
-        }
-        Point intersection = this.intersectionWith(other);
-        return intersection != null;
+        return new SegmentHit().intersect(this, other) != SegmentHit.NONE;
     }
 
     /**
@@ -153,40 +167,15 @@ public class Line {
      * Calculates the intersection point of this line with another line.
      *
      * @param other the other line to find the intersection with
-     * @return the intersection point, or {@code null} if the lines do not intersect
+     * @return the intersection point, or {@code null} if the lines do not intersect or overlap in more
+     *         than one point
      */
     public Point intersectionWith(Line other) {
-        double m1 = this.lineSlope(), m2 = other.lineSlope();
-
-        if ((Tools.doubleEquals(m1, m2) && Tools.doubleEquals(this.lineIntercept(), other.lineIntercept()))
-                || (Double.isNaN(m1) && Double.isNaN(m2)
-                && Tools.doubleEquals(this.start.getX(), other.start.getX()))) {
-            return null;
-        }
-
-        double b1 = this.lineIntercept(), b2 = other.lineIntercept();
-        double intersectX, intersectY;
-
-        if (Double.isNaN(m1)) {
-            intersectX = this.start.getX();
-            intersectY = m2 * intersectX + b2;
-        } else if (Double.isNaN(m2)) {
-            intersectX = other.start.getX();
-            intersectY = m1 * intersectX + b1;
-        } else {
-            if (Tools.doubleEquals(m1, m2)) {
-                return null;
-            }
-            intersectX = (b2 - b1) / (m1 - m2);
-            intersectY = m1 * intersectX + b1;
-        }
-
-        Point intersection = new Point(intersectX, intersectY);
-        if (isNotInBounds(intersection, other)
-                || isNotInBounds(intersection, this)) {
+        SegmentHit hit = new SegmentHit();
+        if (hit.intersect(this, other) != SegmentHit.POINT) {
             return null;
         }
-        return intersection;
+        return pointAt(hit.getT());
     }
 
     /**
@@ -220,13 +209,14 @@ public class Line {
     }
 
     /**
-     * Checks if this line is collinear with another line.
+     * Checks if this line lies on the same line as another line and shares at least one point with it.
      *
      * @param other the other line to check for collinearity
-     * @return true if the lines are collinear, false otherwise
+     * @return true if the lines are collinear and touch or overlap, false otherwise
      */
     public boolean linesCollinear(Line other) {
-        return Tools.doubleEquals(this.lineSlope(), other.lineSlope()) && hasOverlap(other);
+        SegmentHit hit = new SegmentHit();
+        return hit.intersect(this, other) != SegmentHit.NONE && hit.isCollinear();
     }
 
     /**
@@ -283,16 +273,12 @@ public class Line {
      * @return the closest intersection point to the start of the line, or {@code null} if there is no intersection
      */
     public Point closestIntersectionToStartOfLine(Rectangle rect) {
-        double[] length = new double[2];
-        List<Point> intersectionPoints = rect.intersectionPoints(this);
-        if (intersectionPoints.isEmpty()) {
+        double dx = this.end.getX() - this.start.getX();
+        double dy = this.end.getY() - this.start.getY();
+        SlabHit hit = new SlabHit();
+        if (!hit.intersect(this.start.getX(), this.start.getY(), dx, dy, rect)) {
             return null;
         }
-        if (intersectionPoints.size() == 1) {
-            return intersectionPoints.get(0);
-        }
-        length[0] = this.start().distance(intersectionPoints.get(0));
-        length[1] = this.start().distance(intersectionPoints.get(1));
-        return length[0] < length[1] ? intersectionPoints.get(0) : intersectionPoints.get(1);
+        return new Point(this.start.getX() + hit.getT() * dx, this.start.getY() + hit.getT() * dy);
     }
 }
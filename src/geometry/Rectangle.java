@@ -217,6 +217,27 @@ public class Rectangle {
         this.upperLeft = upperLeft;
         this.width = width;
         this.height = height;
+        updateBounds();
+    }
+
+    /**
+     * Moves the rectangle so its upper-left corner is at the given position, changing the corner point
+     * in place instead of creating a new one.
+     *
+     * @param x the new x-coordinate of the upper-left corner
+     * @param y the new y-coordinate of the upper-left corner
+     */
+    public void moveTo(double x, double y) {
+        this.upperLeft.setX(x);
+        this.upperLeft.setY(y);
+        updateBounds();
+    }
+
+    private void updateBounds() {
+        this.minX = (int) upperLeft.getX();
+        this.maxX = (int) (upperLeft.getX() + width);
+        this.minY = (int) upperLeft.getY();
+        this.maxY = (int) (upperLeft.getY() + height);
     }
 
     /**
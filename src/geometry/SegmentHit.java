@@ -0,0 +1,173 @@
+package geometry;
+
+/**
+ * The {@code SegmentHit} class intersects two line segments with a parametric kernel built on cross products.
+ * The first segment is {@code a + t * r} and the second {@code b + u * s}, both for parameters between 0 and 1.
+ * There is no slope or intercept, so vertical segments need no special case, and the endpoint tests compare
+ * numerators with the shared denominator instead of dividing first, so segments that meet exactly at an
+ * endpoint always hit. Parallel segments on the same line are found by projecting one onto the other.
+ * An instance holds the result of the last test, so a caller can keep one instance and reuse it.
+ */
+public class SegmentHit {
+    /** The segments have no common point. */
+    public static final int NONE = 0;
+    /** The segments have exactly one common point. */
+    public static final int POINT = 1;
+    /** The segments lie on the same line and share more than one point. */
+    public static final int OVERLAP = 2;
+
+    private int kind = NONE;
+    private double t = Double.NaN;
+    private double tEnd = Double.NaN;
+    private double u = Double.NaN;
+    private boolean collinear;
+
+    /**
+     * Intersects two segments and stores the result.
+     *
+     * @param ax  the x-coordinate of the first segment's start
+     * @param ay  the y-coordinate of the first segment's start
+     * @param adx the x component of the first segment's direction
+     * @param ady the y component of the first segment's direction
+     * @param bx  the x-coordinate of the second segment's start
+     * @param by  the y-coordinate of the second segment's start
+     * @param bdx the x component of the second segment's direction
+     * @param bdy the y component of the second segment's direction
+     * @return {@link #NONE}, {@link #POINT} or {@link #OVERLAP}
+     */
+    public int intersect(double ax, double ay, double adx, double ady,
+                         double bx, double by, double bdx, double bdy) {
+        double qx = bx - ax;
+        double qy = by - ay;
+        double denominator = adx * bdy - ady * bdx;
+        double tNumerator = qx * bdy - qy * bdx;
+        double uNumerator = qx * ady - qy * adx;
+        if (denominator != 0) {
+            if (denominator < 0) {
+                denominator = -denominator;
+                tNumerator = -tNumerator;
+                uNumerator = -uNumerator;
+            }
+            if (tNumerator < 0 || tNumerator > denominator || uNumerator < 0 || uNumerator > denominator) {
+                return miss();
+            }
+            return point(tNumerator / denominator, uNumerator / denominator, false);
+        }
+        if (tNumerator != 0 || uNumerator != 0) {
+            // Parallel, but on different lines.
+            return miss();
+        }
+        return collinear(qx, qy, adx, ady, bdx, bdy);
+    }
+
+    /**
+     * Intersects two segments that lie on the same line, or where at least one is a single point.
+     */
+    private int collinear(double qx, double qy, double adx, double ady, double bdx, double bdy) {
+        double rr = adx * adx + ady * ady;
+        double ss = bdx * bdx + bdy * bdy;
+        if (rr == 0 && ss == 0) {
+            return qx == 0 && qy == 0 ? point(0, 0, true) : miss();
+        }
+        if (rr == 0) {
+            double onSecond = -(qx * bdx + qy * bdy) / ss;
+            return onSecond >= 0 && onSecond <= 1 ? point(0, onSecond, true) : miss();
+        }
+        // Where the second segment's ends fall on the first one.
+        double t0 = (qx * adx + qy * ady) / rr;
+        double t1 = t0 + (bdx * adx + bdy * ady) / rr;
+        double low = Math.max(0, Math.min(t0, t1));
+        double high = Math.min(1, Math.max(t0, t1));
+        if (low > high) {
+            return miss();
+        }
+        double onSecond = t1 == t0 ? 0 : (low - t0) / (t1 - t0);
+        if (low == high) {
+            return point(low, onSecond, true);
+        }
+        this.kind = OVERLAP;
+        this.t = low;
+        this.tEnd = high;
+        this.u = onSecond;
+        this.collinear = true;
+        return OVERLAP;
+    }
+
+    /**
+     * Intersects two lines.
+     *
+     * @param first  the first segment, whose parameter is {@link #getT()}
+     * @param second the second segment, whose parameter is {@link #getU()}
+     * @return {@link #NONE}, {@link #POINT} or {@link #OVERLAP}
+     * @see #intersect(double, double, double, double, double, double, double, double)
+     */
+    public int intersect(Line first, Line second) {
+        return intersect(first.start().getX(), first.start().getY(), first.getDx(), first.getDy(),
+                second.start().getX(), second.start().getY(), second.getDx(), second.getDy());
+    }
+
+    private int point(double tValue, double uValue, boolean onSameLine) {
+        this.kind = POINT;
+        this.t = tValue;
+        this.tEnd = tValue;
+        this.u = uValue;
+        this.collinear = onSameLine;
+        return POINT;
+    }
+
+    private int miss() {
+        this.kind = NONE;
+        this.t = Double.NaN;
+        this.tEnd = Double.NaN;
+        this.u = Double.NaN;
+        this.collinear = false;
+        return NONE;
+    }
+
+    /**
+     * Returns the result of the last test.
+     *
+     * @return {@link #NONE}, {@link #POINT} or {@link #OVERLAP}
+     */
+    public int getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Returns the parameter on the first segment of the common point, or of the start of the common part
+     * when the segments overlap.
+     *
+     * @return the parameter between 0 and 1, or {@code NaN} if the last test missed
+     */
+    public double getT() {
+        return this.t;
+    }
+
+    /**
+     * Returns the parameter on the first segment of the end of the common part. It equals {@link #getT()}
+     * unless the segments overlap.
+     *
+     * @return the parameter between 0 and 1, or {@code NaN} if the last test missed
+     */
+    public double getTEnd() {
+        return this.tEnd;
+    }
+
+    /**
+     * Returns the parameter on the second segment of the point at {@link #getT()}.
+     *
+     * @return the parameter between 0 and 1, or {@code NaN} if the last test missed
+     */
+    public double getU() {
+        return this.u;
+    }
+
+    /**
+     * Checks whether the segments of the last hit lie on the same line.
+     *
+     * @return true if the last test hit and the segments are collinear
+     */
+    public boolean isCollinear() {
+        return this.collinear;
+    }
+}
@@ -0,0 +1,126 @@
+package geometry;
+
+/**
+ * The {@code SlabBatch} class runs the slab test of one segment against many axis-aligned rectangles at once.
+ * The rectangles are given as packed arrays of coordinates, and {@link #filter} computes the entry and exit
+ * parameters of all of them in one straight loop without branches or divisions. When the Vector API kernel
+ * of the {@code src-vector} tree is on the class path and the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}, that loop is the {@link SlabKernel} it provides, which computes
+ * several rectangles per instruction; otherwise it is a plain branch-free loop with the same results.
+ * The filter is conservative: it only drops rectangles the segment cannot touch, so the few that are left
+ * are then tested exactly, for example with {@link SlabHit}.
+ * An instance is scratch space that is reused query after query; it is not thread-safe.
+ */
+public class SlabBatch {
+    // Stands in for 1 / 0, so a segment parallel to an axis never produces NaN.
+    private static final double HUGE = 1e300;
+    private static final double[] NO_DOUBLES = new double[0];
+    private static final int[] NO_INTS = new int[0];
+    private static final SlabKernel VECTOR_KERNEL = loadVectorKernel();
+
+    private double[] near = NO_DOUBLES;
+    private double[] far = NO_DOUBLES;
+    private int[] kept = NO_INTS;
+    private int size;
+
+    /**
+     * Finds the rectangles that a segment may touch once each rectangle is grown by a margin on every side.
+     * A rectangle is kept when the segment enters or starts inside the grown rectangle for a parameter
+     * between 0 and 1. The positions of the kept rectangles are then available in increasing order
+     * through {@link #get(int)}.
+     *
+     * @param minX   the minimum X coordinates of the rectangles
+     * @param minY   the minimum Y coordinates of the rectangles
+     * @param maxX   the maximum X coordinates of the rectangles
+     * @param maxY   the maximum Y coordinates of the rectangles
+     * @param n      how many rectangles to test, from the start of the arrays
+     * @param x0     the x-coordinate of the segment start
+     * @param y0     the y-coordinate of the segment start
+     * @param dx     the x component of the segment direction
+     * @param dy     the y component of the segment direction
+     * @param margin how much to grow every rectangle, at least 0; for a moving circle, its radius plus some slack
+     * @return the number of rectangles kept
+     */
+    public int filter(double[] minX, double[] minY, double[] maxX, double[] maxY, int n,
+                      double x0, double y0, double dx, double dy, double margin) {
+        if (near.length < n) {
+            int capacity = Math.max(n, near.length * 2);
+            near = new double[capacity];
+            far = new double[capacity];
+            kept = new int[capacity];
+        }
+        double invDx = inverse(dx);
+        double invDy = inverse(dy);
+        // Knowing the direction up front tells which side of every rectangle is entered first, so the loop
+        // needs one max and one min per rectangle and no branches.
+        double[] enterX = invDx >= 0 ? minX : maxX;
+        double[] exitX = invDx >= 0 ? maxX : minX;
+        double[] enterY = invDy >= 0 ? minY : maxY;
+        double[] exitY = invDy >= 0 ? maxY : minY;
+        double enterOffsetX = (invDx >= 0 ? -margin : margin) - x0;
+        double exitOffsetX = (invDx >= 0 ? margin : -margin) - x0;
+        double enterOffsetY = (invDy >= 0 ? -margin : margin) - y0;
+        double exitOffsetY = (invDy >= 0 ? margin : -margin) - y0;
+        double[] nearT = near;
+        double[] farT = far;
+        if (VECTOR_KERNEL != null) {
+            VECTOR_KERNEL.slabs(enterX, exitX, enterY, exitY, n, enterOffsetX, exitOffsetX, enterOffsetY,
+                    exitOffsetY, invDx, invDy, nearT, farT);
+        } else {
+            for (int i = 0; i < n; i++) {
+                nearT[i] = Math.max((enterX[i] + enterOffsetX) * invDx, (enterY[i] + enterOffsetY) * invDy);
+                farT[i] = Math.min((exitX[i] + exitOffsetX) * invDx, (exitY[i] + exitOffsetY) * invDy);
+            }
+        }
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (nearT[i] <= farT[i] && farT[i] >= 0 && nearT[i] <= 1) {
+                kept[count++] = i;
+            }
+        }
+        size = count;
+        return count;
+    }
+
+    private static SlabKernel loadVectorKernel() {
+        try {
+            return (SlabKernel) Class.forName("geometry.SlabVectorKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // The kernel was not compiled, or the JVM runs without the jdk.incubator.vector module.
+            return null;
+        }
+    }
+
+    /**
+     * Returns the name of the loop {@link #filter} computes the slabs with.
+     *
+     * @return the name of the Vector API kernel with its lane count, or "scalar" for the plain loop
+     */
+    public static String getKernelName() {
+        return VECTOR_KERNEL == null ? "scalar" : VECTOR_KERNEL.name();
+    }
+
+    private static double inverse(double d) {
+        double inv = 1 / d;
+        return Double.isInfinite(inv) ? Math.copySign(HUGE, inv) : inv;
+    }
+
+    /**
+     * Returns the number of rectangles kept by the last filter.
+     *
+     * @return the kept rectangle count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the position of a kept rectangle in the arrays given to the last filter.
+     *
+     * @param k which kept rectangle, between 0 and {@link #size()}
+     * @return the position of the rectangle
+     */
+    public int get(int k) {
+        return kept[k];
+    }
+}
@@ -0,0 +1,320 @@
+package geometry;
+
+/**
+ * The {@code SlabHit} class finds where a line segment first crosses the border of an
+ * axis-aligned rectangle, using the slab method on primitive coordinates only.
+ * An instance holds the result of the last test, so a caller can keep one instance
+ * and reuse it for every test without creating any objects.
+ * The segment is described as {@code start + t * direction} for {@code t} between 0 and 1.
+ */
+public class SlabHit {
+    /** No side was hit. */
+    public static final int NONE = -1;
+    /** The side at the minimum X coordinate. */
+    public static final int LEFT = 0;
+    /** The side at the maximum X coordinate. */
+    public static final int RIGHT = 1;
+    /** The side at the minimum Y coordinate (the upper side on the screen). */
+    public static final int TOP = 2;
+    /** The side at the maximum Y coordinate (the lower side on the screen). */
+    public static final int BOTTOM = 3;
+
+    private double t;
+    private int side = NONE;
+    private boolean fromInside;
+    private double contactX;
+    private double contactY;
+
+    /**
+     * Tests a segment against a rectangle and stores the first point where the segment
+     * crosses the rectangle's border. If the segment starts outside, that is where it enters.
+     * If it starts inside, that is where it leaves, matching
+     * {@link Line#closestIntersectionToStartOfLine(Rectangle)}.
+     *
+     * @param x0   the x-coordinate of the segment start
+     * @param y0   the y-coordinate of the segment start
+     * @param dx   the x component of the segment direction
+     * @param dy   the y component of the segment direction
+     * @param minX the minimum X coordinate of the rectangle
+     * @param minY the minimum Y coordinate of the rectangle
+     * @param maxX the maximum X coordinate of the rectangle
+     * @param maxY the maximum Y coordinate of the rectangle
+     * @return true if the segment crosses the border, false otherwise
+     */
+    public boolean intersect(double x0, double y0, double dx, double dy,
+                             double minX, double minY, double maxX, double maxY) {
+        double tNear = Double.NEGATIVE_INFINITY;
+        double tFar = Double.POSITIVE_INFINITY;
+        int nearSide = NONE;
+        int farSide = NONE;
+
+        if (dx == 0) {
+            if (x0 < minX || x0 > maxX) {
+                return miss();
+            }
+        } else {
+            double tMin = (minX - x0) / dx;
+            double tMax = (maxX - x0) / dx;
+            if (dx > 0) {
+                tNear = tMin;
+                nearSide = LEFT;
+                tFar = tMax;
+                farSide = RIGHT;
+            } else {
+                tNear = tMax;
+                nearSide = RIGHT;
+                tFar = tMin;
+                farSide = LEFT;
+            }
+        }
+
+        if (dy == 0) {
+            if (y0 < minY || y0 > maxY) {
+                return miss();
+            }
+        } else {
+            double tMin = (minY - y0) / dy;
+            double tMax = (maxY - y0) / dy;
+            double enter = dy > 0 ? tMin : tMax;
+            double exit = dy > 0 ? tMax : tMin;
+            if (enter > tNear) {
+                tNear = enter;
+                nearSide = dy > 0 ? TOP : BOTTOM;
+            }
+            if (exit < tFar) {
+                tFar = exit;
+                farSide = dy > 0 ? BOTTOM : TOP;
+            }
+        }
+
+        if (tNear > tFar || tFar < 0 || tNear > 1) {
+            return miss();
+        }
+        if (tNear >= 0) {
+            this.t = tNear;
+            this.side = nearSide;
+            this.fromInside = false;
+            return true;
+        }
+        if (tFar <= 1) {
+            this.t = tFar;
+            this.side = farSide;
+            this.fromInside = true;
+            return true;
+        }
+        // The whole segment lies inside the rectangle (or is empty) and never crosses its border.
+        return miss();
+    }
+
+    /**
+     * Tests a segment against a rectangle.
+     *
+     * @param x0   the x-coordinate of the segment start
+     * @param y0   the y-coordinate of the segment start
+     * @param dx   the x component of the segment direction
+     * @param dy   the y component of the segment direction
+     * @param rect the rectangle to test against
+     * @return true if the segment crosses the border, false otherwise
+     * @see #intersect(double, double, double, double, double, double, double, double)
+     */
+    public boolean intersect(double x0, double y0, double dx, double dy, Rectangle rect) {
+        return intersect(x0, y0, dx, dy, rect.getMinX(), rect.getMinY(), rect.getMaxX(), rect.getMaxY());
+    }
+
+    /**
+     * Finds the exact time of impact of a moving circle against a rectangle.
+     * The circle's center is swept against the rectangle grown by the radius on every side with
+     * rounded corners (the Minkowski sum of the rectangle and the circle). On a hit, the contact
+     * point on the rectangle itself is stored as well, see {@link #getContactX()} and {@link #getContactY()}.
+     * A circle that already overlaps the rectangle hits at {@code t = 0} at the point of the rectangle
+     * nearest to its center, but only while it moves further in, so a circle that is left touching
+     * the rectangle after a bounce can move away.
+     *
+     * @param x0     the x-coordinate of the circle's center at the start of the move
+     * @param y0     the y-coordinate of the circle's center at the start of the move
+     * @param dx     the x component of the move
+     * @param dy     the y component of the move
+     * @param radius the radius of the circle
+     * @param minX   the minimum X coordinate of the rectangle
+     * @param minY   the minimum Y coordinate of the rectangle
+     * @param maxX   the maximum X coordinate of the rectangle
+     * @param maxY   the maximum Y coordinate of the rectangle
+     * @return true if the circle touches the rectangle during the move, false otherwise
+     */
+    public boolean sweepCircle(double x0, double y0, double dx, double dy, double radius,
+                               double minX, double minY, double maxX, double maxY) {
+        if (x0 > minX - radius && x0 < maxX + radius && y0 > minY - radius && y0 < maxY + radius) {
+            if (insideRounded(x0, y0, radius, minX, minY, maxX, maxY)) {
+                return overlapHit(x0, y0, dx, dy, minX, minY, maxX, maxY);
+            }
+            // In the grown rectangle but outside the rounded shape, which only happens next to a corner.
+            return cornerHit(x0, y0, dx, dy, radius, x0 < minX ? minX : maxX, y0 < minY ? minY : maxY);
+        }
+        if (!intersect(x0, y0, dx, dy, minX - radius, minY - radius, maxX + radius, maxY + radius)) {
+            return false;
+        }
+        if (this.fromInside) {
+            // Resting on the border of the grown rectangle and moving away from it.
+            return miss();
+        }
+        double px = x0 + this.t * dx;
+        double py = y0 + this.t * dy;
+        if ((px < minX || px > maxX) && (py < minY || py > maxY)) {
+            // Entered the square around a corner, where the grown rectangle is a quarter circle.
+            return cornerHit(x0, y0, dx, dy, radius, px < minX ? minX : maxX, py < minY ? minY : maxY);
+        }
+        // Entered through a flat side of the grown rectangle.
+        this.contactX = Math.max(minX, Math.min(maxX, px));
+        this.contactY = Math.max(minY, Math.min(maxY, py));
+        return true;
+    }
+
+    private boolean cornerHit(double x0, double y0, double dx, double dy, double radius,
+                              double cornerX, double cornerY) {
+        double ox = x0 - cornerX;
+        double oy = y0 - cornerY;
+        double a = dx * dx + dy * dy;
+        double b = ox * dx + oy * dy;
+        double c = ox * ox + oy * oy - radius * radius;
+        double discriminant = b * b - a * c;
+        if (a == 0 || discriminant < 0) {
+            return miss();
+        }
+        double tCorner = (-b - Math.sqrt(discriminant)) / a;
+        if (tCorner < 0 || tCorner > 1) {
+            return miss();
+        }
+        this.t = tCorner;
+        this.fromInside = false;
+        this.contactX = cornerX;
+        this.contactY = cornerY;
+        double normalX = x0 + tCorner * dx - cornerX;
+        double normalY = y0 + tCorner * dy - cornerY;
+        if (Math.abs(normalX) >= Math.abs(normalY)) {
+            this.side = normalX < 0 ? LEFT : RIGHT;
+        } else {
+            this.side = normalY < 0 ? TOP : BOTTOM;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the exact time of impact of a moving circle against a rectangle.
+     *
+     * @param x0     the x-coordinate of the circle's center at the start of the move
+     * @param y0     the y-coordinate of the circle's center at the start of the move
+     * @param dx     the x component of the move
+     * @param dy     the y component of the move
+     * @param radius the radius of the circle
+     * @param rect   the rectangle to test against
+     * @return true if the circle touches the rectangle during the move, false otherwise
+     * @see #sweepCircle(double, double, double, double, double, double, double, double, double)
+     */
+    public boolean sweepCircle(double x0, double y0, double dx, double dy, double radius, Rectangle rect) {
+        return sweepCircle(x0, y0, dx, dy, radius, rect.getMinX(), rect.getMinY(), rect.getMaxX(), rect.getMaxY());
+    }
+
+    private static boolean insideRounded(double x, double y, double radius,
+                                         double minX, double minY, double maxX, double maxY) {
+        if (x <= minX - radius || x >= maxX + radius || y <= minY - radius || y >= maxY + radius) {
+            return false;
+        }
+        double ox = x - Math.max(minX, Math.min(maxX, x));
+        double oy = y - Math.max(minY, Math.min(maxY, y));
+        return ox * ox + oy * oy < radius * radius;
+    }
+
+    private boolean overlapHit(double x0, double y0, double dx, double dy,
+                               double minX, double minY, double maxX, double maxY) {
+        double qx = Math.max(minX, Math.min(maxX, x0));
+        double qy = Math.max(minY, Math.min(maxY, y0));
+        double normalX = x0 - qx;
+        double normalY = y0 - qy;
+        if (normalX == 0 && normalY == 0) {
+            // The center itself is inside the rectangle, push it out through the nearest side.
+            double left = x0 - minX;
+            double right = maxX - x0;
+            double top = y0 - minY;
+            double bottom = maxY - y0;
+            double least = Math.min(Math.min(left, right), Math.min(top, bottom));
+            if (least == left) {
+                normalX = -1;
+                qx = minX;
+            } else if (least == right) {
+                normalX = 1;
+                qx = maxX;
+            } else if (least == top) {
+                normalY = -1;
+                qy = minY;
+            } else {
+                normalY = 1;
+                qy = maxY;
+            }
+        }
+        if (dx * normalX + dy * normalY >= 0) {
+            return miss();
+        }
+        if (Math.abs(normalX) >= Math.abs(normalY)) {
+            this.side = normalX < 0 ? LEFT : RIGHT;
+        } else {
+            this.side = normalY < 0 ? TOP : BOTTOM;
+        }
+        this.t = 0;
+        this.fromInside = true;
+        this.contactX = qx;
+        this.contactY = qy;
+        return true;
+    }
+
+    private boolean miss() {
+        this.t = Double.NaN;
+        this.side = NONE;
+        this.fromInside = false;
+        return false;
+    }
+
+    /**
+     * Returns the segment parameter of the last hit, between 0 and 1.
+     *
+     * @return the hit parameter, or {@code NaN} if the last test missed
+     */
+    public double getT() {
+        return this.t;
+    }
+
+    /**
+     * Returns the side crossed in the last hit.
+     *
+     * @return one of {@link #LEFT}, {@link #RIGHT}, {@link #TOP}, {@link #BOTTOM}, or {@link #NONE}
+     */
+    public int getSide() {
+        return this.side;
+    }
+
+    /**
+     * Returns the x-coordinate of the contact point on the rectangle found by the last circle sweep.
+     *
+     * @return the contact point x-coordinate
+     */
+    public double getContactX() {
+        return this.contactX;
+    }
+
+    /**
+     * Returns the y-coordinate of the contact point on the rectangle found by the last circle sweep.
+     *
+     * @return the contact point y-coordinate
+     */
+    public double getContactY() {
+        return this.contactY;
+    }
+
+    /**
+     * Checks whether the last hit was the segment leaving the rectangle rather than entering it.
+     *
+     * @return true if the segment started inside the rectangle
+     */
+    public boolean isFromInside() {
+        return this.fromInside;
+    }
+}
@@ -0,0 +1,42 @@
+package geometry;
+
+/**
+ * The {@code SlabKernel} interface computes the entry and exit parameters of a segment for a run of
+ * rectangles, the arithmetic at the heart of {@link SlabBatch#filter}. The sides the segment enters and
+ * exits every rectangle through are already picked, so for every rectangle {@code i} a kernel stores
+ * <pre>
+ *   nearT[i] = max((enterX[i] + enterOffsetX) * invDx, (enterY[i] + enterOffsetY) * invDy)
+ *   farT[i]  = min((exitX[i] + exitOffsetX) * invDx, (exitY[i] + exitOffsetY) * invDy)
+ * </pre>
+ * with {@link Math#max} and {@link Math#min}, so every kernel gives the same bits.
+ */
+interface SlabKernel {
+
+    /**
+     * Computes the entry and exit parameters of the first {@code n} rectangles.
+     *
+     * @param enterX       the X coordinates of the sides the segment enters through
+     * @param exitX        the X coordinates of the sides the segment exits through
+     * @param enterY       the Y coordinates of the sides the segment enters through
+     * @param exitY        the Y coordinates of the sides the segment exits through
+     * @param n            how many rectangles to compute
+     * @param enterOffsetX added to every entry X coordinate
+     * @param exitOffsetX  added to every exit X coordinate
+     * @param enterOffsetY added to every entry Y coordinate
+     * @param exitOffsetY  added to every exit Y coordinate
+     * @param invDx        the inverse of the x component of the segment direction
+     * @param invDy        the inverse of the y component of the segment direction
+     * @param nearT        receives the entry parameters
+     * @param farT         receives the exit parameters
+     */
+    void slabs(double[] enterX, double[] exitX, double[] enterY, double[] exitY, int n,
+               double enterOffsetX, double exitOffsetX, double enterOffsetY, double exitOffsetY,
+               double invDx, double invDy, double[] nearT, double[] farT);
+
+    /**
+     * Returns a short name of the kernel for benchmark output.
+     *
+     * @return the name
+     */
+    String name();
+}
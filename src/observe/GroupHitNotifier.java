@@ -0,0 +1,32 @@
+package observe;
+
+/**
+ * The {@code GroupHitNotifier} interface should be implemented by objects that notify listeners about
+ * the hits of whole groups of blocks. Every block belongs to one group, identified by an int, so a
+ * listener registered once on a group hears about every block in it, however many blocks there are.
+ */
+public interface GroupHitNotifier {
+
+    /**
+     * Creates a new, empty group.
+     *
+     * @return the id of the group
+     */
+    int createGroup();
+
+    /**
+     * Adds a {@link HitListener} that will be notified of the hits of every block in a group.
+     *
+     * @param group the group id
+     * @param hl    the hit listener to add
+     */
+    void addHitListener(int group, HitListener hl);
+
+    /**
+     * Removes a {@link HitListener} from a group.
+     *
+     * @param group the group id
+     * @param hl    the hit listener to remove
+     */
+    void removeHitListener(int group, HitListener hl);
+}
@@ -0,0 +1,174 @@
+package observe;
+
+import sprites.Ball;
+import sprites.Block;
+
+import java.util.Arrays;
+
+/**
+ * The {@code HitEventQueue} class collects the hit events of a game tick and delivers them all at once
+ * when the tick is over. While the balls move, a hit only writes the block's group, the block and the ball
+ * into preallocated parallel arrays used as a ring; {@link #dispatch()} then calls the listeners, so
+ * listeners that remove blocks or balls change the game only after the collision pass has finished.
+ * Listeners are registered on groups of blocks, and each block's own {@link HitNotifier} listeners are
+ * called after them. A block that was hit stays solid until the end of the tick, so several balls may hit it;
+ * once a listener has taken the block out of the game, its later hits of the tick are dropped, so a block
+ * is only paid out once. The queue belongs to the simulation thread and is not thread-safe.
+ */
+public class HitEventQueue implements GroupHitNotifier {
+    /** The group of the blocks that break when a ball of a different color hits them. */
+    public static final int BREAKABLE = 0;
+    /** The group of the bottom blocks, which take out the balls that hit them. */
+    public static final int DEATH_ZONE = 1;
+    private static final int BUILT_IN_GROUPS = 2;
+    private static final int INITIAL_CAPACITY = 64;
+    /** The listeners of a group with none, shared so that an empty list costs nothing. */
+    public static final HitListener[] NO_LISTENERS = new HitListener[0];
+
+    private int[] groups = new int[INITIAL_CAPACITY];
+    private Block[] blocks = new Block[INITIAL_CAPACITY];
+    private Ball[] hitters = new Ball[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+
+    // The listeners of each group, indexed by group id. Each array is replaced on every change,
+    // so a dispatch can walk it without copying it.
+    private HitListener[][] listeners = new HitListener[BUILT_IN_GROUPS][];
+    private int groupCount = BUILT_IN_GROUPS;
+
+    /**
+     * Constructs an empty queue with the built-in groups and no listeners.
+     */
+    public HitEventQueue() {
+        Arrays.fill(listeners, NO_LISTENERS);
+    }
+
+    @Override
+    public int createGroup() {
+        if (groupCount == listeners.length) {
+            listeners = Arrays.copyOf(listeners, groupCount * 2);
+        }
+        listeners[groupCount] = NO_LISTENERS;
+        return groupCount++;
+    }
+
+    @Override
+    public void addHitListener(int group, HitListener hl) {
+        listeners[group] = with(listeners[group], hl);
+    }
+
+    @Override
+    public void removeHitListener(int group, HitListener hl) {
+        listeners[group] = without(listeners[group], hl);
+    }
+
+    /**
+     * Returns a copy of a listener array with a listener added at the end.
+     *
+     * @param current the listeners
+     * @param hl      the listener to add
+     * @return the new array
+     */
+    public static HitListener[] with(HitListener[] current, HitListener hl) {
+        HitListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = hl;
+        return updated;
+    }
+
+    /**
+     * Returns a copy of a listener array without the first occurrence of a listener.
+     *
+     * @param current the listeners
+     * @param hl      the listener to remove
+     * @return the new array, or {@code current} itself if the listener is not in it
+     */
+    public static HitListener[] without(HitListener[] current, HitListener hl) {
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == hl) {
+                if (current.length == 1) {
+                    return NO_LISTENERS;
+                }
+                HitListener[] updated = new HitListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                return updated;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Records a hit to be delivered by the next {@link #dispatch()}, to the listeners of the block's group.
+     * No objects are created, unless the queue is full and has to grow.
+     *
+     * @param beingHit the block that was hit
+     * @param hitter   the ball that hit the block
+     */
+    public void post(Block beingHit, Ball hitter) {
+        if (size == groups.length) {
+            grow();
+        }
+        int slot = (head + size) & (groups.length - 1);
+        groups[slot] = beingHit.getHitGroup();
+        blocks[slot] = beingHit;
+        hitters[slot] = hitter;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = groups.length * 2;
+        int[] newGroups = new int[capacity];
+        Block[] newBlocks = new Block[capacity];
+        Ball[] newHitters = new Ball[capacity];
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) & (groups.length - 1);
+            newGroups[i] = groups[slot];
+            newBlocks[i] = blocks[slot];
+            newHitters[i] = hitters[slot];
+        }
+        groups = newGroups;
+        blocks = newBlocks;
+        hitters = newHitters;
+        head = 0;
+    }
+
+    /**
+     * Returns the number of events waiting to be delivered.
+     *
+     * @return the event count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Delivers the waiting events in the order they happened. For each event the listeners of the block's
+     * group are called first and then the block's own listeners. An event whose block is no longer in the
+     * game, because an earlier event of the tick removed it, is dropped. Events posted by a listener are
+     * delivered in the same call.
+     *
+     * @return the number of events delivered
+     */
+    public int dispatch() {
+        int delivered = 0;
+        while (size > 0) {
+            int group = groups[head];
+            Block beingHit = blocks[head];
+            Ball hitter = hitters[head];
+            blocks[head] = null;
+            hitters[head] = null;
+            head = (head + 1) & (groups.length - 1);
+            size--;
+            if (!beingHit.isInGame()) {
+                beingHit.dropHit(hitter);
+                continue;
+            }
+            for (HitListener listener : listeners[group]) {
+                listener.hitEvent(beingHit, hitter);
+            }
+            beingHit.fireHit(hitter);
+            delivered++;
+        }
+        return delivered;
+    }
+}
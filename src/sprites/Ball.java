@@ -2,13 +2,14 @@ package sprites;
 
 import biuoop.DrawSurface;
 import collision.Collidable;
-import collision.CollisionInfo;
+import collision.SweepHit;
 import collision.Velocity;
 import game.GameEnvironment;
 import game.Game;
 import geometry.Line;
 import geometry.Point;
 import geometry.Rectangle;
+import geometry.SlabHit;
 import observe.HitListener;
 
 import java.awt.Color;
@@ -16,9 +17,16 @@ import java.awt.Color;
 /**
  * The {@code Ball} class represents a 2D ball that can move with a given velocity
  * inside a defined rectangular area. It can detect collisions and interact with the environment.
+ * The ball owns its center, previous center and velocity objects and changes them in place,
+ * so moving a ball does not allocate anything.
  */
-public class Ball implements Sprite, HitListener {
-    private Point center;
+public class Ball implements PlannedSprite, HitListener {
+    // Upper bound on the bounces resolved in one frame when using continuous collision detection.
+    private static final int MAX_BOUNCES_PER_STEP = 8;
+
+    private final Point center;
+    // Where the ball was before the last update, for drawing between two updates.
+    private final Point previousCenter;
     private int radius;
     private java.awt.Color color;
     private Velocity velocity;
@@ -28,6 +36,20 @@ public class Ball implements Sprite, HitListener {
     private int screenWidth;
     private int screenHeight;
     private int borderWidth;
+    private boolean continuousCollision;
+    private boolean inGame;
+    private final SweepHit sweepHit = new SweepHit();
+    // The plan for the current frame, see planTimePassed.
+    private long plannedVersion;
+    private boolean plannedHit;
+    private double plannedX;
+    private double plannedY;
+    // What the ball looked like when its damage was last reported, see addDamage.
+    private boolean damageReported;
+    private int reportedX;
+    private int reportedY;
+    private int reportedRadius;
+    private java.awt.Color reportedColor;
 
     /**
      * Constructs a new Ball with a center point, radius, and color.
@@ -37,10 +59,11 @@ public class Ball implements Sprite, HitListener {
      * @param color the color of the ball
      */
     public Ball(Point center, int r, java.awt.Color color) {
-        this.center = center;
+        this.center = new Point(center.getX(), center.getY());
+        this.previousCenter = new Point(center.getX(), center.getY());
         this.radius = r;
         this.color = color;
-        this.initialPosition = center;
+        this.initialPosition = new Point(center.getX(), center.getY());
     }
 
     /**
@@ -53,6 +76,7 @@ public class Ball implements Sprite, HitListener {
      */
     public Ball(double x, double y, int r, java.awt.Color color) {
         this.center = new Point(x, y);
+        this.previousCenter = new Point(x, y);
         this.radius = r;
         this.color = color;
     }
@@ -99,6 +123,25 @@ public class Ball implements Sprite, HitListener {
         return (int) y;
     }
 
+    /**
+     * Returns the ball's center before the last update, for drawing the ball between two updates.
+     * The ball changes the returned point in place on every update.
+     *
+     * @return the previous center, which is where the ball starts if it was never updated
+     */
+    public Point getPreviousCenter() {
+        return this.previousCenter;
+    }
+
+    /**
+     * Returns the ball's center. The ball changes the returned point in place as it moves.
+     *
+     * @return the center point
+     */
+    public Point getCenter() {
+        return this.center;
+    }
+
     /**
      * Returns the radius of the ball.
      *
@@ -141,6 +184,35 @@ public class Ball implements Sprite, HitListener {
         surface.fillCircle(x, y, this.radius);
     }
 
+    @Override
+    public boolean addBounds(DirtyRegions regions) {
+        int x = (int) Math.round(this.center.getX());
+        int y = (int) Math.round(this.center.getY());
+        regions.add(x - this.radius, y - this.radius, 2 * this.radius, 2 * this.radius);
+        return true;
+    }
+
+    @Override
+    public boolean addDamage(DirtyRegions regions) {
+        int x = (int) Math.round(this.center.getX());
+        int y = (int) Math.round(this.center.getY());
+        if (this.damageReported && x == this.reportedX && y == this.reportedY
+                && this.radius == this.reportedRadius && this.color == this.reportedColor) {
+            return true;
+        }
+        if (this.damageReported) {
+            regions.add(this.reportedX - this.reportedRadius, this.reportedY - this.reportedRadius,
+                    2 * this.reportedRadius, 2 * this.reportedRadius);
+        }
+        regions.add(x - this.radius, y - this.radius, 2 * this.radius, 2 * this.radius);
+        this.damageReported = true;
+        this.reportedX = x;
+        this.reportedY = y;
+        this.reportedRadius = this.radius;
+        this.reportedColor = this.color;
+        return true;
+    }
+
     /**
      * Updates the ball's state. Called once per frame.
      */
@@ -150,12 +222,71 @@ public class Ball implements Sprite, HitListener {
     }
 
     /**
-     * Sets the velocity of the ball.
+     * Finds the first object the ball runs into this frame, reading the game environment only.
+     */
+    @Override
+    public void planTimePassed() {
+        if (this.velocity == null) {
+            return;
+        }
+        this.plannedVersion = this.gameEnvir.getVersion();
+        if (this.continuousCollision) {
+            this.plannedHit = this.gameEnvir.sweepCircle(this.center.getX(), this.center.getY(),
+                    this.velocity.getDx(), this.velocity.getDy(), this.radius, this.sweepHit);
+        } else {
+            planSubSteps();
+        }
+    }
+
+    /**
+     * Moves the ball according to its plan, hitting the planned object if there is one.
+     */
+    @Override
+    public void applyTimePassed() {
+        this.previousCenter.setX(this.center.getX());
+        this.previousCenter.setY(this.center.getY());
+        if (this.velocity == null) {
+            return;
+        }
+        double x = this.center.getX();
+        double y = this.center.getY();
+        double reach = this.continuousCollision ? this.radius : 0;
+        if (this.gameEnvir.changedSince(this.plannedVersion,
+                Math.min(x, x + this.velocity.getDx()) - reach, Math.min(y, y + this.velocity.getDy()) - reach,
+                Math.max(x, x + this.velocity.getDx()) + reach, Math.max(y, y + this.velocity.getDy()) + reach)) {
+            planTimePassed();
+        }
+
+        if (this.continuousCollision) {
+            moveContinuously();
+        } else {
+            moveInSubSteps();
+        }
+
+        // Check for screen boundaries
+        if (this.center.getX() < this.borderWidth
+                || this.center.getX() > this.screenWidth - this.borderWidth
+                || this.center.getY() < this.borderWidth
+                || this.center.getY() > this.screenHeight - this.borderWidth) {
+            moveCenter(initialPosition.getX(), initialPosition.getY());
+            // The ball jumps back, so it must not be drawn on the way.
+            this.previousCenter.setX(this.center.getX());
+            this.previousCenter.setY(this.center.getY());
+        }
+    }
+
+    private void moveCenter(double x, double y) {
+        this.center.setX(x);
+        this.center.setY(y);
+    }
+
+    /**
+     * Sets the velocity of the ball. The ball copies the given velocity into its own.
      *
      * @param v the new velocity
      */
     public void setVelocity(Velocity v) {
-        this.velocity = v;
+        setVelocity(v.getDx(), v.getDy());
     }
 
     /**
@@ -165,11 +296,15 @@ public class Ball implements Sprite, HitListener {
      * @param dy the change in y
      */
     public void setVelocity(double dx, double dy) {
-        this.velocity = new Velocity(dx, dy);
+        if (this.velocity == null) {
+            this.velocity = new Velocity(dx, dy);
+        } else {
+            this.velocity.set(dx, dy);
+        }
     }
 
     /**
-     * Returns the velocity of the ball.
+     * Returns the velocity of the ball. The ball changes the returned velocity in place when it bounces.
      *
      * @return the ball's velocity
      */
@@ -177,68 +312,134 @@ public class Ball implements Sprite, HitListener {
         return this.velocity;
     }
 
+    /**
+     * Chooses how the ball detects collisions. In continuous mode every step computes the exact
+     * time of impact of the ball's circle, bounces as many times as needed within the step and keeps
+     * the movement left after each bounce. Otherwise the step is split into fixed sub-steps and
+     * stops at the first hit.
+     *
+     * @param continuousCollision true to use continuous collision detection
+     */
+    public void setContinuousCollision(boolean continuousCollision) {
+        this.continuousCollision = continuousCollision;
+    }
+
     /**
      * Moves the ball one step according to its velocity.
      * Handles collisions with objects and screen borders.
      */
     public void moveOneStep() {
-        if (this.velocity == null) {
-            return;
+        planTimePassed();
+        applyTimePassed();
+    }
+
+    /**
+     * Moves the ball through the whole step, bouncing off every object it touches on the way.
+     * The first hit comes from the plan. After a bounce the rest of the step continues with the new velocity.
+     */
+    private void moveContinuously() {
+        double remaining = 1;
+        boolean hit = this.plannedHit;
+        for (int i = 0; i < MAX_BOUNCES_PER_STEP && remaining > 0; i++) {
+            double x = this.center.getX();
+            double y = this.center.getY();
+            double dx = this.velocity.getDx() * remaining;
+            double dy = this.velocity.getDy() * remaining;
+            if (i > 0) {
+                hit = this.gameEnvir.sweepCircle(x, y, dx, dy, this.radius, this.sweepHit);
+            }
+            if (!hit) {
+                moveCenter(x + dx, y + dy);
+                return;
+            }
+            double t = this.sweepHit.getT();
+            moveCenter(x + t * dx, y + t * dy);
+            this.sweepHit.getCollidable().hit(this, this.sweepHit.getPart(), this.sweepHit.getContactX(),
+                    this.sweepHit.getContactY(), this.velocity);
+            remaining *= 1 - t;
         }
+    }
 
+    /**
+     * Plans a step split into fixed sub-steps, stopping at the first sub-step that hits an object.
+     */
+    private void planSubSteps() {
         int subSteps = 50;
         double dxStep = this.velocity.getDx() / subSteps;
         double dyStep = this.velocity.getDy() / subSteps;
+        double x = this.center.getX();
+        double y = this.center.getY();
 
+        this.plannedHit = false;
         for (int i = 0; i < subSteps; i++) {
-            Point nextPosition = new Point(this.center.getX() + dxStep, this.center.getY() + dyStep);
-            Line nextStepLine = new Line(this.center, nextPosition);
-            CollisionInfo collision = this.gameEnvir.getClosestCollision(nextStepLine);
-
-            if (collision == null) {
-                this.center = nextPosition;
-            } else {
-                Point collisionPoint = collision.collisionPoint();
-                Collidable object = collision.collisionObject();
-                Rectangle rect = object.getCollisionRectangle();
-
-                // Place the ball at the collision point
-                this.center = collisionPoint;
-
-                // Update velocity
-                this.velocity = object.hit(this, collisionPoint, this.velocity);
-
-                double left = rect.getUpperLeft().getX();
-                double right = left + rect.getWidth();
-                double top = rect.getUpperLeft().getY();
-                double bottom = top + rect.getHeight();
-
-                double ballX = this.center.getX();
-                double ballY = this.center.getY();
-                double offset = this.radius + 0.1;
-
-                if (Math.abs(ballX - left) <= 1.0) {
-                    this.center = new Point(left - offset, ballY); // hit from left
-                } else if (Math.abs(ballX - right) <= 1.0) {
-                    this.center = new Point(right + offset, ballY); // hit from right
-                } else if (Math.abs(ballY - top) <= 1.0) {
-                    this.center = new Point(ballX, top - offset); // hit from top
-                } else if (Math.abs(ballY - bottom) <= 1.0) {
-                    this.center = new Point(ballX, bottom + offset); // hit from bottom
-                }
-
+            if (this.gameEnvir.findClosestHit(x, y, dxStep, dyStep, this.sweepHit)) {
+                this.plannedHit = true;
                 break;
             }
+            x += dxStep;
+            y += dyStep;
         }
+        this.plannedX = x;
+        this.plannedY = y;
+    }
 
-        // Check for screen boundaries
-        if (this.center.getX() < this.borderWidth
-                || this.center.getX() > this.screenWidth - this.borderWidth
-                || this.center.getY() < this.borderWidth
-                || this.center.getY() > this.screenHeight - this.borderWidth) {
-            this.center = new Point(initialPosition.getX(), initialPosition.getY());
+    /**
+     * Moves the ball to the end of its sub-step plan, placing it next to the object it hits if there is one.
+     */
+    private void moveInSubSteps() {
+        if (!this.plannedHit) {
+            moveCenter(this.plannedX, this.plannedY);
+            return;
+        }
+        double contactX = this.sweepHit.getContactX();
+        double contactY = this.sweepHit.getContactY();
+        Collidable object = this.sweepHit.getCollidable();
+        int part = this.sweepHit.getPart();
+        Rectangle rect = object.getCollisionRectangle();
+
+        // Place the ball at the collision point
+        moveCenter(contactX, contactY);
+
+        // Update velocity
+        object.hit(this, part, contactX, contactY, this.velocity);
+
+        double offset = this.radius + 0.1;
+        if (part != SweepHit.NO_PART) {
+            // A part has no rectangle of its own, but the contact point is on the side that was hit.
+            moveOutOfSide(this.sweepHit.getSide(), contactX, contactY, offset);
+            return;
+        }
+        double left = rect.getUpperLeft().getX();
+        double right = left + rect.getWidth();
+        double top = rect.getUpperLeft().getY();
+        double bottom = top + rect.getHeight();
+
+        double ballX = this.center.getX();
+        double ballY = this.center.getY();
+
+        if (Math.abs(ballX - left) <= 1.0) {
+            moveCenter(left - offset, ballY); // hit from left
+        } else if (Math.abs(ballX - right) <= 1.0) {
+            moveCenter(right + offset, ballY); // hit from right
+        } else if (Math.abs(ballY - top) <= 1.0) {
+            moveCenter(ballX, top - offset); // hit from top
+        } else if (Math.abs(ballY - bottom) <= 1.0) {
+            moveCenter(ballX, bottom + offset); // hit from bottom
+        }
+    }
+
+    private void moveOutOfSide(int side, double contactX, double contactY, double offset) {
+        if (side == SlabHit.LEFT) {
+            moveCenter(contactX - offset, contactY);
+        } else if (side == SlabHit.RIGHT) {
+            moveCenter(contactX + offset, contactY);
+        } else if (side == SlabHit.TOP) {
+            moveCenter(contactX, contactY - offset);
+        } else if (side == SlabHit.BOTTOM) {
+            moveCenter(contactX, contactY + offset);
         }
     }
+
     /**
      * Sets the array of forbidden lines that the ball must avoid.
      *
@@ -267,20 +468,34 @@ public class Ball implements Sprite, HitListener {
     }
 
     /**
-     * Adds the ball to the game as a sprite.
+     * Adds the ball to the game as a sprite that bounces off the game's other balls.
      *
      * @param g the game to add this ball to
      */
     public void addToGame(Game g) {
         g.addSprite(this);
+        g.getBallCollisions().addBall(this);
+        this.inGame = true;
     }
     /**
-     * Removes the ball from the game as a sprite.
+     * Removes the ball from the game as a sprite and from the balls it bounces off.
      *
      * @param g the game to remove this ball from
      */
     public void removeFromGame(Game g) {
         g.removeSprite(this);
+        g.getBallCollisions().removeBall(this);
+        this.inGame = false;
+    }
+
+    /**
+     * Checks whether the ball was added to a game and not removed since.
+     * A ball may hit several death zones in the same tick, so a listener that removes it checks this first.
+     *
+     * @return true if the ball is in a game
+     */
+    public boolean isInGame() {
+        return inGame;
     }
 
     @Override
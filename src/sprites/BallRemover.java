@@ -24,14 +24,18 @@ public class BallRemover implements HitListener {
     }
 
     /**
-     * Called when a ball hits a block. Removes the ball from the game and updates the ball counter.
-     * Also removes this listener if necessary.
+     * Called when a ball hits a block. If the ball is still in the game, it is removed from the game and
+     * the ball counter is decremented.
      *
      * @param beingHit the block that was hit
      * @param hitter   the ball that hit the block
      */
+    @Override
     public void hitEvent(Block beingHit, Ball hitter) {
-        game.removeSprite(hitter);
+        if (!hitter.isInGame()) {
+            return;
+        }
+        hitter.removeFromGame(game);
         remainingBalls.decrease(1);
     }
 }
@@ -0,0 +1,364 @@
+package sprites;
+
+import biuoop.DrawSurface;
+import collision.Collidable;
+import collision.SweepHit;
+import collision.Velocity;
+import game.Game;
+import game.GameEnvironment;
+import geometry.Point;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The {@code BallSwarm} class stores many balls at once as parallel primitive arrays
+ * (center x, center y, dx, dy, radius and a palette index for the color) instead of one {@link Ball}
+ * object per ball. The whole swarm is a single sprite that moves and draws every ball in one pass,
+ * which keeps multi-ball modes with tens of thousands of balls cheap to update.
+ * Balls move with continuous collision detection, like a {@link Ball} in continuous mode.
+ * A ball that hits a bottom block, or leaves the screen area, is removed from the swarm.
+ * When planned inside a {@link java.util.concurrent.ForkJoinPool}, the first hit of every ball is found
+ * in parallel chunks; the hits are then applied one ball after another in index order.
+ */
+public class BallSwarm implements PlannedSprite {
+    // Upper bound on the bounces resolved for one ball in one frame.
+    private static final int MAX_BOUNCES_PER_STEP = 8;
+    // Number of balls planned by one task when planning in parallel.
+    private static final int PLAN_CHUNK = 1024;
+    private static final int MAX_COLORS = 256;
+
+    private final GameEnvironment environment;
+    private final SweepHit sweepHit = new SweepHit();
+    // Stands in for the swarm ball being moved when a collidable needs a Ball to hit.
+    private final Ball proxy = new Ball(new Point(0, 0), 0, null);
+    // The velocity of the swarm ball being bounced, changed in place by the collidable it hits.
+    private final Velocity bounceVelocity = new Velocity(0, 0);
+    private final Color[] palette = new Color[MAX_COLORS];
+    private int paletteSize;
+
+    private double[] x;
+    private double[] y;
+    private double[] dx;
+    private double[] dy;
+    private int[] radius;
+    private byte[] colorIndex;
+    private int count;
+
+    // The first hit of every ball this frame, found by planTimePassed.
+    private Collidable[] plannedObject;
+    private int[] plannedPart;
+    private double[] plannedT;
+    private double[] plannedContactX;
+    private double[] plannedContactY;
+    private long plannedVersion;
+
+    private double minX = Double.NEGATIVE_INFINITY;
+    private double minY = Double.NEGATIVE_INFINITY;
+    private double maxX = Double.POSITIVE_INFINITY;
+    private double maxY = Double.POSITIVE_INFINITY;
+
+    /**
+     * Constructs an empty swarm.
+     *
+     * @param environment the environment the balls collide with
+     * @param capacity    the number of balls to make room for up front
+     */
+    public BallSwarm(GameEnvironment environment, int capacity) {
+        this.environment = environment;
+        int size = Math.max(capacity, 1);
+        this.x = new double[size];
+        this.y = new double[size];
+        this.dx = new double[size];
+        this.dy = new double[size];
+        this.radius = new int[size];
+        this.colorIndex = new byte[size];
+        this.plannedObject = new Collidable[size];
+        this.plannedPart = new int[size];
+        this.plannedT = new double[size];
+        this.plannedContactX = new double[size];
+        this.plannedContactY = new double[size];
+    }
+
+    /**
+     * Sets the area the balls may move in. A ball that leaves it is removed from the swarm.
+     *
+     * @param width       the width of the screen
+     * @param height      the height of the screen
+     * @param borderWidth the width of the borders to respect
+     */
+    public void setBorders(int width, int height, int borderWidth) {
+        this.minX = borderWidth;
+        this.minY = borderWidth;
+        this.maxX = width - borderWidth;
+        this.maxY = height - borderWidth;
+    }
+
+    /**
+     * Adds a ball to the swarm.
+     *
+     * @param centerX the x-coordinate of the ball's center
+     * @param centerY the y-coordinate of the ball's center
+     * @param vx      the change in x per frame
+     * @param vy      the change in y per frame
+     * @param r       the radius of the ball
+     * @param color   the color of the ball
+     */
+    public void addBall(double centerX, double centerY, double vx, double vy, int r, Color color) {
+        if (count == x.length) {
+            grow();
+        }
+        x[count] = centerX;
+        y[count] = centerY;
+        dx[count] = vx;
+        dy[count] = vy;
+        radius[count] = r;
+        colorIndex[count] = (byte) paletteIndexOf(color);
+        count++;
+    }
+
+    /**
+     * Returns the number of balls in the swarm.
+     *
+     * @return the ball count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Moves every ball in the swarm one frame, bouncing off the collidables in the environment.
+     */
+    public void stepAll() {
+        planTimePassed();
+        applyTimePassed();
+    }
+
+    /**
+     * Finds the first hit of every ball this frame, reading the environment only.
+     * Inside a fork/join pool the balls are planned in parallel chunks.
+     */
+    @Override
+    public void planTimePassed() {
+        plannedVersion = environment.getVersion();
+        if (ForkJoinTask.inForkJoinPool() && count > PLAN_CHUNK) {
+            new PlanRange(0, count).invoke();
+        } else {
+            planRange(0, count, sweepHit);
+        }
+    }
+
+    private void planRange(int from, int to, SweepHit scratch) {
+        for (int i = from; i < to; i++) {
+            planOne(i, scratch);
+        }
+    }
+
+    private void planOne(int i, SweepHit scratch) {
+        if (environment.sweepCircle(x[i], y[i], dx[i], dy[i], radius[i], scratch)) {
+            plannedObject[i] = scratch.getCollidable();
+            plannedPart[i] = scratch.getPart();
+            plannedT[i] = scratch.getT();
+            plannedContactX[i] = scratch.getContactX();
+            plannedContactY[i] = scratch.getContactY();
+        } else {
+            plannedObject[i] = null;
+        }
+    }
+
+    /**
+     * Moves every ball according to its plan, in index order. A ball whose swept area changed since
+     * the plan (for example because an earlier ball destroyed a block in its way) is planned again first.
+     */
+    @Override
+    public void applyTimePassed() {
+        int i = 0;
+        while (i < count) {
+            double r = radius[i];
+            if (environment.changedSince(plannedVersion,
+                    Math.min(x[i], x[i] + dx[i]) - r, Math.min(y[i], y[i] + dy[i]) - r,
+                    Math.max(x[i], x[i] + dx[i]) + r, Math.max(y[i], y[i] + dy[i]) + r)) {
+                planOne(i, sweepHit);
+            }
+            if (stepOne(i)) {
+                i++;
+            } else {
+                // The last ball was moved into slot i and still has to be stepped.
+                removeBall(i);
+            }
+        }
+    }
+
+    /**
+     * Moves one ball through the whole frame, bouncing off every object it touches on the way.
+     * The first hit comes from the ball's plan.
+     *
+     * @param i the index of the ball
+     * @return false if the ball has to be removed from the swarm
+     */
+    private boolean stepOne(int i) {
+        double remaining = 1;
+        for (int bounce = 0; bounce < MAX_BOUNCES_PER_STEP && remaining > 0; bounce++) {
+            double moveX = dx[i] * remaining;
+            double moveY = dy[i] * remaining;
+            Collidable object;
+            int part;
+            double t;
+            double contactX;
+            double contactY;
+            if (bounce == 0) {
+                object = plannedObject[i];
+                part = plannedPart[i];
+                t = plannedT[i];
+                contactX = plannedContactX[i];
+                contactY = plannedContactY[i];
+            } else if (environment.sweepCircle(x[i], y[i], moveX, moveY, radius[i], sweepHit)) {
+                object = sweepHit.getCollidable();
+                part = sweepHit.getPart();
+                t = sweepHit.getT();
+                contactX = sweepHit.getContactX();
+                contactY = sweepHit.getContactY();
+            } else {
+                object = null;
+                part = SweepHit.NO_PART;
+                t = 1;
+                contactX = 0;
+                contactY = 0;
+            }
+            if (object == null) {
+                x[i] += moveX;
+                y[i] += moveY;
+                break;
+            }
+            x[i] += t * moveX;
+            y[i] += t * moveY;
+            remaining *= 1 - t;
+            if (object.isBlock() && ((Block) object).isBottomBlock()) {
+                return false;
+            }
+            proxy.setColor(palette[colorIndex[i] & 0xff]);
+            bounceVelocity.set(dx[i], dy[i]);
+            object.hit(proxy, part, contactX, contactY, bounceVelocity);
+            dx[i] = bounceVelocity.getDx();
+            dy[i] = bounceVelocity.getDy();
+            colorIndex[i] = (byte) paletteIndexOf(proxy.getColor());
+        }
+        return x[i] >= minX && x[i] <= maxX && y[i] >= minY && y[i] <= maxY;
+    }
+
+    private void removeBall(int i) {
+        int last = --count;
+        x[i] = x[last];
+        y[i] = y[last];
+        dx[i] = dx[last];
+        dy[i] = dy[last];
+        radius[i] = radius[last];
+        colorIndex[i] = colorIndex[last];
+        plannedObject[i] = plannedObject[last];
+        plannedPart[i] = plannedPart[last];
+        plannedT[i] = plannedT[last];
+        plannedContactX[i] = plannedContactX[last];
+        plannedContactY[i] = plannedContactY[last];
+        plannedObject[last] = null;
+    }
+
+    private int paletteIndexOf(Color color) {
+        for (int i = 0; i < paletteSize; i++) {
+            if (palette[i] == color) {
+                return i;
+            }
+        }
+        if (paletteSize == MAX_COLORS) {
+            throw new IllegalStateException("a ball swarm supports at most " + MAX_COLORS + " colors");
+        }
+        palette[paletteSize] = color;
+        return paletteSize++;
+    }
+
+    private void grow() {
+        int size = x.length * 2;
+        x = Arrays.copyOf(x, size);
+        y = Arrays.copyOf(y, size);
+        dx = Arrays.copyOf(dx, size);
+        dy = Arrays.copyOf(dy, size);
+        radius = Arrays.copyOf(radius, size);
+        colorIndex = Arrays.copyOf(colorIndex, size);
+        plannedObject = Arrays.copyOf(plannedObject, size);
+        plannedPart = Arrays.copyOf(plannedPart, size);
+        plannedT = Arrays.copyOf(plannedT, size);
+        plannedContactX = Arrays.copyOf(plannedContactX, size);
+        plannedContactY = Arrays.copyOf(plannedContactY, size);
+    }
+
+    /**
+     * Draws every ball in the swarm. The color is only changed between balls of different colors.
+     *
+     * @param d the drawing surface to draw on
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+        int currentColor = -1;
+        for (int i = 0; i < count; i++) {
+            int c = colorIndex[i] & 0xff;
+            if (c != currentColor) {
+                Color color = palette[c];
+                d.setColor(color == null ? Color.BLACK : color);
+                currentColor = c;
+            }
+            d.fillCircle((int) Math.round(x[i]), (int) Math.round(y[i]), radius[i]);
+        }
+    }
+
+    /**
+     * Moves every ball in the swarm. Called once per frame.
+     */
+    @Override
+    public void timePassed() {
+        stepAll();
+    }
+
+    /**
+     * Adds the swarm to the game as a single sprite.
+     *
+     * @param g the game to add the swarm to
+     */
+    public void addToGame(Game g) {
+        g.addSprite(this);
+    }
+
+    /**
+     * Removes the swarm from the game.
+     *
+     * @param g the game to remove the swarm from
+     */
+    public void removeFromGame(Game g) {
+        g.removeSprite(this);
+    }
+
+    /**
+     * Plans a range of balls, splitting it in halves until the pieces are small enough.
+     */
+    private final class PlanRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        private PlanRange(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PLAN_CHUNK) {
+                planRange(from, to, new SweepHit());
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new PlanRange(from, middle), new PlanRange(middle, to));
+        }
+    }
+}
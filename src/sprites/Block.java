@@ -4,24 +4,33 @@ import biuoop.DrawSurface;
 import collision.Collidable;
 import collision.Velocity;
 import game.Game;
+import game.GameEnvironment;
 import geometry.Point;
 import geometry.Rectangle;
+import observe.HitEventQueue;
 import observe.HitListener;
 import observe.HitNotifier;
 import tools.Tools;
 
 import java.awt.Color;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * The {@code Block} class represents a rectangular block in the game
  * that can be drawn, collide with balls, and interact as a sprite and collidable object.
+ * Once added to a game, its hits are posted to the game's {@link HitEventQueue} and reach the
+ * listeners when the tick is over; a block outside a game notifies its listeners right away.
  */
 public class Block extends Rectangle implements Collidable, Sprite, HitNotifier {
     private Color color;
-    private List<HitListener> hitListeners = new ArrayList<>();
+    // Usually empty and shared, since listeners are normally registered on the block's group.
+    // Replaced on every change, so notifying never copies the listeners.
+    private HitListener[] hitListeners = HitEventQueue.NO_LISTENERS;
+    private int hitGroup = HitEventQueue.BREAKABLE;
+    private HitEventQueue hitEvents;
+    private boolean inGame = false;
+    private long handle = GameEnvironment.NO_HANDLE;
     private boolean bottomBlock = false;
+    private boolean damageReported = false;
 
     /**
      * Constructs a block with a given position, size, and color.
@@ -58,13 +67,42 @@ public class Block extends Rectangle implements Collidable, Sprite, HitNotifier
     }
 
     private void notifyHit(Ball hitter) {
-        // Make a copy of the hitListeners before iterating over them.
-        List<HitListener> listeners = new ArrayList<HitListener>(this.hitListeners);
-        // Notify all listeners about a hit event:
-        for (HitListener hl : listeners) {
+        if (hitEvents != null) {
+            hitEvents.post(this, hitter);
+        } else {
+            fireHit(hitter);
+        }
+    }
+
+    /**
+     * Notifies the listeners registered on this block about a hit.
+     * Called by the {@link HitEventQueue} when the hit is delivered.
+     *
+     * @param hitter the ball that hit the block
+     */
+    public void fireHit(Ball hitter) {
+        for (HitListener hl : this.hitListeners) {
             hl.hitEvent(this, hitter);
         }
     }
+
+    /**
+     * Called by the {@link HitEventQueue} instead of {@link #fireHit(Ball)} when the block left the game
+     * before a hit on it was delivered. A block notifies nobody about such a hit.
+     *
+     * @param hitter the ball that hit the block
+     */
+    public void dropHit(Ball hitter) {
+    }
+
+    /**
+     * Sets the queue the block posts its hits to.
+     *
+     * @param hitEvents the queue, or {@code null} to notify the listeners as soon as the block is hit
+     */
+    public void setHitEventQueue(HitEventQueue hitEvents) {
+        this.hitEvents = hitEvents;
+    }
     /**
      * Handles the collision with a ball. Reverses velocity based on the side of collision.
      *
@@ -74,19 +112,58 @@ public class Block extends Rectangle implements Collidable, Sprite, HitNotifier
      */
     @Override
     public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
-        double dx = currentVelocity.getDx();
-        double dy = currentVelocity.getDy();
+        Velocity velocity = new Velocity(currentVelocity.getDx(), currentVelocity.getDy());
+        hit(hitter, collisionPoint.getX(), collisionPoint.getY(), velocity);
+        return velocity;
+    }
+
+    /**
+     * Handles the collision with a ball like {@link #hit(Ball, Point, Velocity)}, changing the
+     * ball's velocity in place.
+     *
+     * @param hitter     the ball that hit the block
+     * @param collisionX the x-coordinate of the point where the collision occurred
+     * @param collisionY the y-coordinate of the point where the collision occurred
+     * @param velocity   the ball's velocity, changed to the velocity after the collision
+     */
+    @Override
+    public void hit(Ball hitter, double collisionX, double collisionY, Velocity velocity) {
+        double left = this.getUpperLeft().getX();
+        double top = this.getUpperLeft().getY();
+        if (bottomBlock) {
+            this.notifyHit(hitter);
+        } else if (!this.isBorder() && !ballColorMatch(hitter)) {
+            hitter.setColor(color);
+            this.notifyHit(hitter);
+        }
+        bounce(left, top, left + getWidth(), top + getHeight(), collisionX, collisionY, velocity);
+    }
+
+    /**
+     * Bounces a velocity off a rectangle: a hit on a vertical side flips the horizontal speed, a hit on
+     * a horizontal side flips the vertical speed, and a hit that is on no side flips both.
+     *
+     * @param left       the x-coordinate of the left side
+     * @param top        the y-coordinate of the top side
+     * @param right      the x-coordinate of the right side
+     * @param bottom     the y-coordinate of the bottom side
+     * @param collisionX the x-coordinate of the point where the collision occurred
+     * @param collisionY the y-coordinate of the point where the collision occurred
+     * @param velocity   the velocity, changed to the velocity after the collision
+     */
+    static void bounce(double left, double top, double right, double bottom, double collisionX, double collisionY,
+                       Velocity velocity) {
+        double dx = velocity.getDx();
+        double dy = velocity.getDy();
         boolean changedVelocity = false;
         double safety = 0.3;
 
-        if (Tools.doubleEquals(collisionPoint.getX(), this.getUpperLeft().getX(), safety)
-                || Tools.doubleEquals(collisionPoint.getX(), (this.getUpperLeft().getX() + getWidth()), safety)) {
+        if (Tools.doubleEquals(collisionX, left, safety) || Tools.doubleEquals(collisionX, right, safety)) {
             dx = -dx;
             changedVelocity = true;
         }
 
-        if (Tools.doubleEquals(collisionPoint.getY(), this.getUpperLeft().getY(), safety)
-                || Tools.doubleEquals(collisionPoint.getY(), (this.getUpperLeft().getY() + getHeight()), safety)) {
+        if (Tools.doubleEquals(collisionY, top, safety) || Tools.doubleEquals(collisionY, bottom, safety)) {
             dy = -dy;
             changedVelocity = true;
         }
@@ -95,13 +172,7 @@ public class Block extends Rectangle implements Collidable, Sprite, HitNotifier
             dx = -dx;
             dy = -dy;
         }
-        if (bottomBlock) {
-            this.notifyHit(hitter);
-        } else if (!this.isBorder() && !ballColorMatch(hitter)) {
-            hitter.setColor(color);
-            this.notifyHit(hitter);
-        }
-        return new Velocity(dx, dy);
+        velocity.set(dx, dy);
     }
 
     /**
@@ -122,6 +193,38 @@ public class Block extends Rectangle implements Collidable, Sprite, HitNotifier
         d.drawRectangle(pointX, pointY, (int) this.getWidth(), (int) this.getHeight());
     }
 
+    @Override
+    public boolean addBounds(DirtyRegions regions) {
+        regions.add((int) getUpperLeft().getX(), (int) getUpperLeft().getY(),
+                (int) this.getWidth(), (int) this.getHeight());
+        return true;
+    }
+
+    /**
+     * Blocks never move or change their look, so they are drawn into the static layer.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
+
+    /**
+     * Adds the block's area the first time it is called. A block never moves or changes its look.
+     *
+     * @param regions the regions to add the changed areas to
+     * @return true
+     */
+    @Override
+    public boolean addDamage(DirtyRegions regions) {
+        if (!this.damageReported) {
+            this.damageReported = true;
+            addBounds(regions);
+        }
+        return true;
+    }
+
     /**
      * Notifies the block that time has passed. No action needed for static blocks.
      */
@@ -137,7 +240,9 @@ public class Block extends Rectangle implements Collidable, Sprite, HitNotifier
      */
     public void addToGame(Game g) {
         g.addSprite(this);
-        g.addCollidable(this);
+        this.handle = g.addCollidable(this);
+        this.hitEvents = g.getHitEvents();
+        this.inGame = true;
     }
     /**
      * Removes the block from the game as both a collidable and a sprite.
@@ -145,8 +250,19 @@ public class Block extends Rectangle implements Collidable, Sprite, HitNotifier
      * @param game the game to remove the block from
      */
     public void removeFromGame(Game game) {
-        game.removeCollidable(this);
+        game.removeCollidable(this.handle);
         game.removeSprite(this);
+        this.inGame = false;
+    }
+
+    /**
+     * Checks whether the block was added to a game and not removed since.
+     * Several balls may hit a block in the same tick; the hits that reach it after it was removed are dropped.
+     *
+     * @return true if the block is in a game
+     */
+    public boolean isInGame() {
+        return inGame;
     }
 
     /**
@@ -159,12 +275,30 @@ public class Block extends Rectangle implements Collidable, Sprite, HitNotifier
     }
     @Override
     public void addHitListener(HitListener hl) {
-        this.hitListeners.add(hl);
+        this.hitListeners = HitEventQueue.with(this.hitListeners, hl);
     }
 
     @Override
     public void removeHitListener(HitListener hl) {
-        this.hitListeners.remove(hl);
+        this.hitListeners = HitEventQueue.without(this.hitListeners, hl);
+    }
+
+    /**
+     * Sets the group whose listeners hear about this block's hits.
+     *
+     * @param hitGroup the group id, see {@link observe.GroupHitNotifier}
+     */
+    public void setHitGroup(int hitGroup) {
+        this.hitGroup = hitGroup;
+    }
+
+    /**
+     * Returns the group whose listeners hear about this block's hits.
+     *
+     * @return the group id
+     */
+    public int getHitGroup() {
+        return hitGroup;
     }
     @Override
     public Boolean isBlock() {
@@ -172,11 +306,14 @@ public class Block extends Rectangle implements Collidable, Sprite, HitNotifier
     }
     /**
      * Sets whether this block is the bottom block in the game (used for ball removal logic).
+     * A bottom block moves to the {@link HitEventQueue#DEATH_ZONE} group, and back to
+     * {@link HitEventQueue#BREAKABLE} when it stops being one.
      *
      * @param bottomBlock {@code true} if this is the bottom block, {@code false} otherwise
      */
     public void setBottomBlock(boolean bottomBlock) {
         this.bottomBlock = bottomBlock;
+        this.hitGroup = bottomBlock ? HitEventQueue.DEATH_ZONE : HitEventQueue.BREAKABLE;
     }
 
     /**
@@ -0,0 +1,655 @@
+package sprites;
+
+import biuoop.DrawSurface;
+import collision.CellCollidable;
+import collision.SweepHit;
+import collision.Velocity;
+import game.Game;
+import game.GameEnvironment;
+import geometry.Point;
+import geometry.Rectangle;
+import geometry.SlabHit;
+import observe.HitEventQueue;
+import observe.HitListener;
+import observe.HitNotifier;
+
+import java.awt.Color;
+
+/**
+ * The {@code BlockGrid} class is a whole field of equal bricks on a grid in one collidable and sprite.
+ * Instead of a {@link Block} object per brick it keeps one bit per cell that tells whether the cell still
+ * holds a brick, and one byte per cell that picks the brick's color from a palette of up to 256 colors,
+ * so a board of 1000 by 1000 bricks takes about a megabyte.
+ * Cells are numbered row by row from the upper-left corner. A query only walks the cells around the move,
+ * skipping empty cells a word of bits at a time, and reports the cell it hit as the part of the hit.
+ * Bricks behave like breakable blocks: a ball of another color takes the brick's color and the hit is
+ * posted to the game's {@link HitEventQueue}. Listeners get a {@link Block} that stands for the hit cell
+ * while the event is delivered; removing it from the game clears the cell. These stand-ins are reused
+ * once their event was delivered, so listeners must not keep them.
+ */
+public class BlockGrid implements CellCollidable, Sprite, HitNotifier {
+    private static final int MAX_COLORS = 256;
+    // Slack around a move, so cells that touch it on a border are never missed.
+    private static final double QUERY_PADDING = 1e-6;
+    // How far from a cell a hit point may be for the cell to count as hit, as for blocks.
+    private static final double HIT_SAFETY = 0.3;
+
+    private final int left;
+    private final int top;
+    private final int columns;
+    private final int rows;
+    private final int cellWidth;
+    private final int cellHeight;
+    private final Rectangle bounds;
+    // One bit per cell, set while the cell holds a brick.
+    private final long[] alive;
+    // The palette index of the color of every cell.
+    private final byte[] colors;
+    private final Color[] palette = new Color[MAX_COLORS];
+    private int colorCount;
+    private int aliveCount;
+    // Counts the changes to the cells, so a copy can tell whether it is still up to date.
+    private long version;
+
+    private HitListener[] hitListeners = HitEventQueue.NO_LISTENERS;
+    private int hitGroup = HitEventQueue.BREAKABLE;
+    private HitEventQueue hitEvents;
+    private Game game;
+    private long handle = GameEnvironment.NO_HANDLE;
+
+    // Cells whose look changed since the damage was last reported.
+    private final DirtyRegions changedCells = new DirtyRegions();
+    private boolean damageReported;
+    // Stand-ins for hit cells whose events were delivered, ready to be lent again.
+    private CellBlock[] freeViews = new CellBlock[4];
+    private int freeViewCount;
+
+    /**
+     * Constructs a grid with no bricks.
+     *
+     * @param left       the x-coordinate of the left side of the grid
+     * @param top        the y-coordinate of the top side of the grid
+     * @param columns    the number of columns
+     * @param rows       the number of rows
+     * @param cellWidth  the width of a cell
+     * @param cellHeight the height of a cell
+     */
+    public BlockGrid(int left, int top, int columns, int rows, int cellWidth, int cellHeight) {
+        if (columns <= 0 || rows <= 0 || cellWidth <= 0 || cellHeight <= 0) {
+            throw new IllegalArgumentException("grid and cell sizes must be positive");
+        }
+        if ((long) columns * rows > Integer.MAX_VALUE - 64) {
+            throw new IllegalArgumentException("too many cells: " + columns + "x" + rows);
+        }
+        this.left = left;
+        this.top = top;
+        this.columns = columns;
+        this.rows = rows;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.bounds = new Rectangle(new Point(left, top), (double) columns * cellWidth, (double) rows * cellHeight);
+        int cells = columns * rows;
+        this.alive = new long[(cells + 63) >>> 6];
+        this.colors = new byte[cells];
+    }
+
+    /**
+     * Returns the number of the cell in a column and row.
+     *
+     * @param column the column, from 0 at the left
+     * @param row    the row, from 0 at the top
+     * @return the cell number
+     */
+    public int cellOf(int column, int row) {
+        if (column < 0 || column >= columns || row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("no cell at column " + column + ", row " + row);
+        }
+        return row * columns + column;
+    }
+
+    /**
+     * Puts a brick in a cell, or changes the color of the brick that is already there.
+     *
+     * @param cell  the cell number
+     * @param color the color of the brick; a grid holds at most 256 different colors
+     */
+    public void setCell(int cell, Color color) {
+        colors[cell] = (byte) colorIndex(color);
+        if (!isAlive(cell)) {
+            alive[cell >>> 6] |= 1L << cell;
+            aliveCount++;
+        }
+        cellChanged(cell);
+    }
+
+    private int colorIndex(Color color) {
+        // Bricks of one color share the first Color object given for it, like the blocks of a row.
+        for (int i = 0; i < colorCount; i++) {
+            if (palette[i].getRGB() == color.getRGB()) {
+                return i;
+            }
+        }
+        if (colorCount == MAX_COLORS) {
+            throw new IllegalArgumentException("a block grid holds at most " + MAX_COLORS + " colors");
+        }
+        palette[colorCount] = color;
+        return colorCount++;
+    }
+
+    /**
+     * Clears the brick in a cell. The game environment and the screen are told about the change.
+     *
+     * @param cell the cell number
+     * @return true if the cell held a brick
+     */
+    public boolean removeCell(int cell) {
+        if (!isAlive(cell)) {
+            return false;
+        }
+        alive[cell >>> 6] &= ~(1L << cell);
+        aliveCount--;
+        cellChanged(cell);
+        return true;
+    }
+
+    private void cellChanged(int cell) {
+        version++;
+        int x = getCellX(cell);
+        int y = getCellY(cell);
+        changedCells.add(x, y, cellWidth, cellHeight);
+        if (game != null) {
+            game.recordCollidableChange(x, y, x + cellWidth, y + cellHeight);
+            game.recordSpriteChange(this);
+        }
+    }
+
+    /**
+     * Checks whether a cell holds a brick.
+     *
+     * @param cell the cell number
+     * @return true if the cell holds a brick
+     */
+    public boolean isAlive(int cell) {
+        return (alive[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Returns the first cell holding a brick at or after a cell, in cell number order.
+     *
+     * @param cell the cell number to start from
+     * @return the cell number, or -1 if no later cell holds a brick
+     */
+    public int nextAlive(int cell) {
+        return nextAlive(cell, columns * rows - 1);
+    }
+
+    private int nextAlive(int from, int to) {
+        if (from > to) {
+            return -1;
+        }
+        int word = from >>> 6;
+        int lastWord = to >>> 6;
+        long bits = alive[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word > lastWord) {
+                return -1;
+            }
+            bits = alive[word];
+        }
+        int cell = (word << 6) + Long.numberOfTrailingZeros(bits);
+        return cell <= to ? cell : -1;
+    }
+
+    /**
+     * Returns the color of the brick in a cell, or the color it had before it was cleared.
+     *
+     * @param cell the cell number
+     * @return the color, or {@code null} if the cell never held a brick and no color was used yet
+     */
+    public Color getColor(int cell) {
+        return palette[colors[cell] & 0xFF];
+    }
+
+    /**
+     * Returns the x-coordinate of the left side of a cell.
+     *
+     * @param cell the cell number
+     * @return the x-coordinate
+     */
+    public int getCellX(int cell) {
+        return left + (cell % columns) * cellWidth;
+    }
+
+    /**
+     * Returns the y-coordinate of the top side of a cell.
+     *
+     * @param cell the cell number
+     * @return the y-coordinate
+     */
+    public int getCellY(int cell) {
+        return top + (cell / columns) * cellHeight;
+    }
+
+    /**
+     * Returns the width of a cell.
+     *
+     * @return the cell width
+     */
+    public int getCellWidth() {
+        return cellWidth;
+    }
+
+    /**
+     * Returns the height of a cell.
+     *
+     * @return the cell height
+     */
+    public int getCellHeight() {
+        return cellHeight;
+    }
+
+    /**
+     * Returns the number of cells that hold a brick.
+     *
+     * @return the brick count
+     */
+    public int getAliveCount() {
+        return aliveCount;
+    }
+
+    /**
+     * Returns the x-coordinate of the left side of the grid.
+     *
+     * @return the x-coordinate
+     */
+    public int getLeft() {
+        return left;
+    }
+
+    /**
+     * Returns the y-coordinate of the top side of the grid.
+     *
+     * @return the y-coordinate
+     */
+    public int getTop() {
+        return top;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return the column count
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the row count
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns a number that changes whenever a brick is put in a cell, recolored or cleared.
+     *
+     * @return the version of the cells
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Copies the bit of every cell that tells whether it holds a brick, as in {@link #isAlive(int)}:
+     * bit {@code cell % 64} of word {@code cell / 64}.
+     *
+     * @param into the array to copy into, or {@code null}
+     * @return {@code into} if it was large enough, or a new array
+     */
+    public long[] copyAlive(long[] into) {
+        long[] copy = into != null && into.length >= alive.length ? into : new long[alive.length];
+        System.arraycopy(alive, 0, copy, 0, alive.length);
+        return copy;
+    }
+
+    /**
+     * Copies the palette index of the color of every cell.
+     *
+     * @param into the array to copy into, or {@code null}
+     * @return {@code into} if it was large enough, or a new array
+     */
+    public byte[] copyColorIndices(byte[] into) {
+        byte[] copy = into != null && into.length >= colors.length ? into : new byte[colors.length];
+        System.arraycopy(colors, 0, copy, 0, colors.length);
+        return copy;
+    }
+
+    /**
+     * Copies the palette the color indices of the cells point into.
+     *
+     * @param into the array to copy into, with room for 256 colors
+     */
+    public void copyPalette(Color[] into) {
+        System.arraycopy(palette, 0, into, 0, palette.length);
+    }
+
+    @Override
+    public Rectangle getCollisionRectangle() {
+        return bounds;
+    }
+
+    @Override
+    public boolean sweepCells(double x0, double y0, double dx, double dy, double radius, boolean circle,
+                              double limit, SweepHit result) {
+        double reach = (circle ? radius : 0) + QUERY_PADDING;
+        double minX = Math.min(x0, x0 + dx) - reach;
+        double maxX = Math.max(x0, x0 + dx) + reach;
+        double minY = Math.min(y0, y0 + dy) - reach;
+        double maxY = Math.max(y0, y0 + dy) + reach;
+        if (maxX < bounds.getMinX() || minX > bounds.getMaxX() || maxY < bounds.getMinY()
+                || minY > bounds.getMaxY()) {
+            return false;
+        }
+        int firstColumn = column(minX);
+        int lastColumn = column(maxX);
+        int lastRow = row(maxY);
+        SlabHit slab = result.getSlab();
+        double closestT = limit;
+        boolean found = false;
+        // Row by row with a strict comparison, so ties go to the lowest cell number.
+        for (int row = row(minY); row <= lastRow; row++) {
+            int first = row * columns + firstColumn;
+            int last = row * columns + lastColumn;
+            double cellTop = top + (double) row * cellHeight;
+            for (int cell = nextAlive(first, last); cell >= 0; cell = nextAlive(cell + 1, last)) {
+                double cellLeft = left + (double) (cell - row * columns) * cellWidth;
+                boolean hit = circle
+                        ? slab.sweepCircle(x0, y0, dx, dy, radius, cellLeft, cellTop, cellLeft + cellWidth,
+                                cellTop + cellHeight)
+                        : slab.intersect(x0, y0, dx, dy, cellLeft, cellTop, cellLeft + cellWidth,
+                                cellTop + cellHeight);
+                if (hit && slab.getT() < closestT) {
+                    double t = slab.getT();
+                    closestT = t;
+                    found = true;
+                    if (circle) {
+                        result.set(this, cell, t, slab.getSide(), slab.getContactX(), slab.getContactY());
+                    } else {
+                        result.set(this, cell, t, slab.getSide(), x0 + t * dx, y0 + t * dy);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private int column(double x) {
+        return (int) Math.max(0, Math.min(columns - 1, Math.floor((x - left) / cellWidth)));
+    }
+
+    private int row(double y) {
+        return (int) Math.max(0, Math.min(rows - 1, Math.floor((y - top) / cellHeight)));
+    }
+
+    @Override
+    public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
+        Velocity velocity = new Velocity(currentVelocity.getDx(), currentVelocity.getDy());
+        hit(hitter, collisionPoint.getX(), collisionPoint.getY(), velocity);
+        return velocity;
+    }
+
+    /**
+     * Handles a hit without knowing the cell, by looking for a brick next to the hit point.
+     *
+     * @param hitter     the ball that hit the grid
+     * @param collisionX the x-coordinate of the point where the collision occurred
+     * @param collisionY the y-coordinate of the point where the collision occurred
+     * @param velocity   the ball's velocity, changed to the velocity after the collision
+     */
+    @Override
+    public void hit(Ball hitter, double collisionX, double collisionY, Velocity velocity) {
+        hit(hitter, findCell(collisionX, collisionY), collisionX, collisionY, velocity);
+    }
+
+    /**
+     * Handles a hit on one cell: the ball bounces off the cell like off a block, and a ball of another
+     * color takes the brick's color and posts a hit.
+     *
+     * @param hitter     the ball that hit the grid
+     * @param part       the cell that was hit; if it holds no brick, one next to the hit point is looked for
+     * @param collisionX the x-coordinate of the point where the collision occurred
+     * @param collisionY the y-coordinate of the point where the collision occurred
+     * @param velocity   the ball's velocity, changed to the velocity after the collision
+     */
+    @Override
+    public void hit(Ball hitter, int part, double collisionX, double collisionY, Velocity velocity) {
+        int cell = part >= 0 && part < colors.length && isAlive(part) ? part : findCell(collisionX, collisionY);
+        if (cell < 0) {
+            Block.bounce(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(),
+                    collisionX, collisionY, velocity);
+            return;
+        }
+        Color color = getColor(cell);
+        if (hitter.getColor() != color) {
+            hitter.setColor(color);
+            post(cell, hitter);
+        }
+        double cellLeft = getCellX(cell);
+        double cellTop = getCellY(cell);
+        Block.bounce(cellLeft, cellTop, cellLeft + cellWidth, cellTop + cellHeight, collisionX, collisionY,
+                velocity);
+    }
+
+    // The first cell in cell number order that holds a brick and is within the safety distance of the point.
+    private int findCell(double x, double y) {
+        int firstColumn = column(x - HIT_SAFETY);
+        int lastColumn = column(x + HIT_SAFETY);
+        for (int row = row(y - HIT_SAFETY); row <= row(y + HIT_SAFETY); row++) {
+            int cell = nextAlive(row * columns + firstColumn, row * columns + lastColumn);
+            if (cell >= 0) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    private void post(int cell, Ball hitter) {
+        CellBlock view = freeViewCount > 0 ? freeViews[--freeViewCount] : new CellBlock(this);
+        view.cell = cell;
+        view.moveTo(getCellX(cell), getCellY(cell));
+        if (hitEvents != null) {
+            hitEvents.post(view, hitter);
+        } else {
+            view.fireHit(hitter);
+        }
+    }
+
+    private void release(CellBlock view) {
+        if (freeViewCount == freeViews.length) {
+            CellBlock[] grown = new CellBlock[freeViewCount * 2];
+            System.arraycopy(freeViews, 0, grown, 0, freeViewCount);
+            freeViews = grown;
+        }
+        freeViews[freeViewCount++] = view;
+    }
+
+    @Override
+    public void addHitListener(HitListener hl) {
+        this.hitListeners = HitEventQueue.with(this.hitListeners, hl);
+    }
+
+    @Override
+    public void removeHitListener(HitListener hl) {
+        this.hitListeners = HitEventQueue.without(this.hitListeners, hl);
+    }
+
+    /**
+     * Sets the group whose listeners hear about the hits on this grid's bricks.
+     *
+     * @param hitGroup the group id, see {@link observe.GroupHitNotifier}
+     */
+    public void setHitGroup(int hitGroup) {
+        this.hitGroup = hitGroup;
+    }
+
+    /**
+     * Draws the bricks that are on the surface.
+     *
+     * @param d the drawing surface to draw on
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+        drawCells(d, 0, 0, d.getWidth(), d.getHeight());
+    }
+
+    /**
+     * Draws only the bricks that overlap the region, so clearing one brick of a large grid
+     * does not draw the others again.
+     *
+     * @param d       the surface to draw on
+     * @param regions the regions being redrawn
+     * @param region  the index of the region to draw
+     */
+    @Override
+    public void drawOn(DrawSurface d, DirtyRegions regions, int region) {
+        int x = regions.getX(region);
+        int y = regions.getY(region);
+        drawCells(d, x, y, x + regions.getWidth(region), y + regions.getHeight(region));
+    }
+
+    private void drawCells(DrawSurface d, int minX, int minY, int maxX, int maxY) {
+        // A brick's outline reaches one pixel past its cell, into the next cell to the left and above.
+        int firstColumn = column(minX - 1);
+        int lastColumn = column(maxX);
+        int lastRow = row(maxY);
+        for (int row = row(minY - 1); row <= lastRow; row++) {
+            int last = row * columns + lastColumn;
+            for (int cell = nextAlive(row * columns + firstColumn, last); cell >= 0;
+                 cell = nextAlive(cell + 1, last)) {
+                int x = getCellX(cell);
+                int y = getCellY(cell);
+                d.setColor(getColor(cell));
+                d.fillRectangle(x, y, cellWidth, cellHeight);
+                d.setColor(Color.BLACK);
+                d.drawRectangle(x, y, cellWidth, cellHeight);
+            }
+        }
+    }
+
+    @Override
+    public boolean addBounds(DirtyRegions regions) {
+        regions.add(left, top, columns * cellWidth, rows * cellHeight);
+        return true;
+    }
+
+    /**
+     * The grid is drawn into the static layer and reports the cells that changed since the last call,
+     * or the whole grid the first time.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
+
+    @Override
+    public boolean addDamage(DirtyRegions regions) {
+        if (!damageReported) {
+            damageReported = true;
+            addBounds(regions);
+        } else {
+            regions.addAll(changedCells);
+        }
+        changedCells.clear();
+        return true;
+    }
+
+    @Override
+    public void timePassed() {
+        // The bricks only change when they are hit.
+    }
+
+    /**
+     * Adds the grid to the game as both a collidable and a sprite. Use {@link Game#addBlockGrid(BlockGrid)}
+     * to also count its bricks as blocks to clear.
+     *
+     * @param g the game to add the grid to
+     */
+    public void addToGame(Game g) {
+        g.addSprite(this);
+        this.handle = g.addCollidable(this);
+        this.hitEvents = g.getHitEvents();
+        this.game = g;
+    }
+
+    /**
+     * Removes the grid from the game as both a collidable and a sprite.
+     *
+     * @param g the game to remove the grid from
+     */
+    public void removeFromGame(Game g) {
+        g.removeCollidable(this.handle);
+        g.removeSprite(this);
+        this.game = null;
+    }
+
+    /**
+     * The stand-in for one cell that a hit listener gets while a hit on the cell is delivered.
+     */
+    private static final class CellBlock extends Block {
+        private final BlockGrid grid;
+        private int cell;
+
+        private CellBlock(BlockGrid grid) {
+            super(new Point(0, 0), grid.cellWidth, grid.cellHeight, null, false);
+            this.grid = grid;
+        }
+
+        @Override
+        public Color getColor() {
+            return grid.getColor(cell);
+        }
+
+        @Override
+        public boolean isInGame() {
+            return grid.isAlive(cell);
+        }
+
+        @Override
+        public void removeFromGame(Game g) {
+            grid.removeCell(cell);
+        }
+
+        @Override
+        public int getHitGroup() {
+            return grid.hitGroup;
+        }
+
+        /**
+         * Notifies the grid's own listeners and then lends the stand-in out again.
+         *
+         * @param hitter the ball that hit the cell
+         */
+        @Override
+        public void fireHit(Ball hitter) {
+            for (HitListener hl : grid.hitListeners) {
+                hl.hitEvent(this, hitter);
+            }
+            grid.release(this);
+        }
+
+        /**
+         * Lends the stand-in out again without notifying anybody, since the brick was already removed.
+         *
+         * @param hitter the ball that hit the cell
+         */
+        @Override
+        public void dropHit(Ball hitter) {
+            grid.release(this);
+        }
+    }
+}
@@ -26,7 +26,7 @@ public class BlockRemover implements HitListener {
     }
 
     /**
-     * Called when a block is hit. If the block is not a designated bottom block,
+     * Called when a block is hit. If the block is not a designated bottom block and is still in the game,
      * it is removed from the game and the remaining block count is decremented.
      *
      * @param beingHit the block that was hit
@@ -34,10 +34,8 @@ public class BlockRemover implements HitListener {
      */
     @Override
     public void hitEvent(Block beingHit, Ball hitter) {
-        if (!beingHit.isBottomBlock()) {
-            beingHit.removeHitListener(this);
-            game.removeCollidable(beingHit);
-            game.removeSprite(beingHit);
+        if (!beingHit.isBottomBlock() && beingHit.isInGame()) {
+            beingHit.removeFromGame(game);
             remainingBlocks.decrease(1);
         }
     }
@@ -0,0 +1,181 @@
+package sprites;
+
+/**
+ * The {@code DirtyRegions} class collects the areas of the screen that have to be redrawn.
+ * An area is given like the arguments of {@code DrawSurface.drawRectangle}: it covers the pixels from
+ * {@code x} to {@code x + width} and from {@code y} to {@code y + height}, both ends included.
+ * Overlapping or touching areas are merged, and the number of separate areas is kept small,
+ * so a renderer can afford to redraw every area on its own.
+ */
+public class DirtyRegions {
+    private static final int MAX_REGIONS = 16;
+
+    // Every region covers minX <= x < maxX and minY <= y < maxY.
+    private final int[] minX = new int[MAX_REGIONS];
+    private final int[] minY = new int[MAX_REGIONS];
+    private final int[] maxX = new int[MAX_REGIONS];
+    private final int[] maxY = new int[MAX_REGIONS];
+    private int count;
+
+    /**
+     * Adds an area, merging it with every region it overlaps or touches.
+     * When there are already too many regions, it is merged with the region that grows the least.
+     *
+     * @param x      the x-coordinate of the upper-left corner of the area
+     * @param y      the y-coordinate of the upper-left corner of the area
+     * @param width  the width of the area
+     * @param height the height of the area
+     */
+    public void add(int x, int y, int width, int height) {
+        if (width < 0 || height < 0) {
+            return;
+        }
+        addBox(x, y, x + width + 1, y + height + 1);
+    }
+
+    /**
+     * Adds every region of another collection.
+     *
+     * @param other the regions to add
+     */
+    public void addAll(DirtyRegions other) {
+        for (int i = 0; i < other.count; i++) {
+            addBox(other.minX[i], other.minY[i], other.maxX[i], other.maxY[i]);
+        }
+    }
+
+    private void addBox(int x0, int y0, int x1, int y1) {
+        int i = 0;
+        while (i < count) {
+            if (x0 <= maxX[i] && minX[i] <= x1 && y0 <= maxY[i] && minY[i] <= y1) {
+                x0 = Math.min(x0, minX[i]);
+                y0 = Math.min(y0, minY[i]);
+                x1 = Math.max(x1, maxX[i]);
+                y1 = Math.max(y1, maxY[i]);
+                removeAt(i);
+                // The grown area may now touch regions that were already checked.
+                i = 0;
+            } else if (i == count - 1 && count == MAX_REGIONS) {
+                int nearest = nearestRegion(x0, y0, x1, y1);
+                x0 = Math.min(x0, minX[nearest]);
+                y0 = Math.min(y0, minY[nearest]);
+                x1 = Math.max(x1, maxX[nearest]);
+                y1 = Math.max(y1, maxY[nearest]);
+                removeAt(nearest);
+                i = 0;
+            } else {
+                i++;
+            }
+        }
+        minX[count] = x0;
+        minY[count] = y0;
+        maxX[count] = x1;
+        maxY[count] = y1;
+        count++;
+    }
+
+    private int nearestRegion(int x0, int y0, int x1, int y1) {
+        int nearest = 0;
+        long leastGrowth = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            long union = (long) (Math.max(x1, maxX[i]) - Math.min(x0, minX[i]))
+                    * (Math.max(y1, maxY[i]) - Math.min(y0, minY[i]));
+            long growth = union - (long) (maxX[i] - minX[i]) * (maxY[i] - minY[i]);
+            if (growth < leastGrowth) {
+                leastGrowth = growth;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    private void removeAt(int i) {
+        count--;
+        minX[i] = minX[count];
+        minY[i] = minY[count];
+        maxX[i] = maxX[count];
+        maxY[i] = maxY[count];
+    }
+
+    /**
+     * Removes every region.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Returns the number of separate regions.
+     *
+     * @return the region count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Checks whether there are no regions at all.
+     *
+     * @return true if nothing has to be redrawn
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Returns the x-coordinate of the left edge of a region.
+     *
+     * @param i the index of the region, between 0 and {@link #size()}
+     * @return the first column covered by the region
+     */
+    public int getX(int i) {
+        return minX[i];
+    }
+
+    /**
+     * Returns the y-coordinate of the top edge of a region.
+     *
+     * @param i the index of the region, between 0 and {@link #size()}
+     * @return the first row covered by the region
+     */
+    public int getY(int i) {
+        return minY[i];
+    }
+
+    /**
+     * Returns the width of a region in pixels.
+     *
+     * @param i the index of the region, between 0 and {@link #size()}
+     * @return the number of columns covered by the region
+     */
+    public int getWidth(int i) {
+        return maxX[i] - minX[i];
+    }
+
+    /**
+     * Returns the height of a region in pixels.
+     *
+     * @param i the index of the region, between 0 and {@link #size()}
+     * @return the number of rows covered by the region
+     */
+    public int getHeight(int i) {
+        return maxY[i] - minY[i];
+    }
+
+    /**
+     * Checks whether any region overlaps the pixels covered by a region of another collection.
+     *
+     * @param other the other collection
+     * @param j     the index of the region in the other collection
+     * @return true if they share at least one pixel
+     */
+    public boolean intersects(DirtyRegions other, int j) {
+        for (int i = 0; i < count; i++) {
+            if (minX[i] < other.maxX[j] && other.minX[j] < maxX[i]
+                    && minY[i] < other.maxY[j] && other.minY[j] < maxY[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
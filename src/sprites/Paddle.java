@@ -21,6 +21,11 @@ public class Paddle extends Rectangle implements Sprite, Collidable {
     private final KeyboardSensor keyboard;
     private final int speed = 9;
     private final int screenWidth = 800;
+    // Where the paddle was before the last update, for drawing between two updates.
+    private double previousX = Double.NaN;
+    // Where the paddle was when its damage was last reported, see addDamage.
+    private boolean damageReported = false;
+    private int reportedX;
 
     /**
      * Constructs a Paddle object.
@@ -32,7 +37,8 @@ public class Paddle extends Rectangle implements Sprite, Collidable {
      * @param isBorder indicate for the constructor
      */
     public Paddle(Point upperLeft, int width, int height, KeyboardSensor keyboard, boolean isBorder) {
-        super(upperLeft, width, height, isBorder);
+        // The paddle moves its corner point in place, so it keeps its own copy.
+        super(new Point(upperLeft.getX(), upperLeft.getY()), width, height, isBorder);
         this.keyboard = keyboard;
     }
 
@@ -43,9 +49,9 @@ public class Paddle extends Rectangle implements Sprite, Collidable {
         double newX = this.getUpperLeft().getX() - speed;
         if (newX + this.getWidth() < 0) {
             newX = this.screenWidth;
+            this.previousX = newX;
         }
-        Point newUpperLeft = new Point(newX, this.getUpperLeft().getY());
-        this.setRect(newUpperLeft, this.getWidth(), this.getHeight());
+        this.moveTo(newX, this.getUpperLeft().getY());
     }
 
     /**
@@ -55,9 +61,9 @@ public class Paddle extends Rectangle implements Sprite, Collidable {
         double newX = this.getUpperLeft().getX() + speed;
         if (newX > this.screenWidth) {
             newX = -this.getWidth();
+            this.previousX = newX;
         }
-        Point newUpperLeft = new Point(newX, this.getUpperLeft().getY());
-        this.setRect(newUpperLeft, this.getWidth(), this.getHeight());
+        this.moveTo(newX, this.getUpperLeft().getY());
     }
 
     /**
@@ -66,6 +72,7 @@ public class Paddle extends Rectangle implements Sprite, Collidable {
      */
     @Override
     public void timePassed() {
+        this.previousX = this.getUpperLeft().getX();
         if (keyboard.isPressed(KeyboardSensor.LEFT_KEY)) {
             moveLeft();
         }
@@ -74,6 +81,16 @@ public class Paddle extends Rectangle implements Sprite, Collidable {
         }
     }
 
+    /**
+     * Returns the x-coordinate of the paddle's left edge before the last update. When the paddle
+     * wrapped around the screen in the last update, this is its current position.
+     *
+     * @return the previous x-coordinate
+     */
+    public double getPreviousX() {
+        return Double.isNaN(this.previousX) ? this.getUpperLeft().getX() : this.previousX;
+    }
+
     /**
      * Draws the paddle on the given DrawSurface.
      *
@@ -89,60 +106,97 @@ public class Paddle extends Rectangle implements Sprite, Collidable {
         d.fillRectangle(x, y, width, height);
     }
 
+    @Override
+    public boolean addBounds(DirtyRegions regions) {
+        regions.add((int) this.getUpperLeft().getX(), (int) this.getUpperLeft().getY(),
+                (int) this.getWidth(), (int) this.getHeight());
+        return true;
+    }
+
+    @Override
+    public boolean addDamage(DirtyRegions regions) {
+        int x = (int) this.getUpperLeft().getX();
+        if (this.damageReported && x == this.reportedX) {
+            return true;
+        }
+        int y = (int) this.getUpperLeft().getY();
+        if (this.damageReported) {
+            regions.add(this.reportedX, y, (int) this.getWidth(), (int) this.getHeight());
+        }
+        addBounds(regions);
+        this.damageReported = true;
+        this.reportedX = x;
+        return true;
+    }
+
     /**
-     * Returns the rectangle that represents the paddle for collision detection.
+     * Returns the rectangle that represents the paddle for collision detection, which is the paddle itself.
      *
      * @return The collision rectangle of the paddle.
      */
     @Override
     public Rectangle getCollisionRectangle() {
-        return new Rectangle(this.getUpperLeft(), this.getWidth(), this.getHeight(), this.isBlock());
+        return this;
     }
 
     /**
      * Calculates the new velocity after the ball hits the paddle.
-     * The velocity change depends on the area of the paddle
-     * that the ball hits. The paddle is divided into five regions,
-     * and the angle of the ball's velocity is altered based
-     * on the region of impact.
      *
+     * @param hitter the ball that hit the paddle
      * @param collisionPoint The point at which the ball collides with the paddle.
      * @param currentVelocity The current velocity of the ball before the collision.
      * @return The new velocity of the ball after the collision.
+     * @see #hit(Ball, double, double, Velocity)
      */
     @Override
     public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
-        double speed = currentVelocity.getSpeed();
-        Rectangle rect = getCollisionRectangle();
+        Velocity velocity = new Velocity(currentVelocity.getDx(), currentVelocity.getDy());
+        hit(hitter, collisionPoint.getX(), collisionPoint.getY(), velocity);
+        return velocity;
+    }
+
+    /**
+     * Changes the velocity of a ball that hits the paddle. The velocity change depends on the area
+     * of the paddle that the ball hits. The paddle is divided into five regions,
+     * and the angle of the ball's velocity is altered based on the region of impact.
+     *
+     * @param hitter the ball that hit the paddle
+     * @param collisionX the x-coordinate of the point at which the ball collides with the paddle
+     * @param collisionY the y-coordinate of the point at which the ball collides with the paddle
+     * @param velocity the ball's velocity, changed to the velocity after the collision
+     */
+    @Override
+    public void hit(Ball hitter, double collisionX, double collisionY, Velocity velocity) {
+        double speed = velocity.getSpeed();
+        double dx = velocity.getDx();
+        double dy = velocity.getDy();
         double epsilon = 0.1;
-        if (Tools.doubleEquals(collisionPoint.getY(), rect.getUpperLeft().getY(), epsilon)) {
-            double paddleStart = rect.getUpperLeft().getX();
-            double relativeHitPoint = collisionPoint.getX() - paddleStart;
-            double regionSize = rect.getWidth() / 5;
+        double left = this.getUpperLeft().getX();
+        double top = this.getUpperLeft().getY();
+        if (Tools.doubleEquals(collisionY, top, epsilon)) {
+            double relativeHitPoint = collisionX - left;
+            double regionSize = this.getWidth() / 5;
             int region = (int) (relativeHitPoint / regionSize);
             region = Math.max(0, Math.min(4, region));
-            return switch (region) {
-                case 0 -> Velocity.fromAngleAndSpeed(210, speed);
-                case 1 -> Velocity.fromAngleAndSpeed(240, speed);
-                case 2 -> new Velocity(currentVelocity.getDx(), -currentVelocity.getDy());
-                case 3 -> Velocity.fromAngleAndSpeed(300, speed);
-                case 4 -> Velocity.fromAngleAndSpeed(330, speed);
-                default -> Velocity.fromAngleAndSpeed(currentVelocity.getDx(), currentVelocity.getDy());
-            };
+            switch (region) {
+                case 0 -> velocity.setFromAngleAndSpeed(210, speed);
+                case 1 -> velocity.setFromAngleAndSpeed(240, speed);
+                case 2 -> velocity.set(dx, -dy);
+                case 3 -> velocity.setFromAngleAndSpeed(300, speed);
+                default -> velocity.setFromAngleAndSpeed(330, speed);
+            }
+            return;
         }
-        if (Tools.doubleEquals(collisionPoint.getY(), rect.getUpperLeft().getY() + rect.getHeight(), epsilon)) {
-            return new Velocity(currentVelocity.getDx(), -currentVelocity.getDy());
+        if (Tools.doubleEquals(collisionY, top + this.getHeight(), epsilon)) {
+            velocity.set(dx, -dy);
+        } else if (Tools.doubleEquals(collisionX, left, epsilon)
+                || Tools.doubleEquals(collisionX, left + this.getWidth(), epsilon)) {
+            velocity.set(-dx, dy);
+        } else {
+            velocity.set(dx, -Math.abs(dy));
         }
-        if (Tools.doubleEquals(collisionPoint.getX(), rect.getUpperLeft().getX(), epsilon)) {
-            return new Velocity(-currentVelocity.getDx(), currentVelocity.getDy());
-        }
-        if (Tools.doubleEquals(collisionPoint.getX(), rect.getUpperLeft().getX() + rect.getWidth(), epsilon)) {
-            return new Velocity(-currentVelocity.getDx(), currentVelocity.getDy());
-        }
-        return new Velocity(currentVelocity.getDx(), -Math.abs(currentVelocity.getDy()));
     }
 
-
     /**
      * Adds this paddle to the game, registering it as both a collidable and a sprite.
      *
@@ -0,0 +1,32 @@
+package sprites;
+
+/**
+ * The {@code PlannedSprite} interface is implemented by sprites whose update can be split in two phases.
+ * The planning phase only reads the game environment, so the plans of many sprites can be computed
+ * at the same time on several threads. The apply phase changes the game (for example by hitting blocks)
+ * and is always run on one thread, one sprite after another in a fixed order.
+ * If the environment changed since a sprite planned in a way that affects its plan, the sprite plans
+ * again while applying, so the result is the same as updating every sprite one after another.
+ */
+public interface PlannedSprite extends Sprite {
+
+    /**
+     * Computes the sprite's update for this frame without changing anything outside the sprite's plan.
+     * May run concurrently with the planning of other sprites.
+     */
+    void planTimePassed();
+
+    /**
+     * Applies the update computed by {@link #planTimePassed()}, planning again first if the plan is stale.
+     */
+    void applyTimePassed();
+
+    /**
+     * Updates the sprite by planning and applying right away.
+     */
+    @Override
+    default void timePassed() {
+        planTimePassed();
+        applyTimePassed();
+    }
+}
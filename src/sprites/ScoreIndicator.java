@@ -13,6 +13,8 @@ import java.awt.Color;
 public class ScoreIndicator extends Block implements Sprite {
     private Counter score;
     private Color color;
+    // The score shown when the damage was last reported, see addDamage.
+    private int reportedScore = -1;
 
     /**
      * Constructs a {@code ScoreIndicator} at the specified position, with given dimensions and color.
@@ -52,6 +54,42 @@ public class ScoreIndicator extends Block implements Sprite {
         d.drawText(400, 20, "Score: " + this.score.getValue(), 18);
     }
 
+    /**
+     * Returns the background color of the indicator.
+     *
+     * @return the color the indicator is filled with
+     */
+    @Override
+    public Color getColor() {
+        return this.color;
+    }
+
+    /**
+     * The indicator shows a changing score, so unlike other blocks it is not static.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isStatic() {
+        return false;
+    }
+
+    /**
+     * Adds the indicator's area whenever the shown score changed since the last call.
+     *
+     * @param regions the regions to add the changed areas to
+     * @return true
+     */
+    @Override
+    public boolean addDamage(DirtyRegions regions) {
+        int value = this.score == null ? -1 : this.score.getValue();
+        if (value != this.reportedScore) {
+            this.reportedScore = value;
+            addBounds(regions);
+        }
+        return true;
+    }
+
     /**
      * Called every frame to update the state of the score indicator.
      * This implementation does nothing.
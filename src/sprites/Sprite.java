@@ -16,10 +16,57 @@ public interface Sprite {
      */
     void drawOn(DrawSurface d);
 
+    /**
+     * Draws the part of the sprite inside one region of the screen, for a renderer that only redraws
+     * the regions that changed. Sprites that are cheap to draw whole draw everything, which is the default.
+     *
+     * @param d       the surface to draw on
+     * @param regions the regions being redrawn
+     * @param region  the index of the region to draw
+     */
+    default void drawOn(DrawSurface d, DirtyRegions regions, int region) {
+        drawOn(d);
+    }
+
     /**
      * Notifies the sprite that time has passed.
      * This method can be used to update the sprite's state over time,
      * such as moving, animating, or checking for collisions.
      */
     void timePassed();
+
+    /**
+     * Adds the area of the screen the sprite covers when it is drawn now.
+     * Sprites that do not know their area return false and are drawn with every redrawn area.
+     *
+     * @param regions the regions to add the area to
+     * @return true if the area was added, false if the sprite cannot tell
+     */
+    default boolean addBounds(DirtyRegions regions) {
+        return false;
+    }
+
+    /**
+     * Adds the areas of the screen whose look changed because of this sprite since the last call:
+     * where it was and where it is now if it moved or changed. The first call adds the whole sprite.
+     * Sprites that cannot track their changes return false, and the whole screen is redrawn instead.
+     *
+     * @param regions the regions to add the changed areas to
+     * @return true if the changes were added, false if the sprite cannot tell
+     */
+    default boolean addDamage(DirtyRegions regions) {
+        return false;
+    }
+
+    /**
+     * Checks whether the sprite never moves or changes its look while it is in the game,
+     * so it can be drawn once into a cached layer instead of every frame. A static sprite is only asked
+     * for its damage when it is added or removed, or after it reports a change with
+     * {@link game.Game#recordSpriteChange(Sprite)}.
+     *
+     * @return true if the sprite is static
+     */
+    default boolean isStatic() {
+        return false;
+    }
 }
@@ -2,35 +2,224 @@ package sprites;
 
 import biuoop.DrawSurface;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * The {@code SpriteCollection} class is responsible for managing a collection of sprites in the game.
  * It provides methods to add sprites to the collection, notify all sprites of time passing,
  * and draw all the sprites onto a {@code DrawSurface}.
+ * Sprites are kept in a dense array. Adding and removing sprites is queued and applied before and after
+ * every update and before every draw, so sprites and listeners may add or remove sprites while the
+ * collection is being updated. A removed sprite's slot is filled with the last sprite, which makes
+ * removal O(1) but means the order of the sprites may change when one is removed.
+ * With a fork/join pool set, every run of consecutive {@link PlannedSprite}s is planned in parallel
+ * and then applied in order, which gives the same result as updating the sprites one by one.
+ * For drawing, the static sprites are kept apart from the others: their areas are indexed in a uniform grid,
+ * so a redrawn region only visits the static sprites it overlaps, and they are only asked for their damage
+ * when they are added or removed or report a change through {@link #recordChange(Sprite)}. The cost of a
+ * frame then depends on the moving sprites and the redrawn areas, not on the number of blocks.
  */
 public class SpriteCollection {
-    private List<Sprite> sprites = new LinkedList<>();
+    // Number of sprites planned by one task when planning in parallel.
+    private static final int PLAN_CHUNK = 16;
+    // Static sprites are indexed in square cells of 64 pixels.
+    private static final int CELL_SHIFT = 6;
+
+    private Sprite[] sprites = new Sprite[16];
+    private int count;
+    private final Map<Sprite, Slot> slots = new IdentityHashMap<>();
+    // Queued additions (true) and removals (false), applied in the order they were requested.
+    private Sprite[] pending = new Sprite[16];
+    private boolean[] pendingAdd = new boolean[16];
+    private int pendingCount;
+    private ForkJoinPool pool;
+    // Areas left behind by removed sprites, reported with the next damage.
+    private final DirtyRegions removedAreas = new DirtyRegions();
+    private boolean removedUntracked;
+    // Areas of static sprites that were added or removed, reported with the next static damage.
+    private final DirtyRegions staticChanges = new DirtyRegions();
+    private final DirtyRegions scratchBounds = new DirtyRegions();
+    private final DirtyRegions redrawn = new DirtyRegions();
+    // The sprites that are not static, the only ones asked for their bounds and damage every frame.
+    private Slot[] dynamic = new Slot[16];
+    private int dynamicCount;
+    private final StaticIndex staticIndex = new StaticIndex();
+    // Static sprites that cannot tell their area, which every region visits.
+    private Slot[] unbounded = new Slot[4];
+    private int unboundedCount;
+    // Static sprites that reported a change since the static damage was last collected.
+    private Slot[] changed = new Slot[16];
+    private int changedCount;
+    // The positions of the sprites a region visits, sorted into drawing order before drawing.
+    private int[] visited = new int[16];
+    private int visitedCount;
 
     /**
      * Adds a sprite to the collection.
      * If the sprite is not null, it will be added to the list of sprites.
+     * The sprite is updated and drawn from the next time the queued changes are applied.
+     * A sprite that is already in the collection is not added twice.
      *
      * @param s The sprite to add to the collection.
      */
     public void addSprite(Sprite s) {
         if (s != null) {
-            sprites.add(s);
+            enqueue(s, true);
         }
     }
     /**
      * Removes a sprite from the collection.
+     * The sprite stops being updated and drawn once the queued changes are applied.
      * @param s The sprite to remove from the collection.
      */
     public void removeSprite(Sprite s) {
-        sprites.remove(s);
+        if (s != null) {
+            enqueue(s, false);
+        }
+    }
+
+    /**
+     * Makes room for more sprites, so adding many of them at once does not grow the storage step by step.
+     *
+     * @param additional the number of sprites about to be added
+     */
+    public void ensureCapacity(int additional) {
+        if (pendingCount + additional > pending.length) {
+            pending = Arrays.copyOf(pending, pendingCount + additional);
+            pendingAdd = Arrays.copyOf(pendingAdd, pendingCount + additional);
+        }
+        if (count + additional > sprites.length) {
+            sprites = Arrays.copyOf(sprites, count + additional);
+        }
+    }
+
+    private void enqueue(Sprite s, boolean add) {
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+            pendingAdd = Arrays.copyOf(pendingAdd, pendingCount * 2);
+        }
+        pending[pendingCount] = s;
+        pendingAdd[pendingCount] = add;
+        pendingCount++;
+    }
+
+    /**
+     * Applies the queued additions and removals.
+     */
+    private void applyPendingChanges() {
+        for (int i = 0; i < pendingCount; i++) {
+            Sprite s = pending[i];
+            if (pendingAdd[i]) {
+                insert(s);
+            } else {
+                delete(s);
+            }
+            pending[i] = null;
+        }
+        pendingCount = 0;
+    }
+
+    private void insert(Sprite s) {
+        if (slots.containsKey(s)) {
+            return;
+        }
+        if (count == sprites.length) {
+            sprites = Arrays.copyOf(sprites, count * 2);
+        }
+        Slot slot = new Slot(count);
+        if (s.isStatic()) {
+            s.addBounds(staticChanges);
+            // The whole sprite was just reported, so whatever it held back as damage is already covered.
+            scratchBounds.clear();
+            s.addDamage(scratchBounds);
+            scratchBounds.clear();
+            if (s.addBounds(scratchBounds) && !scratchBounds.isEmpty()) {
+                slot.setBounds(scratchBounds);
+                staticIndex.insert(slot);
+            } else {
+                slot.listIndex = unboundedCount;
+                unbounded = append(unbounded, unboundedCount++, slot);
+            }
+        } else {
+            slot.listIndex = dynamicCount;
+            dynamic = append(dynamic, dynamicCount++, slot);
+        }
+        sprites[count] = s;
+        slots.put(s, slot);
+        count++;
+    }
+
+    private static Slot[] append(Slot[] list, int size, Slot slot) {
+        Slot[] grown = size == list.length ? Arrays.copyOf(list, size * 2) : list;
+        grown[size] = slot;
+        return grown;
+    }
+
+    private void delete(Sprite s) {
+        Slot slot = slots.remove(s);
+        if (slot == null) {
+            return;
+        }
+        if (s.isStatic()) {
+            s.addBounds(staticChanges);
+        }
+        // Covers where the sprite was last reported as well as where it is now.
+        if (!s.addDamage(removedAreas) || !s.addBounds(removedAreas)) {
+            removedUntracked = true;
+        }
+        if (slot.isIndexed()) {
+            staticIndex.remove(slot);
+        } else if (s.isStatic()) {
+            unbounded[slot.listIndex] = unbounded[--unboundedCount];
+            unbounded[slot.listIndex].listIndex = slot.listIndex;
+            unbounded[unboundedCount] = null;
+        } else {
+            dynamic[slot.listIndex] = dynamic[--dynamicCount];
+            dynamic[slot.listIndex].listIndex = slot.listIndex;
+            dynamic[dynamicCount] = null;
+        }
+        Sprite last = sprites[--count];
+        sprites[count] = null;
+        if (last != s) {
+            sprites[slot.index] = last;
+            slots.get(last).index = slot.index;
+        }
+        slot.index = -1;
+    }
+
+    /**
+     * Returns the number of sprites in the collection, after applying the queued changes.
+     *
+     * @return the sprite count
+     */
+    public int size() {
+        applyPendingChanges();
+        return count;
+    }
+
+    /**
+     * Returns the sprite at the given position in the drawing order.
+     *
+     * @param i the position, between 0 and {@link #size()}
+     * @return the sprite
+     */
+    public Sprite get(int i) {
+        return sprites[i];
+    }
+
+    /**
+     * Sets the pool used to plan sprites in parallel.
+     * Collidables that are not blocks (such as the paddle) must not move while planned sprites are updated,
+     * which holds as long as they come before the planned sprites in the collection.
+     *
+     * @param pool the pool to plan in, or {@code null} to update every sprite on the calling thread
+     */
+    public void setParallelism(ForkJoinPool pool) {
+        this.pool = pool;
     }
 
     /**
@@ -39,10 +228,33 @@ public class SpriteCollection {
      * such as for movement, animation, or game logic updates.
      */
     public void notifyAllTimePassed() {
-        List<Sprite> copy = new ArrayList<>(this.sprites);
-        for (Sprite sprite : copy) {
-            sprite.timePassed();
+        applyPendingChanges();
+        // Sprites added during the update only start moving next frame.
+        int updated = count;
+        if (pool == null) {
+            for (int i = 0; i < updated; i++) {
+                sprites[i].timePassed();
+            }
+        } else {
+            int i = 0;
+            while (i < updated) {
+                if (!(sprites[i] instanceof PlannedSprite)) {
+                    sprites[i].timePassed();
+                    i++;
+                    continue;
+                }
+                int end = i + 1;
+                while (end < updated && sprites[end] instanceof PlannedSprite) {
+                    end++;
+                }
+                pool.invoke(new PlanRange(sprites, i, end));
+                for (int k = i; k < end; k++) {
+                    ((PlannedSprite) sprites[k]).applyTimePassed();
+                }
+                i = end;
+            }
         }
+        applyPendingChanges();
     }
 
     /**
@@ -53,8 +265,349 @@ public class SpriteCollection {
      * @param d The {@code DrawSurface} to draw all sprites on.
      */
     public void drawAllOn(DrawSurface d) {
-        for (Sprite s : sprites) {
-            s.drawOn(d);
+        applyPendingChanges();
+        for (int i = 0; i < count; i++) {
+            sprites[i].drawOn(d);
+        }
+    }
+
+    /**
+     * Tells the collection that a static sprite changed its look, such as a {@link BlockGrid} that lost a brick.
+     * Static sprites are not asked for their damage every frame, so the sprite's damage is only collected
+     * with the next static damage after this call. Sprites that are not in the collection are ignored.
+     *
+     * @param s the sprite that changed
+     */
+    public void recordChange(Sprite s) {
+        Slot slot = slots.get(s);
+        if (slot != null && !slot.changed && s.isStatic()) {
+            slot.changed = true;
+            changed = append(changed, changedCount++, slot);
+        }
+    }
+
+    /**
+     * Adds the areas of the screen that changed since the last call because of the sprites that are not static,
+     * and the areas of removed sprites. Static sprites report their changes through
+     * {@link #addStaticDamage(DirtyRegions)}.
+     *
+     * @param damage the regions to add the changed areas to
+     * @return true if every change is known, false if the whole screen has to be redrawn
+     */
+    public boolean addDamage(DirtyRegions damage) {
+        applyPendingChanges();
+        boolean tracked = !removedUntracked;
+        damage.addAll(removedAreas);
+        removedAreas.clear();
+        removedUntracked = false;
+        for (int i = 0; i < dynamicCount; i++) {
+            if (!sprites[dynamic[i].index].addDamage(damage)) {
+                tracked = false;
+            }
+        }
+        return tracked;
+    }
+
+    /**
+     * Adds the areas of static sprites that were added to or removed from the collection since the last call,
+     * and the areas static sprites reported as changed through {@link #recordChange(Sprite)}, such as the
+     * cleared cells of a {@link BlockGrid}. A cached layer of the static sprites only has to be redrawn in
+     * those areas.
+     *
+     * @param damage the regions to add the changed areas to
+     */
+    public void addStaticDamage(DirtyRegions damage) {
+        applyPendingChanges();
+        for (int i = 0; i < changedCount; i++) {
+            Slot slot = changed[i];
+            slot.changed = false;
+            if (slot.index >= 0) {
+                sprites[slot.index].addDamage(staticChanges);
+            }
+            changed[i] = null;
+        }
+        changedCount = 0;
+        damage.addAll(staticChanges);
+        staticChanges.clear();
+    }
+
+    /**
+     * Draws the static sprites that overlap one region onto the given {@code DrawSurface}, in the usual order.
+     *
+     * @param d       the surface to draw on
+     * @param regions the regions being redrawn
+     * @param region  the index of the region to draw
+     * @return the number of sprites drawn
+     */
+    public int drawStaticOn(DrawSurface d, DirtyRegions regions, int region) {
+        applyPendingChanges();
+        visitedCount = 0;
+        visitStatic(regions, region);
+        Arrays.sort(visited, 0, visitedCount);
+        int drawn = 0;
+        for (int v = 0; v < visitedCount; v++) {
+            Sprite sprite = sprites[visited[v]];
+            scratchBounds.clear();
+            if (!sprite.addBounds(scratchBounds) || scratchBounds.intersects(regions, region)) {
+                sprite.drawOn(d, regions, region);
+                drawn++;
+            }
+        }
+        return drawn;
+    }
+
+    /**
+     * Draws one region onto a {@code DrawSurface} that already shows the static sprites.
+     * The other sprites that overlap the region are drawn in the usual order. A static sprite is drawn
+     * again when it overlaps something drawn before it, so sprites still cover each other in the usual order.
+     * Sprites that cannot tell their area are always drawn.
+     *
+     * @param d       the surface to draw on
+     * @param regions the regions being redrawn
+     * @param region  the index of the region to draw
+     * @return the number of sprites drawn
+     */
+    public int drawOverStaticOn(DrawSurface d, DirtyRegions regions, int region) {
+        applyPendingChanges();
+        visitedCount = 0;
+        for (int i = 0; i < dynamicCount; i++) {
+            scratchBounds.clear();
+            if (!sprites[dynamic[i].index].addBounds(scratchBounds) || scratchBounds.intersects(regions, region)) {
+                visit(dynamic[i]);
+            }
+        }
+        // The layer already shows the static sprites; they are only drawn again over something drawn before them.
+        if (visitedCount > 0) {
+            visitStatic(regions, region);
+        }
+        Arrays.sort(visited, 0, visitedCount);
+        redrawn.clear();
+        boolean redrawnUnknown = false;
+        int drawn = 0;
+        for (int v = 0; v < visitedCount; v++) {
+            Sprite sprite = sprites[visited[v]];
+            scratchBounds.clear();
+            boolean known = sprite.addBounds(scratchBounds);
+            if (known && !scratchBounds.intersects(regions, region)) {
+                continue;
+            }
+            if (sprite.isStatic() && known && !redrawnUnknown && !redrawn.intersects(scratchBounds, 0)) {
+                continue;
+            }
+            sprite.drawOn(d, regions, region);
+            drawn++;
+            if (known) {
+                redrawn.addAll(scratchBounds);
+            } else {
+                redrawnUnknown = true;
+            }
+        }
+        return drawn;
+    }
+
+    private void visit(Slot slot) {
+        if (visitedCount == visited.length) {
+            visited = Arrays.copyOf(visited, visitedCount * 2);
+        }
+        visited[visitedCount++] = slot.index;
+    }
+
+    // Visits the static sprites whose area overlaps a region, and those that cannot tell their area.
+    private void visitStatic(DirtyRegions regions, int region) {
+        int x = regions.getX(region);
+        int y = regions.getY(region);
+        staticIndex.visit(x, y, x + regions.getWidth(region), y + regions.getHeight(region));
+        for (int i = 0; i < unboundedCount; i++) {
+            visit(unbounded[i]);
+        }
+    }
+
+    /**
+     * Plans a range of planned sprites, splitting it in halves until the pieces are small enough.
+     */
+    private static final class PlanRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Sprite[] sprites;
+        private final int from;
+        private final int to;
+
+        private PlanRange(Sprite[] sprites, int from, int to) {
+            this.sprites = sprites;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PLAN_CHUNK) {
+                for (int i = from; i < to; i++) {
+                    ((PlannedSprite) sprites[i]).planTimePassed();
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new PlanRange(sprites, from, middle), new PlanRange(sprites, middle, to));
+        }
+    }
+
+    /**
+     * The position of a sprite in the array, updated when another sprite is moved into a freed slot,
+     * or -1 once the sprite was removed. A static sprite with a known area also keeps that area,
+     * which is where it is indexed.
+     */
+    private static final class Slot {
+        private int index;
+        // The position in the list of dynamic or unbounded sprites, when the sprite is in one.
+        private int listIndex = -1;
+        private boolean changed;
+        // The area, covering minX <= x < maxX and minY <= y < maxY, when the sprite is indexed.
+        private int minX;
+        private int minY;
+        private int maxX;
+        private int maxY;
+        private boolean indexed;
+        // The last visit that reached this sprite, so a sprite in several cells is visited once.
+        private long visit;
+
+        private Slot(int index) {
+            this.index = index;
+        }
+
+        private void setBounds(DirtyRegions bounds) {
+            minX = Integer.MAX_VALUE;
+            minY = Integer.MAX_VALUE;
+            maxX = Integer.MIN_VALUE;
+            maxY = Integer.MIN_VALUE;
+            for (int i = 0; i < bounds.size(); i++) {
+                minX = Math.min(minX, bounds.getX(i));
+                minY = Math.min(minY, bounds.getY(i));
+                maxX = Math.max(maxX, bounds.getX(i) + bounds.getWidth(i));
+                maxY = Math.max(maxY, bounds.getY(i) + bounds.getHeight(i));
+            }
+            indexed = true;
+        }
+
+        private boolean isIndexed() {
+            return indexed;
+        }
+    }
+
+    /**
+     * The static sprites with a known area, in a uniform grid of square cells like the blocks of the game
+     * environment. The cells are kept in an open-addressing table keyed by the packed cell coordinates,
+     * so only the cells that hold a sprite exist.
+     */
+    private final class StaticIndex {
+        private long[] keys = new long[64];
+        private Slot[][] cells = new Slot[64][];
+        private int[] sizes = new int[64];
+        private int usedCells;
+        private long visits;
+
+        private void insert(Slot slot) {
+            for (int cy = slot.minY >> CELL_SHIFT; cy <= (slot.maxY - 1) >> CELL_SHIFT; cy++) {
+                for (int cx = slot.minX >> CELL_SHIFT; cx <= (slot.maxX - 1) >> CELL_SHIFT; cx++) {
+                    int cell = cellAt(cx, cy, true);
+                    Slot[] entries = cells[cell];
+                    if (sizes[cell] == entries.length) {
+                        entries = Arrays.copyOf(entries, sizes[cell] * 2);
+                        cells[cell] = entries;
+                    }
+                    entries[sizes[cell]++] = slot;
+                }
+            }
+        }
+
+        private void remove(Slot slot) {
+            for (int cy = slot.minY >> CELL_SHIFT; cy <= (slot.maxY - 1) >> CELL_SHIFT; cy++) {
+                for (int cx = slot.minX >> CELL_SHIFT; cx <= (slot.maxX - 1) >> CELL_SHIFT; cx++) {
+                    int cell = cellAt(cx, cy, false);
+                    if (cell < 0) {
+                        continue;
+                    }
+                    Slot[] entries = cells[cell];
+                    for (int i = 0; i < sizes[cell]; i++) {
+                        if (entries[i] == slot) {
+                            entries[i] = entries[--sizes[cell]];
+                            entries[sizes[cell]] = null;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Visits every indexed sprite whose area overlaps minX <= x < maxX and minY <= y < maxY, once.
+        private void visit(int minX, int minY, int maxX, int maxY) {
+            long current = ++visits;
+            for (int cy = minY >> CELL_SHIFT; cy <= (maxY - 1) >> CELL_SHIFT; cy++) {
+                for (int cx = minX >> CELL_SHIFT; cx <= (maxX - 1) >> CELL_SHIFT; cx++) {
+                    int cell = cellAt(cx, cy, false);
+                    if (cell < 0) {
+                        continue;
+                    }
+                    Slot[] entries = cells[cell];
+                    for (int i = 0; i < sizes[cell]; i++) {
+                        Slot slot = entries[i];
+                        if (slot.visit != current && slot.minX < maxX && minX < slot.maxX
+                                && slot.minY < maxY && minY < slot.maxY) {
+                            slot.visit = current;
+                            SpriteCollection.this.visit(slot);
+                        }
+                    }
+                }
+            }
+        }
+
+        // The table position of a cell, or -1 if it does not exist and is not to be created.
+        private int cellAt(int cx, int cy, boolean create) {
+            long key = ((long) cx << 32) | (cy & 0xffffffffL);
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (cells[slot] != null) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (!create) {
+                return -1;
+            }
+            if ((usedCells + 1) * 2 > keys.length) {
+                grow();
+                return cellAt(cx, cy, true);
+            }
+            keys[slot] = key;
+            cells[slot] = new Slot[4];
+            usedCells++;
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Slot[][] oldCells = cells;
+            int[] oldSizes = sizes;
+            keys = new long[oldKeys.length * 2];
+            cells = new Slot[oldCells.length * 2][];
+            sizes = new int[oldSizes.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldCells.length; i++) {
+                if (oldCells[i] != null) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (cells[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    cells[slot] = oldCells[i];
+                    sizes[slot] = oldSizes[i];
+                }
+            }
+        }
+
+        private int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
         }
     }
 }